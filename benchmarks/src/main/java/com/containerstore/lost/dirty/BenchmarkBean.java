@@ -0,0 +1,17 @@
+package com.containerstore.lost.dirty;
+
+/**
+ * Common view of the beans used by the dirty package benchmarks. Each bean exposes one field through
+ * its DirtyObject and the same field through a plain getter for comparison.
+ */
+public interface BenchmarkBean {
+    DirtyObject getDirtyObject();
+
+    String getTrackedFieldName();
+
+    String getTracked();
+
+    void setTracked(String value);
+
+    String getPlain();
+}
@@ -0,0 +1,82 @@
+package com.containerstore.lost.dirty;
+
+/**
+ * A chain of subclasses, each with its own DirtyObject member, used to measure the superclass walks in
+ * DirtyObjects.
+ */
+public final class DeepBeans {
+
+    private DeepBeans() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static Object newInstance(int depth) {
+        switch (depth) {
+            case 1: return new LevelOne();
+            case 2: return new LevelTwo();
+            case 3: return new LevelThree();
+            case 4: return new LevelFour();
+            case 5: return new LevelFive();
+            case 6: return new LevelSix();
+            case 7: return new LevelSeven();
+            case 8: return new LevelEight();
+            default: throw new IllegalArgumentException("Unsupported depth " + depth);
+        }
+    }
+
+    public static class LevelOne {
+        private DirtyObject dirtyObject = new DirtyObject(this, LevelOne.class);
+
+        private Integer levelOneInt;
+        private String levelOneString;
+    }
+
+    public static class LevelTwo extends LevelOne {
+        private DirtyObject dirtyObject = new DirtyObject(this, LevelTwo.class);
+
+        private Integer levelTwoInt;
+        private String levelTwoString;
+    }
+
+    public static class LevelThree extends LevelTwo {
+        private DirtyObject dirtyObject = new DirtyObject(this, LevelThree.class);
+
+        private Integer levelThreeInt;
+        private String levelThreeString;
+    }
+
+    public static class LevelFour extends LevelThree {
+        private DirtyObject dirtyObject = new DirtyObject(this, LevelFour.class);
+
+        private Integer levelFourInt;
+        private String levelFourString;
+    }
+
+    public static class LevelFive extends LevelFour {
+        private DirtyObject dirtyObject = new DirtyObject(this, LevelFive.class);
+
+        private Integer levelFiveInt;
+        private String levelFiveString;
+    }
+
+    public static class LevelSix extends LevelFive {
+        private DirtyObject dirtyObject = new DirtyObject(this, LevelSix.class);
+
+        private Integer levelSixInt;
+        private String levelSixString;
+    }
+
+    public static class LevelSeven extends LevelSix {
+        private DirtyObject dirtyObject = new DirtyObject(this, LevelSeven.class);
+
+        private Integer levelSevenInt;
+        private String levelSevenString;
+    }
+
+    public static class LevelEight extends LevelSeven {
+        private DirtyObject dirtyObject = new DirtyObject(this, LevelEight.class);
+
+        private Integer levelEightInt;
+        private String levelEightString;
+    }
+}
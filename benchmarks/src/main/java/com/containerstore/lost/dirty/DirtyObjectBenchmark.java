@@ -0,0 +1,79 @@
+package com.containerstore.lost.dirty;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-field costs of DirtyObject, in and out of null mode, against a plain getter on the same bean.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DirtyObjectBenchmark {
+
+    @Param({"narrow", "wide"})
+    private String bean;
+
+    @Param({"false", "true"})
+    private boolean nullMode;
+
+    private BenchmarkBean target;
+    private DirtyObject dirtyObject;
+    private String fieldName;
+    private String value;
+
+    @Setup
+    public void setUp() {
+        target = "wide".equals(bean) ? new WideBean() : new NarrowBean();
+        dirtyObject = target.getDirtyObject();
+        fieldName = target.getTrackedFieldName();
+        value = "benchmark";
+
+        dirtyObject.markAllFields();
+        dirtyObject.setNullMode(nullMode);
+    }
+
+    @Benchmark
+    public String plainGetter() {
+        return target.getPlain();
+    }
+
+    @Benchmark
+    public String getValue() {
+        return target.getTracked();
+    }
+
+    @Benchmark
+    public void setValue() {
+        target.setTracked(value);
+    }
+
+    @Benchmark
+    public boolean isDirty() {
+        return dirtyObject.isDirty(fieldName);
+    }
+
+    @Benchmark
+    public void markAllFields() {
+        dirtyObject.markAllFields();
+    }
+
+    @Benchmark
+    public void assignDefaults() {
+        dirtyObject.assignDefaults();
+    }
+}
@@ -0,0 +1,52 @@
+package com.containerstore.lost.dirty;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costs of the superclass walks in DirtyObjects as the hierarchy gets deeper.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DirtyObjectsBenchmark {
+
+    @Param({"1", "4", "8"})
+    private int depth;
+
+    private Object target;
+
+    @Setup
+    public void setUp() {
+        target = DeepBeans.newInstance(depth);
+    }
+
+    @Benchmark
+    public void activateObject() {
+        DirtyObjects.activateObject(target);
+    }
+
+    @Benchmark
+    public void deactivateObject() {
+        DirtyObjects.deactivateObject(target);
+    }
+
+    @Benchmark
+    public void assignDefaultsToHierarchy() {
+        DirtyObjects.assignDefaultsToHierarchy(target);
+    }
+}
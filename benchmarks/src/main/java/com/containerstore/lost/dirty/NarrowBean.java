@@ -0,0 +1,49 @@
+package com.containerstore.lost.dirty;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small DTO-style bean with a handful of tracked fields.
+ */
+public class NarrowBean implements BenchmarkBean {
+    private DirtyObject dirtyObject = new DirtyObject(this, NarrowBean.class);
+
+    private Integer id;
+    private String name;
+    private Boolean active;
+    private BigDecimal amount;
+    private List<String> tags;
+    private Map<String, String> attributes;
+
+    public NarrowBean() {
+        this.id = 1;
+        this.name = "narrow";
+    }
+
+    @Override
+    public DirtyObject getDirtyObject() {
+        return dirtyObject;
+    }
+
+    @Override
+    public String getTrackedFieldName() {
+        return "name";
+    }
+
+    @Override
+    public String getTracked() {
+        return dirtyObject.getValue("name", name);
+    }
+
+    @Override
+    public void setTracked(String value) {
+        dirtyObject.setValue("name", value);
+    }
+
+    @Override
+    public String getPlain() {
+        return name;
+    }
+}
@@ -0,0 +1,58 @@
+package com.containerstore.lost.dirty;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costs of producing a fully defaulted bean, by defaulting an existing instance with ObjectDefaulter and by
+ * creating one with ObjectDefaults.newDefaultedInstance(), against a plain constructor call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectDefaulterBenchmark {
+
+    @Param({"narrow", "wide"})
+    private String bean;
+
+    private Class<? extends BenchmarkBean> clazz;
+    private BenchmarkBean target;
+    private ObjectDefaults objectDefaults;
+
+    @Setup
+    public void setUp() {
+        clazz = "wide".equals(bean) ? WideBean.class : NarrowBean.class;
+        target = "wide".equals(bean) ? new WideBean() : new NarrowBean();
+        objectDefaults = new ObjectDefaults();
+    }
+
+    @Benchmark
+    public Object constructor() {
+        return "wide".equals(bean) ? new WideBean() : new NarrowBean();
+    }
+
+    @Benchmark
+    public Object setObjectDefaults() {
+        ObjectDefaulter.setObjectDefaults(target, objectDefaults);
+        return target;
+    }
+
+    @Benchmark
+    public Object newDefaultedInstance() {
+        return objectDefaults.newDefaultedInstance(clazz);
+    }
+}
@@ -0,0 +1,89 @@
+package com.containerstore.lost.dirty;
+
+import com.containerstore.common.base.money.Money;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costs of resolving a default value for each kind of type ObjectDefaults supports.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectDefaultsBenchmark {
+
+    public static enum Plain {
+        FIRST,
+        SECOND
+    }
+
+    public static enum WithDefault {
+        FIRST,
+        SECOND;
+
+        @Defaulted
+        public static WithDefault defaulted() {
+            return SECOND;
+        }
+    }
+
+    public static class DefaultedObject {
+        @Defaulted
+        public static DefaultedObject defaulted() {
+            return new DefaultedObject();
+        }
+    }
+
+    private static final Map<String, Class> TYPES = ImmutableMap.<String, Class>builder()
+            .put("int", int.class)
+            .put("Boolean", Boolean.class)
+            .put("Integer", Integer.class)
+            .put("Long", Long.class)
+            .put("Double", Double.class)
+            .put("String", String.class)
+            .put("List", List.class)
+            .put("Map", Map.class)
+            .put("Money", Money.class)
+            .put("BigDecimal", BigDecimal.class)
+            .put("enum", Plain.class)
+            .put("defaultedEnum", WithDefault.class)
+            .put("defaultedObject", DefaultedObject.class)
+            .put("unsupported", StringBuilder.class)
+            .build();
+
+    @Param({"int", "Boolean", "Integer", "Long", "Double", "String", "List", "Map", "Money", "BigDecimal",
+            "enum", "defaultedEnum", "defaultedObject", "unsupported"})
+    private String type;
+
+    private ObjectDefaults objectDefaults;
+    private Class clazz;
+
+    @Setup
+    public void setUp() {
+        objectDefaults = new ObjectDefaults();
+        clazz = TYPES.get(type);
+    }
+
+    @Benchmark
+    public Object getDefaultValue() {
+        return objectDefaults.getDefaultValue(clazz);
+    }
+}
@@ -0,0 +1,338 @@
+package com.containerstore.lost.dirty;
+
+/**
+ * A 200-field bean, used to show how the dirty package scales with the number of declared fields.
+ * Every other field is initialized so that markAllFields() and assignDefaults() have mixed work to do.
+ */
+public class WideBean implements BenchmarkBean {
+    private DirtyObject dirtyObject = new DirtyObject(this, WideBean.class);
+
+    private String field000;
+    private String field001;
+    private String field002;
+    private String field003;
+    private String field004;
+    private String field005;
+    private String field006;
+    private String field007;
+    private String field008;
+    private String field009;
+    private String field010;
+    private String field011;
+    private String field012;
+    private String field013;
+    private String field014;
+    private String field015;
+    private String field016;
+    private String field017;
+    private String field018;
+    private String field019;
+    private String field020;
+    private String field021;
+    private String field022;
+    private String field023;
+    private String field024;
+    private String field025;
+    private String field026;
+    private String field027;
+    private String field028;
+    private String field029;
+    private String field030;
+    private String field031;
+    private String field032;
+    private String field033;
+    private String field034;
+    private String field035;
+    private String field036;
+    private String field037;
+    private String field038;
+    private String field039;
+    private String field040;
+    private String field041;
+    private String field042;
+    private String field043;
+    private String field044;
+    private String field045;
+    private String field046;
+    private String field047;
+    private String field048;
+    private String field049;
+    private String field050;
+    private String field051;
+    private String field052;
+    private String field053;
+    private String field054;
+    private String field055;
+    private String field056;
+    private String field057;
+    private String field058;
+    private String field059;
+    private String field060;
+    private String field061;
+    private String field062;
+    private String field063;
+    private String field064;
+    private String field065;
+    private String field066;
+    private String field067;
+    private String field068;
+    private String field069;
+    private String field070;
+    private String field071;
+    private String field072;
+    private String field073;
+    private String field074;
+    private String field075;
+    private String field076;
+    private String field077;
+    private String field078;
+    private String field079;
+    private String field080;
+    private String field081;
+    private String field082;
+    private String field083;
+    private String field084;
+    private String field085;
+    private String field086;
+    private String field087;
+    private String field088;
+    private String field089;
+    private String field090;
+    private String field091;
+    private String field092;
+    private String field093;
+    private String field094;
+    private String field095;
+    private String field096;
+    private String field097;
+    private String field098;
+    private String field099;
+    private String field100;
+    private String field101;
+    private String field102;
+    private String field103;
+    private String field104;
+    private String field105;
+    private String field106;
+    private String field107;
+    private String field108;
+    private String field109;
+    private String field110;
+    private String field111;
+    private String field112;
+    private String field113;
+    private String field114;
+    private String field115;
+    private String field116;
+    private String field117;
+    private String field118;
+    private String field119;
+    private String field120;
+    private String field121;
+    private String field122;
+    private String field123;
+    private String field124;
+    private String field125;
+    private String field126;
+    private String field127;
+    private String field128;
+    private String field129;
+    private String field130;
+    private String field131;
+    private String field132;
+    private String field133;
+    private String field134;
+    private String field135;
+    private String field136;
+    private String field137;
+    private String field138;
+    private String field139;
+    private String field140;
+    private String field141;
+    private String field142;
+    private String field143;
+    private String field144;
+    private String field145;
+    private String field146;
+    private String field147;
+    private String field148;
+    private String field149;
+    private String field150;
+    private String field151;
+    private String field152;
+    private String field153;
+    private String field154;
+    private String field155;
+    private String field156;
+    private String field157;
+    private String field158;
+    private String field159;
+    private String field160;
+    private String field161;
+    private String field162;
+    private String field163;
+    private String field164;
+    private String field165;
+    private String field166;
+    private String field167;
+    private String field168;
+    private String field169;
+    private String field170;
+    private String field171;
+    private String field172;
+    private String field173;
+    private String field174;
+    private String field175;
+    private String field176;
+    private String field177;
+    private String field178;
+    private String field179;
+    private String field180;
+    private String field181;
+    private String field182;
+    private String field183;
+    private String field184;
+    private String field185;
+    private String field186;
+    private String field187;
+    private String field188;
+    private String field189;
+    private String field190;
+    private String field191;
+    private String field192;
+    private String field193;
+    private String field194;
+    private String field195;
+    private String field196;
+    private String field197;
+    private String field198;
+    private String field199;
+
+    public WideBean() {
+        this.field000 = "value000";
+        this.field002 = "value002";
+        this.field004 = "value004";
+        this.field006 = "value006";
+        this.field008 = "value008";
+        this.field010 = "value010";
+        this.field012 = "value012";
+        this.field014 = "value014";
+        this.field016 = "value016";
+        this.field018 = "value018";
+        this.field020 = "value020";
+        this.field022 = "value022";
+        this.field024 = "value024";
+        this.field026 = "value026";
+        this.field028 = "value028";
+        this.field030 = "value030";
+        this.field032 = "value032";
+        this.field034 = "value034";
+        this.field036 = "value036";
+        this.field038 = "value038";
+        this.field040 = "value040";
+        this.field042 = "value042";
+        this.field044 = "value044";
+        this.field046 = "value046";
+        this.field048 = "value048";
+        this.field050 = "value050";
+        this.field052 = "value052";
+        this.field054 = "value054";
+        this.field056 = "value056";
+        this.field058 = "value058";
+        this.field060 = "value060";
+        this.field062 = "value062";
+        this.field064 = "value064";
+        this.field066 = "value066";
+        this.field068 = "value068";
+        this.field070 = "value070";
+        this.field072 = "value072";
+        this.field074 = "value074";
+        this.field076 = "value076";
+        this.field078 = "value078";
+        this.field080 = "value080";
+        this.field082 = "value082";
+        this.field084 = "value084";
+        this.field086 = "value086";
+        this.field088 = "value088";
+        this.field090 = "value090";
+        this.field092 = "value092";
+        this.field094 = "value094";
+        this.field096 = "value096";
+        this.field098 = "value098";
+        this.field100 = "value100";
+        this.field102 = "value102";
+        this.field104 = "value104";
+        this.field106 = "value106";
+        this.field108 = "value108";
+        this.field110 = "value110";
+        this.field112 = "value112";
+        this.field114 = "value114";
+        this.field116 = "value116";
+        this.field118 = "value118";
+        this.field120 = "value120";
+        this.field122 = "value122";
+        this.field124 = "value124";
+        this.field126 = "value126";
+        this.field128 = "value128";
+        this.field130 = "value130";
+        this.field132 = "value132";
+        this.field134 = "value134";
+        this.field136 = "value136";
+        this.field138 = "value138";
+        this.field140 = "value140";
+        this.field142 = "value142";
+        this.field144 = "value144";
+        this.field146 = "value146";
+        this.field148 = "value148";
+        this.field150 = "value150";
+        this.field152 = "value152";
+        this.field154 = "value154";
+        this.field156 = "value156";
+        this.field158 = "value158";
+        this.field160 = "value160";
+        this.field162 = "value162";
+        this.field164 = "value164";
+        this.field166 = "value166";
+        this.field168 = "value168";
+        this.field170 = "value170";
+        this.field172 = "value172";
+        this.field174 = "value174";
+        this.field176 = "value176";
+        this.field178 = "value178";
+        this.field180 = "value180";
+        this.field182 = "value182";
+        this.field184 = "value184";
+        this.field186 = "value186";
+        this.field188 = "value188";
+        this.field190 = "value190";
+        this.field192 = "value192";
+        this.field194 = "value194";
+        this.field196 = "value196";
+        this.field198 = "value198";
+    }
+
+    @Override
+    public DirtyObject getDirtyObject() {
+        return dirtyObject;
+    }
+
+    @Override
+    public String getTrackedFieldName() {
+        return "field198";
+    }
+
+    @Override
+    public String getTracked() {
+        return dirtyObject.getValue("field198", field198);
+    }
+
+    @Override
+    public void setTracked(String value) {
+        dirtyObject.setValue("field198", value);
+    }
+
+    @Override
+    public String getPlain() {
+        return field198;
+    }
+}
@@ -0,0 +1,101 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A distance matrix request and a canned Google response to it, of a given shape such as "25x25" (origins by
+ * destinations). The response has the fields Google sends, including the text fields and addresses that the
+ * parsers skip, and about one element in fifty is NOT_FOUND. The same shape always gives the same matrix.
+ */
+public final class CannedDistanceMatrix {
+    private final List<String> origins;
+    private final List<String> destinations;
+    private final byte[] response;
+
+    private CannedDistanceMatrix(List<String> origins, List<String> destinations, byte[] response) {
+        this.origins = origins;
+        this.destinations = destinations;
+        this.response = response;
+    }
+
+    public static CannedDistanceMatrix of(String shape) {
+        String[] sizes = shape.split("x");
+        if (sizes.length != 2) {
+            throw new IllegalArgumentException("Shape must be origins x destinations: " + shape);
+        }
+
+        Random random = new Random(42);
+        List<String> origins = locations(random, Integer.parseInt(sizes[0]));
+        List<String> destinations = locations(random, Integer.parseInt(sizes[1]));
+
+        StringBuilder json = new StringBuilder(256 * origins.size() * destinations.size());
+        json.append("{\n   \"destination_addresses\" : [ ");
+        appendAddresses(json, destinations);
+        json.append(" ],\n   \"origin_addresses\" : [ ");
+        appendAddresses(json, origins);
+        json.append(" ],\n   \"rows\" : [\n");
+        for (int row = 0; row < origins.size(); row++) {
+            json.append(row == 0 ? "      {\n         \"elements\" : [\n" : ",\n      {\n         \"elements\" : [\n");
+            for (int column = 0; column < destinations.size(); column++) {
+                json.append(column == 0 ? "" : ",\n");
+                if (random.nextInt(50) == 0) {
+                    json.append("            {\n               \"status\" : \"NOT_FOUND\"\n            }");
+                    continue;
+                }
+
+                int meters = 500 + random.nextInt(80000);
+                int seconds = meters / 15 + random.nextInt(600);
+                json.append(String.format(Locale.US, "            {\n"
+                        + "               \"distance\" : {\n"
+                        + "                  \"text\" : \"%.1f mi\",\n"
+                        + "                  \"value\" : %d\n"
+                        + "               },\n"
+                        + "               \"duration\" : {\n"
+                        + "                  \"text\" : \"%d mins\",\n"
+                        + "                  \"value\" : %d\n"
+                        + "               },\n"
+                        + "               \"status\" : \"OK\"\n"
+                        + "            }", meters / 1609.344, meters, seconds / 60, seconds));
+            }
+            json.append("\n         ]\n      }");
+        }
+        json.append("\n   ],\n   \"status\" : \"OK\"\n}\n");
+
+        return new CannedDistanceMatrix(origins, destinations, json.toString().getBytes(Charsets.UTF_8));
+    }
+
+    public List<String> getOrigins() {
+        return origins;
+    }
+
+    public List<String> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * The response body, as UTF-8.
+     */
+    public byte[] getResponse() {
+        return response;
+    }
+
+    private static List<String> locations(Random random, int count) {
+        List<String> locations = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            locations.add(String.format(Locale.US, "%.6f,%.6f", 32 + 2 * random.nextDouble(),
+                    -98 + 2 * random.nextDouble()));
+        }
+        return locations;
+    }
+
+    private static void appendAddresses(StringBuilder json, List<String> locations) {
+        for (int i = 0; i < locations.size(); i++) {
+            json.append(i == 0 ? "\"" : ", \"").append(100 + i).append(" Main St, Dallas, TX 75201, USA\"");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDefs;
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.containerstore.lost.googlemaps.google.GoogleURISigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the URI of a distance matrix request, and signing it with GoogleURISigner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GoogleDistanceRequestBenchmark {
+    /** The example key from Google's URL signing documentation. */
+    private static final String SIGNING_KEY = "vNIXE0xscrmjlyV-12Nj_BvUPaw=";
+
+    @Param({"1x25", "25x25", "100x100"})
+    private String shape;
+
+    private GoogleDistanceRequest request;
+    private GoogleURISigner signer;
+    private String path;
+    private String query;
+
+    @Setup
+    public void setUp() throws Exception {
+        CannedDistanceMatrix matrix = CannedDistanceMatrix.of(shape);
+        request = new GoogleDistanceRequest()
+                .withOrigins(matrix.getOrigins())
+                .withDestinations(matrix.getDestinations())
+                .withSensor(false)
+                .withMode(GoogleDefs.Mode.DRIVING);
+
+        URI uri = request.build();
+        signer = new GoogleURISigner(SIGNING_KEY);
+        path = uri.getRawPath();
+        query = uri.getRawQuery() + "&client=benchmark";
+    }
+
+    @Benchmark
+    public URI build() throws Exception {
+        return request.build();
+    }
+
+    @Benchmark
+    public String signRequest() throws Exception {
+        return signer.signRequest(path, query);
+    }
+}
@@ -0,0 +1,79 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDistanceResult;
+import com.google.common.base.Charsets;
+import net.sf.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a GoogleDistanceResult from a canned response, by streaming it, from a parsed JSONObject, and from
+ * the text through json-lib as the full older path did.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GoogleDistanceResultBenchmark {
+
+    @Param({"1x25", "25x25", "100x100"})
+    private String shape;
+
+    private List<String> origins;
+    private List<String> destinations;
+    private byte[] response;
+    private String responseText;
+    private JSONObject responseJson;
+
+    @Setup
+    public void setUp() {
+        CannedDistanceMatrix matrix = CannedDistanceMatrix.of(shape);
+        origins = matrix.getOrigins();
+        destinations = matrix.getDestinations();
+        response = matrix.getResponse();
+        responseText = new String(response, Charsets.UTF_8);
+        responseJson = JSONObject.fromObject(responseText);
+    }
+
+    @Benchmark
+    public GoogleDistanceResult parseStream() {
+        return GoogleDistanceResult.result()
+                .withOrigins(origins)
+                .withDestinations(destinations)
+                .withInputStream(new ByteArrayInputStream(response))
+                .build();
+    }
+
+    @Benchmark
+    public GoogleDistanceResult buildFromJsonObject() {
+        return GoogleDistanceResult.result()
+                .withOrigins(origins)
+                .withDestinations(destinations)
+                .withJSONObject(responseJson)
+                .build();
+    }
+
+    @Benchmark
+    public GoogleDistanceResult parseJsonText() {
+        return GoogleDistanceResult.result()
+                .withOrigins(origins)
+                .withDestinations(destinations)
+                .withJSONObject(JSONObject.fromObject(responseText))
+                .build();
+    }
+}
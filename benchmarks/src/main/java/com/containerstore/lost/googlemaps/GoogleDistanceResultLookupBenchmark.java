@@ -0,0 +1,68 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDistanceResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups on a GoogleDistanceResult built from a canned response: one element, a column and a row. The
+ * origin and destination looked up change on every call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GoogleDistanceResultLookupBenchmark {
+
+    @Param({"1x25", "25x25", "100x100"})
+    private String shape;
+
+    private MapDistanceResult result;
+    private List<String> origins;
+    private List<String> destinations;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        CannedDistanceMatrix matrix = CannedDistanceMatrix.of(shape);
+        origins = matrix.getOrigins();
+        destinations = matrix.getDestinations();
+        result = GoogleDistanceResult.result()
+                .withOrigins(origins)
+                .withDestinations(destinations)
+                .withInputStream(new ByteArrayInputStream(matrix.getResponse()))
+                .build();
+    }
+
+    @Benchmark
+    public double getDistance() {
+        next++;
+        return result.getDistance(origins.get(next % origins.size()), destinations.get(next % destinations.size()));
+    }
+
+    @Benchmark
+    public Map<String, Double> getDistancesToDestination() {
+        return result.getDistancesToDestination(destinations.get(++next % destinations.size()));
+    }
+
+    @Benchmark
+    public Map<String, Double> getDistancesFromOrigin() {
+        return result.getDistancesFromOrigin(origins.get(++next % origins.size()));
+    }
+}
@@ -0,0 +1,57 @@
+package com.containerstore.lost.googlemaps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatAndLong parsing and distances. fromString parses "latitude,longitude" strings, and fromStringAddress parses
+ * an address that is not a location (the parse failure path). getDistance measures the great-circle distance
+ * between two locations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LatAndLongBenchmark {
+    private List<String> strings;
+    private LatAndLong[] locations;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        strings = CannedDistanceMatrix.of("1x64").getDestinations();
+        locations = new LatAndLong[strings.size()];
+        for (int i = 0; i < strings.size(); i++) {
+            locations[i] = LatAndLong.fromString(strings.get(i));
+        }
+    }
+
+    @Benchmark
+    public LatAndLong fromString() {
+        return LatAndLong.fromString(strings.get(++next & 63));
+    }
+
+    @Benchmark
+    public LatAndLong fromStringAddress() {
+        return LatAndLong.fromString("500 Freeport Pkwy, Coppell, TX 75019");
+    }
+
+    @Benchmark
+    public double getDistance() {
+        next++;
+        return LatAndLong.getDistance(locations[next & 63], locations[(next + 17) & 63]);
+    }
+}
@@ -0,0 +1,108 @@
+package com.containerstore.lost.dirty;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A precompiled recipe for building defaulted instances of a class with a given ObjectDefaults.
+ *
+ * The defaults for every non-static/non-final declared field are resolved once. Values that the ObjectDefaults
+ * hands back as the same instance on every call, and equal values of immutable types (wrappers such as Double
+ * whose valueOf returns a new box each time, String, BigDecimal, BigInteger, enums), are copied straight into
+ * each new instance. Values that come back as a new instance on every call (List, Map, most
+ * {@literal @}Defaulted objects) are requested again for each new instance so that no two instances share
+ * a mutable container.
+ */
+final class DefaultedPrototype<T> {
+    private static final Set<Class<?>> IMMUTABLE_NUMBERS = ImmutableSet.<Class<?>>of(Byte.class, Short.class,
+            Integer.class, Long.class, Float.class, Double.class, BigDecimal.class, BigInteger.class);
+
+    private final Class<T> clazz;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final Object[] sharedValues;
+    private final boolean[] freshValues;
+
+    private DefaultedPrototype(Class<T> clazz, Constructor<T> constructor, List<Field> fields,
+                               List<Object> sharedValues, boolean[] freshValues) {
+        this.clazz = clazz;
+        this.constructor = constructor;
+        this.fields = fields.toArray(new Field[fields.size()]);
+        this.sharedValues = sharedValues.toArray();
+        this.freshValues = freshValues;
+    }
+
+    static <T> DefaultedPrototype<T> compile(Class<T> clazz, ObjectDefaults defaults) {
+        Constructor<T> constructor;
+        try {
+            constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Class " + clazz.getCanonicalName()
+                    + " does not declare a no-argument constructor", e);
+        }
+
+        List<Field> fields = Lists.newArrayList();
+        List<Object> sharedValues = Lists.newArrayList();
+        List<Boolean> freshValues = Lists.newArrayList();
+
+        for (Field field : clazz.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                continue;
+            }
+
+            field.setAccessible(true);
+            Object first = defaults.getDefaultValue(field.getType());
+            Object second = defaults.getDefaultValue(field.getType());
+            boolean fresh = first != second && !(isImmutable(first) && first.equals(second));
+
+            fields.add(field);
+            sharedValues.add(fresh ? null : first);
+            freshValues.add(fresh);
+        }
+
+        boolean[] fresh = new boolean[freshValues.size()];
+        for (int i = 0; i < fresh.length; i++) {
+            fresh[i] = freshValues.get(i);
+        }
+
+        return new DefaultedPrototype<T>(clazz, constructor, fields, sharedValues, fresh);
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof Number && IMMUTABLE_NUMBERS.contains(value.getClass())
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof String
+                || value instanceof Enum;
+    }
+
+    T newInstance(ObjectDefaults defaults) {
+        T instance;
+        try {
+            instance = constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Exception constructing instance of class " + clazz.getCanonicalName()
+                    + ": " + e.getMessage(), e);
+        }
+
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                field.set(instance, freshValues[i] ? defaults.getDefaultValue(field.getType()) : sharedValues[i]);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to set default values for class " + clazz.getCanonicalName(), e);
+        }
+
+        return instance;
+    }
+}
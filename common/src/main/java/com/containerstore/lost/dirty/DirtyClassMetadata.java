@@ -0,0 +1,258 @@
+package com.containerstore.lost.dirty;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The reflective facts about a class that the dirty package needs: which fields a DirtyObject tracks and which
+ * it ignores, the DirtyObject member field (if any), the {@literal @}Defaulted factory method (if any) and the
+ * superclass. These are computed once per class and shared by every DirtyObject, DirtyObjects and ObjectDefaults
+ * call, instead of being rediscovered on every object construction or lookup.
+ *
+ * Metadata is normally computed lazily on first use; DirtyMetadataIndex can compute it eagerly at startup from
+ * a build-time index.
+ */
+final class DirtyClassMetadata {
+    private static final ConcurrentMap<Class, DirtyClassMetadata> CACHE = Maps.newConcurrentMap();
+
+    private final Class clazz;
+    private final Map<String, Field> trackedFields;
+    private final String[] trackedFieldNames;
+    private final Map<String, Field> ignoredFields;
+    private final Field dirtyObjectField;
+    private final Method defaultedMethod;
+    private final DirtyClassMetadata superclassMetadata;
+    private volatile boolean accessible = false;
+
+    private DirtyClassMetadata(Class clazz, Map<String, Field> trackedFields, Map<String, Field> ignoredFields,
+                               Field dirtyObjectField, Method defaultedMethod) {
+        this.clazz = clazz;
+        this.trackedFields = trackedFields;
+        this.trackedFieldNames = trackedFields.keySet().toArray(new String[trackedFields.size()]);
+        this.ignoredFields = ignoredFields;
+        this.dirtyObjectField = dirtyObjectField;
+        this.defaultedMethod = defaultedMethod;
+
+        Class superclass = clazz.getSuperclass();
+        this.superclassMetadata = superclass == null || superclass.equals(Object.class)
+                ? null : forClass(superclass);
+    }
+
+    /**
+     * Returns the metadata for the given class, computing it by reflection if it is not already known.
+     */
+    static DirtyClassMetadata forClass(Class clazz) {
+        DirtyClassMetadata metadata = CACHE.get(clazz);
+        if (metadata == null) {
+            metadata = register(scan(clazz));
+        }
+        return metadata;
+    }
+
+    /**
+     * Computes the metadata for the given class from the field and method names recorded in a metadata index,
+     * falling back to a full scan if the names no longer match the class: if a recorded field or factory is
+     * missing or changed, or if the class has gained a DirtyObject field or {@literal @}Defaulted factory that
+     * the index does not name.
+     */
+    static DirtyClassMetadata forIndexedClass(Class clazz, Collection<String> trackedNames,
+                                              Collection<String> ignoredNames, String dirtyObjectName,
+                                              String defaultedName) {
+        DirtyClassMetadata metadata = CACHE.get(clazz);
+        if (metadata != null) {
+            return metadata;
+        }
+
+        Field[] declaredFields = clazz.getDeclaredFields();
+        if (declaredFields.length != trackedNames.size() + ignoredNames.size()) {
+            return forClass(clazz);
+        }
+
+        Map<String, Field> fieldsByName = Maps.newHashMapWithExpectedSize(declaredFields.length);
+        Field dirtyObjectField = null;
+        for (Field field : declaredFields) {
+            fieldsByName.put(field.getName(), field);
+            if (dirtyObjectField == null && field.getType().equals(DirtyObject.class)) {
+                dirtyObjectField = field;
+            }
+        }
+        String actualDirtyObjectName = dirtyObjectField == null ? null : dirtyObjectField.getName();
+        if (dirtyObjectName == null ? actualDirtyObjectName != null : !dirtyObjectName.equals(actualDirtyObjectName)) {
+            return forClass(clazz);
+        }
+
+        ImmutableMap.Builder<String, Field> tracked = ImmutableMap.builder();
+        for (String name : trackedNames) {
+            Field field = fieldsByName.get(name);
+            if (field == null || ignoreField(field)) {
+                return forClass(clazz);
+            }
+            tracked.put(name, field);
+        }
+
+        ImmutableMap.Builder<String, Field> ignored = ImmutableMap.builder();
+        for (String name : ignoredNames) {
+            Field field = fieldsByName.get(name);
+            if (field == null || !ignoreField(field)) {
+                return forClass(clazz);
+            }
+            ignored.put(name, field);
+        }
+
+        Method defaultedMethod = null;
+        if (defaultedName != null) {
+            try {
+                defaultedMethod = clazz.getMethod(defaultedName);
+            } catch (NoSuchMethodException e) {
+                return forClass(clazz);
+            }
+            if (!isDefaultedMethod(clazz, defaultedMethod)) {
+                return forClass(clazz);
+            }
+        } else if (hasDefaultedMethod(clazz)) {
+            return forClass(clazz);
+        }
+
+        if (dirtyObjectField != null) {
+            dirtyObjectField.setAccessible(true);
+        }
+        if (defaultedMethod != null) {
+            defaultedMethod.setAccessible(true);
+        }
+        return register(new DirtyClassMetadata(clazz, tracked.build(), ignored.build(), dirtyObjectField,
+                defaultedMethod));
+    }
+
+    /**
+     * Whether the class or a superclass declares a public {@literal @}Defaulted factory, which getMethods() would
+     * return, without building the full public method list.
+     */
+    private static boolean hasDefaultedMethod(Class clazz) {
+        for (Class each = clazz; each != null && !each.equals(Object.class); each = each.getSuperclass()) {
+            for (Method method : each.getDeclaredMethods()) {
+                if (Modifier.isPublic(method.getModifiers()) && isDefaultedMethod(clazz, method)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    Class getMetadataClass() {
+        return clazz;
+    }
+
+    /**
+     * Makes the tracked and ignored fields accessible, so they can be read and written by a DirtyObject.
+     * This is only done for classes that are actually managed by a DirtyObject.
+     */
+    DirtyClassMetadata makeAccessible() {
+        if (!accessible) {
+            for (Field field : trackedFields.values()) {
+                field.setAccessible(true);
+            }
+            for (Field field : ignoredFields.values()) {
+                field.setAccessible(true);
+            }
+            accessible = true;
+        }
+        return this;
+    }
+
+    Set<String> getTrackedFieldNames() {
+        return trackedFields.keySet();
+    }
+
+    /**
+     * The tracked field names as an array, for iteration on hot paths without allocating an iterator. The array
+     * is shared and must not be modified.
+     */
+    String[] getTrackedFieldNameArray() {
+        return trackedFieldNames;
+    }
+
+    Set<String> getIgnoredFieldNames() {
+        return ignoredFields.keySet();
+    }
+
+    Field getTrackedField(String fieldName) {
+        return trackedFields.get(fieldName);
+    }
+
+    Field getIgnoredField(String fieldName) {
+        return ignoredFields.get(fieldName);
+    }
+
+    Field getDirtyObjectField() {
+        return dirtyObjectField;
+    }
+
+    Method getDefaultedMethod() {
+        return defaultedMethod;
+    }
+
+    /**
+     * Returns the metadata for the superclass, or null when the superclass is Object.
+     */
+    DirtyClassMetadata getSuperclassMetadata() {
+        return superclassMetadata;
+    }
+
+    private static DirtyClassMetadata register(DirtyClassMetadata metadata) {
+        DirtyClassMetadata existing = CACHE.putIfAbsent(metadata.clazz, metadata);
+        return existing == null ? metadata : existing;
+    }
+
+    private static DirtyClassMetadata scan(Class clazz) {
+        ImmutableMap.Builder<String, Field> tracked = ImmutableMap.builder();
+        ImmutableMap.Builder<String, Field> ignored = ImmutableMap.builder();
+        Field dirtyObjectField = null;
+
+        for (Field field : clazz.getDeclaredFields()) {
+            if (ignoreField(field)) {
+                ignored.put(field.getName(), field);
+            } else {
+                tracked.put(field.getName(), field);
+            }
+
+            if (dirtyObjectField == null && field.getType().equals(DirtyObject.class)) {
+                field.setAccessible(true);
+                dirtyObjectField = field;
+            }
+        }
+
+        Method defaultedMethod = null;
+        for (Method each : clazz.getMethods()) {
+            if (isDefaultedMethod(clazz, each)) {
+                each.setAccessible(true);
+                defaultedMethod = each;
+                break;
+            }
+        }
+
+        return new DirtyClassMetadata(clazz, tracked.build(), ignored.build(), dirtyObjectField, defaultedMethod);
+    }
+
+    private static boolean ignoreField(Field field) {
+        return (Modifier.isStatic(field.getModifiers())
+                || Modifier.isPublic(field.getModifiers())
+                || Modifier.isFinal(field.getModifiers())
+                || field.getType().isPrimitive()
+                || DirtyObject.class.isAssignableFrom(field.getType()));
+    }
+
+    private static boolean isDefaultedMethod(Class clazz, Method method) {
+        return method.getAnnotation(Defaulted.class) != null
+                && Modifier.isStatic(method.getModifiers())
+                && method.getParameterTypes().length == 0
+                && clazz.equals(method.getReturnType());
+    }
+}
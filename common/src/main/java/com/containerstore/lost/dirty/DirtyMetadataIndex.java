@@ -0,0 +1,255 @@
+package com.containerstore.lost.dirty;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads and writes the binary metadata index that lets the dirty package do its reflection at startup instead
+ * of on the first request.
+ *
+ * The index is produced at build time by DirtyMetadataIndexer and stored in the jar as
+ * META-INF/dirty-metadata.idx. For each indexed class it records the tracked and ignored field names, the
+ * DirtyObject member field and the {@literal @}Defaulted factory method. Superclasses are indexed as classes of
+ * their own, and DirtyClassMetadata finds them from the loaded class. Calling preload() during application
+ * startup reads every index on the classpath and computes the metadata for all of the listed classes in parallel.
+ *
+ * Format (DataOutput encoding): magic, version, class count, then for each class its name, tracked field names,
+ * ignored field names, DirtyObject field name and {@literal @}Defaulted method name. Names that are absent are
+ * written as empty strings.
+ */
+public final class DirtyMetadataIndex {
+    private static final Logger LOG = Logger.getLogger(DirtyMetadataIndex.class);
+
+    public static final String INDEX_RESOURCE = "META-INF/dirty-metadata.idx";
+
+    private static final int MAGIC = 0x44495254;
+    private static final short VERSION = 2;
+
+    /**
+     * A single class as recorded in the index.
+     */
+    static final class Entry {
+        private final String className;
+        private final List<String> trackedFields;
+        private final List<String> ignoredFields;
+        private final String dirtyObjectField;
+        private final String defaultedMethod;
+
+        Entry(String className, List<String> trackedFields, List<String> ignoredFields, String dirtyObjectField,
+              String defaultedMethod) {
+            this.className = className;
+            this.trackedFields = trackedFields;
+            this.ignoredFields = ignoredFields;
+            this.dirtyObjectField = dirtyObjectField;
+            this.defaultedMethod = defaultedMethod;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        List<String> getTrackedFields() {
+            return trackedFields;
+        }
+
+        List<String> getIgnoredFields() {
+            return ignoredFields;
+        }
+
+        String getDirtyObjectField() {
+            return dirtyObjectField;
+        }
+
+        String getDefaultedMethod() {
+            return defaultedMethod;
+        }
+    }
+
+    private DirtyMetadataIndex() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Reads every metadata index visible to the context class loader and computes the metadata for all of the
+     * listed classes in parallel. Intended to be called once during application startup.
+     *
+     * @return - the number of classes whose metadata was computed
+     */
+    public static int preload() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return preload(loader == null ? DirtyMetadataIndex.class.getClassLoader() : loader);
+    }
+
+    /**
+     * Reads every metadata index visible to the given class loader and computes the metadata for all of the
+     * listed classes in parallel.
+     *
+     * @param loader - the class loader used to find the indexes and load the listed classes
+     * @return       - the number of classes whose metadata was computed
+     */
+    public static int preload(ClassLoader loader) {
+        List<Entry> entries = Lists.newArrayList();
+        try {
+            Enumeration<URL> resources = loader.getResources(INDEX_RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                InputStream in = resource.openStream();
+                try {
+                    entries.addAll(read(in));
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read dirty metadata index: " + e.getMessage());
+        }
+
+        return preload(entries, loader);
+    }
+
+    /**
+     * Writes an index for the given classes.
+     *
+     * @param classes - the classes to index
+     * @param out     - the stream to write to; it is not closed
+     */
+    public static void write(Collection<Class> classes, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(classes.size());
+
+        for (Class clazz : classes) {
+            DirtyClassMetadata metadata = DirtyClassMetadata.forClass(clazz);
+
+            data.writeUTF(clazz.getName());
+            writeNames(data, metadata.getTrackedFieldNames());
+            writeNames(data, metadata.getIgnoredFieldNames());
+            data.writeUTF(metadata.getDirtyObjectField() == null ? "" : metadata.getDirtyObjectField().getName());
+            data.writeUTF(metadata.getDefaultedMethod() == null ? "" : metadata.getDefaultedMethod().getName());
+        }
+
+        data.flush();
+    }
+
+    static List<Entry> read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a dirty metadata index");
+        }
+
+        short version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported dirty metadata index version " + version);
+        }
+
+        int count = data.readInt();
+        List<Entry> entries = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            String className = data.readUTF();
+            List<String> tracked = readNames(data);
+            List<String> ignored = readNames(data);
+            String dirtyObjectField = emptyToNull(data.readUTF());
+            String defaultedMethod = emptyToNull(data.readUTF());
+
+            entries.add(new Entry(className, tracked, ignored, dirtyObjectField, defaultedMethod));
+        }
+
+        return entries;
+    }
+
+    static int preload(List<Entry> entries, final ClassLoader loader) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        int threads = Math.min(entries.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("dirty-metadata-preload-%d")
+                .setDaemon(true)
+                .build());
+
+        List<Callable<Boolean>> tasks = Lists.newArrayListWithCapacity(entries.size());
+        for (final Entry entry : entries) {
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return preload(entry, loader);
+                }
+            });
+        }
+
+        int loaded = 0;
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                if (result.get()) {
+                    loaded++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.warn("Unexpected exception preloading dirty metadata: " + e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        return loaded;
+    }
+
+    private static boolean preload(Entry entry, ClassLoader loader) {
+        try {
+            Class clazz = Class.forName(entry.getClassName(), false, loader);
+            DirtyClassMetadata.forIndexedClass(clazz, entry.getTrackedFields(), entry.getIgnoredFields(),
+                    entry.getDirtyObjectField(), entry.getDefaultedMethod());
+            return true;
+        } catch (ClassNotFoundException e) {
+            LOG.warn("Indexed class " + entry.getClassName() + " not found; skipping");
+        } catch (LinkageError e) {
+            LOG.warn("Unable to load indexed class " + entry.getClassName() + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    private static void writeNames(DataOutputStream data, Collection<String> names) throws IOException {
+        data.writeShort(names.size());
+        for (String name : names) {
+            data.writeUTF(name);
+        }
+    }
+
+    private static List<String> readNames(DataInputStream data) throws IOException {
+        int count = data.readUnsignedShort();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+
+        List<String> names = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            names.add(data.readUTF());
+        }
+        return names;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
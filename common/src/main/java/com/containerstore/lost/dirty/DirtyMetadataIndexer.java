@@ -0,0 +1,136 @@
+package com.containerstore.lost.dirty;
+
+import com.google.common.collect.Sets;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Set;
+
+/**
+ * Build-time tool that writes a DirtyMetadataIndex for the compiled classes of a module.
+ *
+ * It scans a classes directory and indexes every class that declares a DirtyObject member field or a
+ * {@literal @}Defaulted factory method, together with the superclasses of those classes. It is meant to run
+ * during the process-classes phase so that the index is packaged in the jar, for example:
+ *
+ * <p><pre><code>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;id&gt;dirty-metadata-index&lt;/id&gt;
+ *             &lt;phase&gt;process-classes&lt;/phase&gt;
+ *             &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;com.containerstore.lost.dirty.DirtyMetadataIndexer&lt;/mainClass&gt;
+ *                 &lt;arguments&gt;&lt;argument&gt;${project.build.outputDirectory}&lt;/argument&gt;&lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </code></pre></p>
+ */
+public final class DirtyMetadataIndexer {
+    private static final Logger LOG = Logger.getLogger(DirtyMetadataIndexer.class);
+
+    private DirtyMetadataIndexer() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param args - the classes directory to scan, and optionally the index file to write (defaults to
+     *               META-INF/dirty-metadata.idx under the classes directory)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: DirtyMetadataIndexer <classes directory> [index file]");
+        }
+
+        File classesDirectory = new File(args[0]);
+        File indexFile = args.length > 1
+                ? new File(args[1]) : new File(classesDirectory, DirtyMetadataIndex.INDEX_RESOURCE);
+
+        if (!classesDirectory.isDirectory()) {
+            LOG.info("No classes directory " + classesDirectory + "; no dirty metadata index written");
+            return;
+        }
+
+        ClassLoader parent = Thread.currentThread().getContextClassLoader();
+        URLClassLoader loader = new URLClassLoader(new URL[] {classesDirectory.toURI().toURL()}, parent);
+
+        Set<Class> classes = findIndexedClasses(classesDirectory, loader);
+        if (classes.isEmpty()) {
+            LOG.info("No DirtyObject or @Defaulted classes found in " + classesDirectory);
+            return;
+        }
+
+        File parentDirectory = indexFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+            throw new IOException("Unable to create directory " + parentDirectory);
+        }
+
+        OutputStream out = new FileOutputStream(indexFile);
+        try {
+            DirtyMetadataIndex.write(classes, out);
+        } finally {
+            out.close();
+        }
+
+        LOG.info("Wrote dirty metadata index for " + classes.size() + " classes to " + indexFile);
+    }
+
+    static Set<Class> findIndexedClasses(File classesDirectory, ClassLoader loader) {
+        Set<Class> scanned = Sets.newLinkedHashSet();
+        addClasses(classesDirectory, "", loader, scanned);
+
+        Set<Class> classes = Sets.newLinkedHashSet();
+        for (Class clazz : scanned) {
+            maybeAddClass(clazz, scanned, classes);
+        }
+        return classes;
+    }
+
+    private static void addClasses(File directory, String packagePrefix, ClassLoader loader, Set<Class> classes) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                addClasses(file, packagePrefix + name + ".", loader, classes);
+            } else if (name.endsWith(".class")) {
+                String className = packagePrefix + name.substring(0, name.length() - ".class".length());
+                try {
+                    classes.add(Class.forName(className, false, loader));
+                } catch (ClassNotFoundException e) {
+                    LOG.warn("Unable to load class " + className + " for indexing");
+                } catch (LinkageError e) {
+                    LOG.warn("Unable to load class " + className + " for indexing: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void maybeAddClass(Class clazz, Set<Class> scanned, Set<Class> classes) {
+        DirtyClassMetadata metadata = DirtyClassMetadata.forClass(clazz);
+        if (metadata.getDirtyObjectField() == null && metadata.getDefaultedMethod() == null) {
+            return;
+        }
+
+        // Superclasses are walked by DirtyObjects, so those from the same module are indexed as well.
+        while (metadata != null) {
+            if (scanned.contains(metadata.getMetadataClass())) {
+                classes.add(metadata.getMetadataClass());
+            }
+            metadata = metadata.getSuperclassMetadata();
+        }
+    }
+}
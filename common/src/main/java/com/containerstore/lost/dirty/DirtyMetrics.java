@@ -0,0 +1,162 @@
+package com.containerstore.lost.dirty;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AtomicLongMap;
+import org.apache.log4j.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timings for the reflective hot paths of the dirty package: field lookups in DirtyObject,
+ * default method lookups in ObjectDefaults, DirtyObject member lookups in DirtyObjects, default resolutions by
+ * type, null mode toggles and assignDefaults() durations by class.
+ *
+ * Metrics are disabled by default, in which case every record call is a single volatile read. They can be
+ * enabled at startup with -Ddirty.metrics.enabled=true, or at any time through setEnabled(), including over JMX
+ * once register() has been called. The per-class assignDefaults() timings can then be used to find the classes
+ * that cost the most under live load.
+ */
+public final class DirtyMetrics implements DirtyMetricsMXBean {
+    private static final Logger LOG = Logger.getLogger(DirtyMetrics.class);
+
+    public static final String OBJECT_NAME = "com.containerstore.lost.dirty:type=DirtyMetrics";
+
+    private static final DirtyMetrics INSTANCE = new DirtyMetrics();
+
+    private static volatile boolean enabled = Boolean.getBoolean("dirty.metrics.enabled");
+
+    private static final AtomicLong FIELD_LOOKUPS = new AtomicLong();
+    private static final AtomicLong METHOD_LOOKUPS = new AtomicLong();
+    private static final AtomicLong DIRTY_OBJECT_LOOKUPS = new AtomicLong();
+    private static final AtomicLong NULL_MODE_TOGGLES = new AtomicLong();
+    private static final AtomicLongMap<String> DEFAULT_RESOLUTIONS = AtomicLongMap.create();
+    private static final AtomicLongMap<String> ASSIGN_DEFAULTS_COUNTS = AtomicLongMap.create();
+    private static final AtomicLongMap<String> ASSIGN_DEFAULTS_NANOS = AtomicLongMap.create();
+
+    private DirtyMetrics() {
+    }
+
+    public static DirtyMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. Calling this more than once has no effect.
+     */
+    public static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already registered
+        } catch (JMException e) {
+            LOG.warn("Unable to register " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+    static void recordFieldLookup() {
+        if (enabled) {
+            FIELD_LOOKUPS.incrementAndGet();
+        }
+    }
+
+    static void recordMethodLookup() {
+        if (enabled) {
+            METHOD_LOOKUPS.incrementAndGet();
+        }
+    }
+
+    static void recordDirtyObjectLookup() {
+        if (enabled) {
+            DIRTY_OBJECT_LOOKUPS.incrementAndGet();
+        }
+    }
+
+    static void recordNullModeToggle() {
+        if (enabled) {
+            NULL_MODE_TOGGLES.incrementAndGet();
+        }
+    }
+
+    static void recordDefaultResolution(Class clazz) {
+        if (enabled) {
+            DEFAULT_RESOLUTIONS.incrementAndGet(clazz.getName());
+        }
+    }
+
+    /**
+     * Returns a start time for a timed operation, or 0 if metrics are disabled.
+     */
+    static long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static void recordAssignDefaults(Class clazz, long startTime) {
+        if (startTime != 0) {
+            ASSIGN_DEFAULTS_COUNTS.incrementAndGet(clazz.getName());
+            ASSIGN_DEFAULTS_NANOS.addAndGet(clazz.getName(), System.nanoTime() - startTime);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        DirtyMetrics.enabled = enabled;
+    }
+
+    @Override
+    public long getFieldLookups() {
+        return FIELD_LOOKUPS.get();
+    }
+
+    @Override
+    public long getMethodLookups() {
+        return METHOD_LOOKUPS.get();
+    }
+
+    @Override
+    public long getDirtyObjectLookups() {
+        return DIRTY_OBJECT_LOOKUPS.get();
+    }
+
+    @Override
+    public long getNullModeToggles() {
+        return NULL_MODE_TOGGLES.get();
+    }
+
+    @Override
+    public Map<String, Long> getDefaultResolutions() {
+        return ImmutableMap.copyOf(DEFAULT_RESOLUTIONS.asMap());
+    }
+
+    @Override
+    public Map<String, Long> getAssignDefaultsCounts() {
+        return ImmutableMap.copyOf(ASSIGN_DEFAULTS_COUNTS.asMap());
+    }
+
+    @Override
+    public Map<String, Long> getAssignDefaultsNanos() {
+        return ImmutableMap.copyOf(ASSIGN_DEFAULTS_NANOS.asMap());
+    }
+
+    @Override
+    public void reset() {
+        FIELD_LOOKUPS.set(0);
+        METHOD_LOOKUPS.set(0);
+        DIRTY_OBJECT_LOOKUPS.set(0);
+        NULL_MODE_TOGGLES.set(0);
+        DEFAULT_RESOLUTIONS.clear();
+        ASSIGN_DEFAULTS_COUNTS.clear();
+        ASSIGN_DEFAULTS_NANOS.clear();
+    }
+}
@@ -0,0 +1,28 @@
+package com.containerstore.lost.dirty;
+
+import java.util.Map;
+
+/**
+ * JMX view of DirtyMetrics.
+ */
+public interface DirtyMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getFieldLookups();
+
+    long getMethodLookups();
+
+    long getDirtyObjectLookups();
+
+    long getNullModeToggles();
+
+    Map<String, Long> getDefaultResolutions();
+
+    Map<String, Long> getAssignDefaultsCounts();
+
+    Map<String, Long> getAssignDefaultsNanos();
+
+    void reset();
+}
@@ -1,13 +1,10 @@
 package com.containerstore.lost.dirty;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.log4j.Logger;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -34,14 +31,15 @@ public class DirtyObject {
     private final static Logger LOG = Logger.getLogger(DirtyObject.class);
     private final Object theObject;
     private final Class asClass;
+    private final DirtyClassMetadata metadata;
     private Map<String, Boolean> dirtyList = Maps.newHashMap();
-    private List<String> ignoredFields = Lists.newArrayList();
     private boolean emptyContainersAsNull = false;
     private boolean nullMode = false;
 
     public DirtyObject(Object theObject, Class asClass) {
         this.theObject = theObject;
         this.asClass = asClass;
+        this.metadata = DirtyClassMetadata.forClass(asClass).makeAccessible();
         buildFieldContainers();
     }
 
@@ -49,6 +47,7 @@ public class DirtyObject {
      * Walks through the list of all fields and sets a default value for every field with a null value
      */
     public void assignDefaults() {
+        long startTime = DirtyMetrics.startTimer();
         ObjectDefaults objectDefaults = new ObjectDefaults();
 
         for (String fieldName : dirtyList.keySet()) {
@@ -57,6 +56,7 @@ public class DirtyObject {
                 setValue(fieldName, null, objectDefaults.getDefaultValue(field.getType()));
             }
         }
+        DirtyMetrics.recordAssignDefaults(asClass, startTime);
     }
 
     /**
@@ -105,17 +105,11 @@ public class DirtyObject {
      *
      */
     public void markAllFields() {
-        List<Field> nonNullFields = Lists.newArrayList();
-        for (String fieldName : dirtyList.keySet()) {
-            Field field = getField(fieldName);
-            if (field != null && !isNull(getValue(field.getName(), null))) {
-                nonNullFields.add(field);
+        for (String fieldName : metadata.getTrackedFieldNameArray()) {
+            if (!dirtyList.get(fieldName) && !isNull(getValue(fieldName, null))) {
+                dirtyList.put(fieldName, Boolean.TRUE);
             }
         }
-
-        for (Field field : nonNullFields) {
-            markField(field, true);
-        }
     }
 
     /**
@@ -186,62 +180,34 @@ public class DirtyObject {
      * @param nulLMode  - turns null mode on (true) or off (false)
      */
     public void setNullMode(boolean nulLMode) {
+        DirtyMetrics.recordNullModeToggle();
         this.nullMode = nulLMode;
     }
 
     private void buildFieldContainers() {
-        Field[] fields = asClass.getDeclaredFields();
-
-        for (Field field : fields) {
-            if (ignoreField(field)) {
-                ignoredFields.add(field.getName());
-            } else {
-                dirtyList.put(field.getName(), false);
-            }
+        // Field classification is shared by every DirtyObject for the class; only the dirty flags are per object.
+        for (String fieldName : metadata.getTrackedFieldNames()) {
+            dirtyList.put(fieldName, false);
         }
     }
 
     private Field getField(String fieldName) {
-        try {
-            if(dirtyList.containsKey(fieldName)) {
-                Field field = asClass.getDeclaredField(fieldName);
-                field.setAccessible(true);
-                return field;
-            }
-
-            if (ignoredFields.contains(fieldName)) {
-                return null;
-            }
-
-            throw new NoSuchFieldException("Field " + fieldName + " unsupported for class "
-                    + asClass);
-        } catch(NoSuchFieldException e) {
-            throw new IllegalArgumentException("Field " + fieldName + " unsupported for class "
-                                                + asClass, e);
+        DirtyMetrics.recordFieldLookup();
+        Field field = metadata.getTrackedField(fieldName);
+        if (field != null) {
+            return field;
         }
-    }
 
-    private Field getIgnoredField(String fieldName) {
-        if (ignoredFields.contains(fieldName)) {
-            try {
-                Field field = asClass.getDeclaredField(fieldName);
-                field.setAccessible(true);
-                return field;
-            } catch (NoSuchFieldException e) {
-                LOG.error("Unexpected exception getting ignored field name " + fieldName + " for class "
-                            + asClass);
-            }
+        if (metadata.getIgnoredField(fieldName) != null) {
+            return null;
         }
 
-        return null;
+        throw new IllegalArgumentException("Field " + fieldName + " unsupported for class " + asClass,
+                new NoSuchFieldException(fieldName));
     }
 
-    private boolean ignoreField(Field field) {
-        return (Modifier.isStatic(field.getModifiers())
-                || Modifier.isPublic(field.getModifiers())
-                || Modifier.isFinal(field.getModifiers())
-                || field.getType().isPrimitive()
-                || isThisClass(field));
+    private Field getIgnoredField(String fieldName) {
+        return metadata.getIgnoredField(fieldName);
     }
 
     private boolean isEmptyContainer(Object obj) {
@@ -264,7 +230,6 @@ public class DirtyObject {
     }
 
     private void markField(Field field, boolean dirty) {
-        dirtyList.remove(field.getName());
         dirtyList.put(field.getName(), dirty);
     }
 
@@ -26,50 +26,42 @@ public class DirtyObjects {
 
     public static void assignDefaultsToHierarchy(Object theObject) {
         // Crawl up the object hierarchy so we activate all superclass DirtyObject members as well.
-        Class clazz = theObject.getClass();
-        while(true) {
-            DirtyObject dirtyObject = lookup(theObject, clazz);
+        DirtyClassMetadata metadata = DirtyClassMetadata.forClass(theObject.getClass());
+        while (metadata != null) {
+            DirtyObject dirtyObject = lookup(theObject, metadata);
             if (dirtyObject != null) {
                 dirtyObject.assignDefaults();
             }
 
-            clazz = clazz.getSuperclass();
-            if (clazz == null || clazz.equals(Object.class)) {
-                break;
-            }
+            metadata = metadata.getSuperclassMetadata();
         }
     }
 
     private static void setNullStatus(Object theObject, boolean status) {
         // Crawl up the object hierarchy so we activate all superclass DirtyObject members as well.
-        Class clazz = theObject.getClass();
-        while(true) {
-            DirtyObject dirtyObject = lookup(theObject, clazz);
+        DirtyClassMetadata metadata = DirtyClassMetadata.forClass(theObject.getClass());
+        while (metadata != null) {
+            DirtyObject dirtyObject = lookup(theObject, metadata);
             if (dirtyObject != null) {
                 dirtyObject.setNullMode(status);
             }
 
-            clazz = clazz.getSuperclass();
-            if (clazz == null || clazz.equals(Object.class)) {
-                break;
-            }
+            metadata = metadata.getSuperclassMetadata();
         }
     }
 
-    private static DirtyObject lookup(Object theObject, Class asClass) {
-        Field[] fields = asClass.getDeclaredFields();
+    private static DirtyObject lookup(Object theObject, DirtyClassMetadata metadata) {
+        DirtyMetrics.recordDirtyObjectLookup();
+        Field field = metadata.getDirtyObjectField();
+        if (field == null) {
+            return null;
+        }
 
-        for (Field field : fields) {
-            if (field.getType().equals(DirtyObject.class)) {
-                try {
-                    field.setAccessible(true);
-                    return (DirtyObject)field.get(theObject);
-                } catch (IllegalAccessException e) {
-                    LOG.warn("Exception getting DirtyObject object");
-                    return null;
-                }
-            }
+        try {
+            return (DirtyObject)field.get(theObject);
+        } catch (IllegalAccessException e) {
+            LOG.warn("Exception getting DirtyObject object");
+            return null;
         }
-        return null;
     }
 }
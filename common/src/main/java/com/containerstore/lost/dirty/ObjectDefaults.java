@@ -5,10 +5,10 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.google.common.base.Defaults.*;
 
@@ -25,8 +25,14 @@ import static com.google.common.base.Defaults.*;
  * a function with the signature "getClassDefault(Class class)" that returns a class object.
  *
  * ObjectDefaulter is a helper class that allows defaults to be set for all fields of a desired class.
+ *
+ * newDefaultedInstance() creates new, fully defaulted instances of a class from a prototype that is compiled
+ * once per class and ObjectDefaults subclass.
  */
 public class ObjectDefaults {
+    private static final ConcurrentMap<Class, ConcurrentMap<Class, DefaultedPrototype>> PROTOTYPES =
+            Maps.newConcurrentMap();
+    private static final ConcurrentMap<Class, ConcurrentMap<Class, Method>> METHODS = Maps.newConcurrentMap();
 
     private List<Class> supportedObjects = Lists.<Class>newArrayList(
             Boolean.class,
@@ -54,6 +60,7 @@ public class ObjectDefaults {
      * @return      - default value
      */
     public <T> T getDefaultValue(Class<T> clazz) {
+        DirtyMetrics.recordDefaultResolution(clazz);
         if (clazz.isPrimitive()) {
             return getPrimitiveDefault(clazz);
         }
@@ -75,6 +82,27 @@ public class ObjectDefaults {
         return getObjectDefault(clazz);
     }
 
+    /**
+     * Creates a new instance of the given class using its no-argument constructor, with all
+     * non-static/non-final/non-inherited member fields set to their default values. The result is the same as
+     * constructing the object and calling ObjectDefaulter.setObjectDefaults(object, this), but the defaults are
+     * resolved once per class and ObjectDefaults subclass rather than on every call.
+     *
+     * @param clazz - class type, which must declare a no-argument constructor
+     * @param <T>   - class object type
+     * @return      - new defaulted instance
+     */
+    public <T> T newDefaultedInstance(Class<T> clazz) {
+        ConcurrentMap<Class, DefaultedPrototype> prototypes = getClassCache(PROTOTYPES);
+        DefaultedPrototype<T> prototype = prototypes.get(clazz);
+        if (prototype == null) {
+            prototypes.putIfAbsent(clazz, DefaultedPrototype.compile(clazz, this));
+            prototype = prototypes.get(clazz);
+        }
+
+        return prototype.newInstance(this);
+    }
+
     protected void addSupportedObject(Class clazz) {
         supportedObjects.add(clazz);
     }
@@ -130,18 +158,12 @@ public class ObjectDefaults {
 
     protected <T> T getObjectDefault(Class<T> clazz) {
         // Determine if defaulted
-        for (Method each : clazz.getMethods()) {
-            each.setAccessible(true);
-            if (each.getAnnotation(Defaulted.class) != null
-                    && Modifier.isStatic(each.getModifiers())
-                    && each.getParameterTypes().length == 0
-                    && clazz.equals(each.getReturnType())) {
-
-                try {
-                    return (T)each.invoke(null);
-                } catch (Exception e) {
-                    throw new IllegalStateException("Excepting invoking enumeration class " + clazz.getName(), e);
-                }
+        Method defaulted = DirtyClassMetadata.forClass(clazz).getDefaultedMethod();
+        if (defaulted != null) {
+            try {
+                return (T)defaulted.invoke(null);
+            } catch (Exception e) {
+                throw new IllegalStateException("Excepting invoking enumeration class " + clazz.getName(), e);
             }
         }
 
@@ -170,13 +192,35 @@ public class ObjectDefaults {
         return "get" + name + "Default";
     }
 
+    private <V> ConcurrentMap<Class, V> getClassCache(ConcurrentMap<Class, ConcurrentMap<Class, V>> caches) {
+        ConcurrentMap<Class, V> cache = caches.get(getClass());
+        if (cache == null) {
+            caches.putIfAbsent(getClass(), Maps.<Class, V>newConcurrentMap());
+            cache = caches.get(getClass());
+        }
+        return cache;
+    }
+
     private Method getMethod(Class clazz) {
-        // Using reflection, we have to do our own polymorphism. If a method doesn't exist for the current class,
-        // crawl up the hierarchy until we get to
         if (!supportedObjects.contains(clazz)) {
             return null;
         }
 
+        // The method for a class only depends on the ObjectDefaults subclass, so it is resolved once per subclass.
+        ConcurrentMap<Class, Method> methods = getClassCache(METHODS);
+        Method method = methods.get(clazz);
+        if (method == null) {
+            method = findMethod(clazz);
+            methods.putIfAbsent(clazz, method);
+        }
+        return method;
+    }
+
+    private Method findMethod(Class clazz) {
+        DirtyMetrics.recordMethodLookup();
+
+        // Using reflection, we have to do our own polymorphism. If a method doesn't exist for the current class,
+        // crawl up the hierarchy until we get to
         Class thisClazz = getClass();
         String methodName = getClassMethodName(clazz);
         while(true) {
@@ -0,0 +1,39 @@
+package com.containerstore.lost.googlemaps;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utility methods for address strings used as lookup keys.
+ */
+public final class Addresses {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SPACE_BEFORE_COMMA = Pattern.compile(" ,");
+
+    private Addresses() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a normalized form of the address for use as a cache or index key: trimmed, lower case, with runs
+     * of whitespace collapsed to a single space and no space before commas. Addresses that differ only in
+     * these respects geocode to the same location.
+     */
+    public static String normalize(String address) {
+        if (address == null) {
+            return null;
+        }
+
+        String normalized = WHITESPACE.matcher(address.trim()).replaceAll(" ");
+        normalized = SPACE_BEFORE_COMMA.matcher(normalized).replaceAll(",");
+        return normalized.toLowerCase(Locale.US);
+    }
+
+    /**
+     * Returns the key for a distance matrix element: the request options key and the normalized origin and
+     * destination.
+     */
+    public static String pairKey(String optionsKey, String origin, String destination) {
+        return optionsKey + '\u0000' + normalize(origin) + '\u0000' + normalize(destination);
+    }
+}
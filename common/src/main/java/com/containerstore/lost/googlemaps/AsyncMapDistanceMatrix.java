@@ -0,0 +1,10 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+public interface AsyncMapDistanceMatrix {
+    /**
+     * Returns a future for the result of the request, as MapDistanceMatrix.query would return it.
+     */
+    ListenableFuture<MapDistanceResult> queryAsync(MapDistanceRequest request);
+}
@@ -0,0 +1,10 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+public interface AsyncMapGeocoding {
+    /**
+     * Returns a future for the location of the address, as MapGeocoding.getLocation would return it.
+     */
+    ListenableFuture<LatAndLong> getLocationAsync(String address);
+}
@@ -0,0 +1,286 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A MapDistanceMatrix decorator that coalesces concurrent requests into combined delegate calls.
+ *
+ * Requests with the same options that arrive within a short window of the first are collected into a batch,
+ * which is sent as one request for the union of their origins and destinations. Each caller then gets a result
+ * holding just its own elements. A batch is sent early once it reaches the element budget, and a request that
+ * would take a batch over the budget starts a new one. Because the combined request covers every origin against
+ * every destination, a request that would make it larger than the callers' own requests put together (one with
+ * different destinations, say) is sent on its own instead of paying for elements nobody asked for.
+ *
+ * Batches are sent to the delegate on a pool of sender threads, never on the calling thread or the timer thread.
+ *
+ * This trades a few milliseconds of latency for far fewer remote calls when many small requests share
+ * destinations, as when ranking stores. It is opt-in: construct it around the distance matrix that MapQuery
+ * should use, and call shutdown() when it is no longer needed.
+ */
+public class BatchingMapDistanceMatrix implements MapDistanceMatrix, AsyncMapDistanceMatrix {
+    public static final long DEFAULT_WINDOW_MILLIS = 5;
+    public static final int DEFAULT_MAXIMUM_ELEMENTS = 100;
+    public static final int DEFAULT_THREADS = 4;
+
+    private static final class Caller {
+        private final MapDistanceRequest request;
+        private final SettableFuture<MapDistanceResult> future = SettableFuture.create();
+
+        Caller(MapDistanceRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static final class Batch {
+        private final String optionsKey;
+        private final MapDistanceRequest template;
+        private final Set<String> origins = Sets.newLinkedHashSet();
+        private final Set<String> destinations = Sets.newLinkedHashSet();
+        private final List<Caller> callers = Lists.newArrayList();
+        private int requestedElements = 0;
+        private ScheduledFuture<?> timer;
+
+        Batch(String optionsKey, MapDistanceRequest template) {
+            this.optionsKey = optionsKey;
+            this.template = template;
+        }
+
+        int elementsWith(MapDistanceRequest request) {
+            Set<String> combinedOrigins = Sets.union(origins, Sets.newHashSet(request.getOrigins()));
+            Set<String> combinedDestinations = Sets.union(destinations, Sets.newHashSet(request.getDestinations()));
+            return combinedOrigins.size() * combinedDestinations.size();
+        }
+
+        /**
+         * Whether the combined request with this one added would cover no more elements than the callers'
+         * requests do between them.
+         */
+        boolean fits(MapDistanceRequest request) {
+            return elementsWith(request) <= requestedElements + elements(request);
+        }
+
+        void add(Caller caller) {
+            callers.add(caller);
+            requestedElements += elements(caller.request);
+            origins.addAll(caller.request.getOrigins());
+            destinations.addAll(caller.request.getDestinations());
+        }
+
+        int elements() {
+            return origins.size() * destinations.size();
+        }
+
+        static int elements(MapDistanceRequest request) {
+            return Sets.newHashSet(request.getOrigins()).size() * Sets.newHashSet(request.getDestinations()).size();
+        }
+    }
+
+    private final MapDistanceMatrix delegate;
+    private final long windowNanos;
+    private final int maximumElements;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService sender;
+    private final Map<String, Batch> pending = Maps.newHashMap();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    public BatchingMapDistanceMatrix(MapDistanceMatrix delegate) {
+        this(delegate, DEFAULT_WINDOW_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_MAXIMUM_ELEMENTS, DEFAULT_THREADS);
+    }
+
+    /**
+     * @param delegate        - the distance matrix that combined requests are sent to
+     * @param window          - how long a batch collects requests after its first request arrives
+     * @param unit            - the unit of the window
+     * @param maximumElements - the element budget of a batch
+     * @param threads         - the number of threads sending batches to the delegate
+     */
+    public BatchingMapDistanceMatrix(MapDistanceMatrix delegate, long window, TimeUnit unit, int maximumElements,
+                                     int threads) {
+        if (maximumElements < 1 || threads < 1) {
+            throw new IllegalArgumentException("Element budget and threads must be positive");
+        }
+
+        this.delegate = delegate;
+        this.windowNanos = unit.toNanos(window);
+        this.maximumElements = maximumElements;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("distance-batch-timer-%d")
+                .setDaemon(true)
+                .build());
+        this.sender = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("distance-batch-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public MapDistanceResult query(MapDistanceRequest request) {
+        try {
+            return queryAsync(request).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for distance batch", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Distance batch failed", e.getCause());
+        }
+    }
+
+    /**
+     * Adds the request to a batch and returns a future for its result. The future fails with the delegate's
+     * exception if the combined request throws.
+     */
+    @Override
+    public ListenableFuture<MapDistanceResult> queryAsync(MapDistanceRequest request) {
+        requestCount.incrementAndGet();
+        Caller caller = new Caller(request);
+
+        Batch full = null;
+        Batch overflow = null;
+        Batch alone = null;
+        synchronized (pending) {
+            String optionsKey = request.getOptionsKey();
+            Batch batch = pending.get(optionsKey);
+            if (batch != null && !batch.fits(request)) {
+                alone = new Batch(optionsKey, request.copy());
+                alone.add(caller);
+            } else if (batch != null && batch.elementsWith(request) > maximumElements) {
+                overflow = take(batch);
+                batch = null;
+            }
+
+            if (alone == null && batch == null) {
+                batch = new Batch(optionsKey, request.copy());
+                pending.put(optionsKey, batch);
+                final Batch scheduled = batch;
+                batch.timer = scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatch(take(scheduled));
+                    }
+                }, windowNanos, TimeUnit.NANOSECONDS);
+            }
+
+            if (alone == null) {
+                batch.add(caller);
+                if (batch.elements() >= maximumElements) {
+                    full = take(batch);
+                }
+            }
+        }
+
+        dispatch(overflow);
+        dispatch(full);
+        dispatch(alone);
+        return caller.future;
+    }
+
+    /**
+     * Sends any pending batches and stops the timer and sender threads once they have been sent.
+     */
+    public void shutdown() {
+        List<Batch> remaining;
+        synchronized (pending) {
+            remaining = Lists.newArrayList(pending.values());
+            pending.clear();
+        }
+
+        for (Batch batch : remaining) {
+            batch.timer.cancel(false);
+            dispatch(batch);
+        }
+        scheduler.shutdown();
+        sender.shutdown();
+    }
+
+    /**
+     * Number of requests submitted.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Number of combined requests sent to the delegate.
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Removes the batch from the pending batches, returning null if it has already been taken.
+     */
+    private Batch take(Batch batch) {
+        synchronized (pending) {
+            if (pending.get(batch.optionsKey) != batch) {
+                return null;
+            }
+            pending.remove(batch.optionsKey);
+        }
+        batch.timer.cancel(false);
+        return batch;
+    }
+
+    private void dispatch(final Batch batch) {
+        if (batch == null) {
+            return;
+        }
+
+        try {
+            sender.execute(new Runnable() {
+                @Override
+                public void run() {
+                    send(batch);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down while the batch was being taken; its callers are still waiting for an answer.
+            send(batch);
+        }
+    }
+
+    private void send(Batch batch) {
+        batchCount.incrementAndGet();
+        MapDistanceResult result;
+        try {
+            MapDistanceRequest combined = batch.template.copy()
+                    .withOrigins(batch.origins)
+                    .withDestinations(batch.destinations);
+            result = delegate.query(combined);
+        } catch (RuntimeException e) {
+            for (Caller caller : batch.callers) {
+                caller.future.setException(e);
+            }
+            return;
+        }
+
+        for (Caller caller : batch.callers) {
+            caller.future.set(result == null ? null : MatrixDistanceResult
+                    .result(caller.request.getOrigins(), caller.request.getDestinations())
+                    .withElements(result, caller.request.getOrigins(), caller.request.getDestinations())
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A MapDistanceMatrix decorator that caches individual origin-destination elements, keyed by the request options
+ * and the normalized origin and destination.
+ *
+ * Each query is answered from the cache where possible. The pairs that are not cached are covered by as few
+ * sub-requests to the delegate as possible: origins that are missing exactly the same destinations share one
+ * sub-request (or, if it gives fewer sub-requests, destinations that are missing exactly the same origins do),
+ * so no element is fetched that is already cached. When one sub-request for every missing origin and destination
+ * would take fewer provider calls (at DEFAULT_ELEMENTS_PER_CALL elements a call) without fetching more than
+ * twice the missing elements, that is sent instead. Several sub-requests are sent concurrently.
+ *
+ * Cached and fetched elements are merged into a single MatrixDistanceResult, which is incomplete if any
+ * sub-request's result was (see MatrixDistanceResult.isComplete()). Elements without a result are not cached.
+ *
+ * This is the primary MapDistanceMatrix bean, so MapQuery uses it in front of GoogleDistanceMatrix; misses go
+ * through SingleFlightMapDistanceMatrix, and GoogleDistanceMatrix paces each tile with the MapsCallScheduler.
+ */
+@Primary
+@Component("CachingMapDistanceMatrix")
+public class CachingMapDistanceMatrix implements MapDistanceMatrix {
+    public static final long DEFAULT_MAXIMUM_SIZE = 100000;
+    public static final long DEFAULT_TTL_MINUTES = TimeUnit.DAYS.toMinutes(1);
+    public static final int DEFAULT_ELEMENTS_PER_CALL = 100;
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * A sub-request covering every pair of its origins and destinations.
+     */
+    static final class Block {
+        private final List<String> origins;
+        private final List<String> destinations;
+
+        Block(List<String> origins, List<String> destinations) {
+            this.origins = origins;
+            this.destinations = destinations;
+        }
+
+        List<String> getOrigins() {
+            return origins;
+        }
+
+        List<String> getDestinations() {
+            return destinations;
+        }
+
+        int elements() {
+            return origins.size() * destinations.size();
+        }
+    }
+
+    private final MapDistanceMatrix delegate;
+    private final Cache<String, double[]> elements;
+    private final ExecutorService executor;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong subRequestCount = new AtomicLong();
+
+    @Autowired
+    public CachingMapDistanceMatrix(@Qualifier("SingleFlightMapDistanceMatrix") MapDistanceMatrix delegate) {
+        this(delegate, DEFAULT_MAXIMUM_SIZE, DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public CachingMapDistanceMatrix(MapDistanceMatrix delegate, long maximumSize, long ttl, TimeUnit unit) {
+        this(delegate, maximumSize, ttl, unit, Ticker.systemTicker());
+    }
+
+    CachingMapDistanceMatrix(MapDistanceMatrix delegate, long maximumSize, long ttl, TimeUnit unit, Ticker ticker) {
+        this.delegate = delegate;
+        this.elements = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl, unit)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.executor = Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactoryBuilder()
+                .setNameFormat("distance-cache-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public MapDistanceResult query(MapDistanceRequest request) {
+        String optionsKey = request.getOptionsKey();
+        List<String> origins = ImmutableSet.copyOf(request.getOrigins()).asList();
+        List<String> destinations = ImmutableSet.copyOf(request.getDestinations()).asList();
+
+        MatrixDistanceResult.MatrixDistanceResultBuilder builder = MatrixDistanceResult.result(origins, destinations);
+        Map<String, Set<String>> missing = Maps.newLinkedHashMap();
+        for (String origin : origins) {
+            for (String destination : destinations) {
+                double[] element = elements.getIfPresent(Addresses.pairKey(optionsKey, origin, destination));
+                if (element != null) {
+                    hitCount.incrementAndGet();
+                    builder.withElement(origin, destination, element[0], element[1]);
+                } else {
+                    missCount.incrementAndGet();
+                    Set<String> missingDestinations = missing.get(origin);
+                    if (missingDestinations == null) {
+                        missingDestinations = Sets.newLinkedHashSet();
+                        missing.put(origin, missingDestinations);
+                    }
+                    missingDestinations.add(destination);
+                }
+            }
+        }
+
+        List<Block> blocks = planSubRequests(missing, DEFAULT_ELEMENTS_PER_CALL);
+        List<MapDistanceResult> results = querySubRequests(request, blocks);
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            MapDistanceResult result = results.get(i);
+            if (result == null) {
+                continue;
+            }
+
+            builder.withElements(result, block.getOrigins(), block.getDestinations());
+            for (String origin : block.getOrigins()) {
+                for (String destination : block.getDestinations()) {
+                    double distance = result.getDistance(origin, destination);
+                    if (distance >= 0) {
+                        elements.put(Addresses.pairKey(optionsKey, origin, destination),
+                                new double[] {distance, result.getDuration(origin, destination)});
+                    }
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Stops the threads used to send sub-requests concurrently.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Sends the sub-requests, concurrently if there is more than one, and returns their results in order.
+     */
+    private List<MapDistanceResult> querySubRequests(MapDistanceRequest request, List<Block> blocks) {
+        List<MapDistanceResult> results = Lists.newArrayListWithCapacity(blocks.size());
+        List<Callable<MapDistanceResult>> tasks = Lists.newArrayListWithCapacity(blocks.size());
+        for (Block block : blocks) {
+            subRequestCount.incrementAndGet();
+            final MapDistanceRequest subRequest = request.copy()
+                    .withOrigins(block.getOrigins())
+                    .withDestinations(block.getDestinations());
+            if (blocks.size() == 1) {
+                results.add(delegate.query(subRequest));
+                return results;
+            }
+            tasks.add(new Callable<MapDistanceResult>() {
+                @Override
+                public MapDistanceResult call() {
+                    return delegate.query(subRequest);
+                }
+            });
+        }
+        if (tasks.isEmpty()) {
+            return results;
+        }
+
+        try {
+            for (Future<MapDistanceResult> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for distance sub-requests", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Distance sub-request failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Returns the fewest blocks, grouping either by origin or by destination, that exactly cover the missing
+     * destinations of each origin, or a single block of every missing origin and destination if that needs
+     * fewer calls of elementsPerCall elements and fetches no more than twice the missing elements.
+     */
+    static List<Block> planSubRequests(Map<String, Set<String>> missingByOrigin, int elementsPerCall) {
+        if (missingByOrigin.isEmpty()) {
+            return Lists.newArrayList();
+        }
+
+        int missingElements = 0;
+        Map<String, Set<String>> missingByDestination = Maps.newLinkedHashMap();
+        for (Map.Entry<String, Set<String>> entry : missingByOrigin.entrySet()) {
+            missingElements += entry.getValue().size();
+            for (String destination : entry.getValue()) {
+                Set<String> missingOrigins = missingByDestination.get(destination);
+                if (missingOrigins == null) {
+                    missingOrigins = Sets.newLinkedHashSet();
+                    missingByDestination.put(destination, missingOrigins);
+                }
+                missingOrigins.add(entry.getKey());
+            }
+        }
+
+        Map<Set<String>, List<String>> originGroups = group(missingByOrigin);
+        Map<Set<String>, List<String>> destinationGroups = group(missingByDestination);
+
+        List<Block> blocks = Lists.newArrayList();
+        if (originGroups.size() <= destinationGroups.size()) {
+            for (Map.Entry<Set<String>, List<String>> entry : originGroups.entrySet()) {
+                blocks.add(new Block(entry.getValue(), Lists.newArrayList(entry.getKey())));
+            }
+        } else {
+            for (Map.Entry<Set<String>, List<String>> entry : destinationGroups.entrySet()) {
+                blocks.add(new Block(Lists.newArrayList(entry.getKey()), entry.getValue()));
+            }
+        }
+
+        Block bounding = new Block(Lists.newArrayList(missingByOrigin.keySet()),
+                Lists.newArrayList(missingByDestination.keySet()));
+        if (blocks.size() > 1 && bounding.elements() <= 2 * missingElements
+                && calls(bounding, elementsPerCall) < calls(blocks, elementsPerCall)) {
+            return Lists.newArrayList(bounding);
+        }
+        return blocks;
+    }
+
+    private static int calls(List<Block> blocks, int elementsPerCall) {
+        int calls = 0;
+        for (Block block : blocks) {
+            calls += calls(block, elementsPerCall);
+        }
+        return calls;
+    }
+
+    private static int calls(Block block, int elementsPerCall) {
+        return (block.elements() + elementsPerCall - 1) / elementsPerCall;
+    }
+
+    private static Map<Set<String>, List<String>> group(Map<String, Set<String>> missing) {
+        Map<Set<String>, List<String>> groups = Maps.newLinkedHashMap();
+        for (Map.Entry<String, Set<String>> entry : missing.entrySet()) {
+            List<String> group = groups.get(entry.getValue());
+            if (group == null) {
+                group = Lists.newArrayList();
+                groups.put(entry.getValue(), group);
+            }
+            group.add(entry.getKey());
+        }
+        return groups;
+    }
+
+    /**
+     * Removes all cached elements.
+     */
+    public void invalidateAll() {
+        elements.invalidateAll();
+    }
+
+    /**
+     * Number of elements answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Number of elements passed to the delegate.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Number of sub-requests made to the delegate.
+     */
+    public long getSubRequestCount() {
+        return subRequestCount.get();
+    }
+
+    /**
+     * Fraction of elements answered from the cache.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    /**
+     * Number of elements evicted to keep the cache within its maximum size.
+     */
+    public long getEvictionCount() {
+        return elements.stats().evictionCount();
+    }
+
+    public long size() {
+        return elements.size();
+    }
+}
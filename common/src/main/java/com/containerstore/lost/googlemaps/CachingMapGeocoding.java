@@ -0,0 +1,140 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A MapGeocoding decorator that keeps geocoded locations in a bounded in-memory cache keyed by normalized
+ * address, so that repeated lookups of the same address do not make a remote call.
+ *
+ * Locations expire after a time-to-live. Addresses that geocode to no result are cached separately with their
+ * own (normally shorter) time-to-live, so that bad addresses do not repeatedly cost a remote call either.
+ * Exceptions from the delegate are not cached.
+ *
+ * This is the primary MapGeocoding bean, so MapQuery uses it in front of GoogleGeocoding; misses go through
+ * SingleFlightMapGeocoding and RateLimitedMapGeocoding.
+ */
+@Primary
+@Component("CachingMapGeocoding")
+public class CachingMapGeocoding implements MapGeocoding {
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    public static final long DEFAULT_TTL_MINUTES = TimeUnit.DAYS.toMinutes(1);
+    public static final long DEFAULT_NEGATIVE_TTL_MINUTES = 60;
+
+    private final MapGeocoding delegate;
+    private final Cache<String, LatAndLong> locations;
+    private final Cache<String, Boolean> noResults;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong noResultHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Autowired
+    public CachingMapGeocoding(@Qualifier("SingleFlightMapGeocoding") MapGeocoding delegate) {
+        this(delegate, DEFAULT_MAXIMUM_SIZE, DEFAULT_TTL_MINUTES, DEFAULT_NEGATIVE_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public CachingMapGeocoding(MapGeocoding delegate, long maximumSize, long ttl, long negativeTtl,
+                               TimeUnit unit) {
+        this(delegate, maximumSize, ttl, negativeTtl, unit, Ticker.systemTicker());
+    }
+
+    CachingMapGeocoding(MapGeocoding delegate, long maximumSize, long ttl, long negativeTtl, TimeUnit unit,
+                        Ticker ticker) {
+        this.delegate = delegate;
+        this.locations = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl, unit)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.noResults = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(negativeTtl, unit)
+                .ticker(ticker)
+                .build();
+    }
+
+    @Override
+    public LatAndLong getLocation(String address) {
+        String key = Addresses.normalize(address);
+
+        LatAndLong location = locations.getIfPresent(key);
+        if (location != null) {
+            hitCount.incrementAndGet();
+            return location;
+        }
+
+        if (noResults.getIfPresent(key) != null) {
+            noResultHitCount.incrementAndGet();
+            return null;
+        }
+
+        missCount.incrementAndGet();
+        location = delegate.getLocation(address);
+        if (location == null) {
+            noResults.put(key, Boolean.TRUE);
+        } else {
+            locations.put(key, location);
+        }
+
+        return location;
+    }
+
+    /**
+     * Removes all cached locations and no-result entries.
+     */
+    public void invalidateAll() {
+        locations.invalidateAll();
+        noResults.invalidateAll();
+    }
+
+    /**
+     * Number of lookups answered with a cached location.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Number of lookups answered with a cached no-result.
+     */
+    public long getNoResultHitCount() {
+        return noResultHitCount.get();
+    }
+
+    /**
+     * Number of lookups passed to the delegate.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Fraction of lookups answered from the cache, including cached no-results.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get() + noResultHitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    /**
+     * Number of locations evicted to keep the cache within its maximum size.
+     */
+    public long getEvictionCount() {
+        return locations.stats().evictionCount();
+    }
+
+    public long size() {
+        return locations.size();
+    }
+}
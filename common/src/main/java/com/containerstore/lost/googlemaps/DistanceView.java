@@ -0,0 +1,138 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * A read-only view of one row (an origin and all destinations) or one column (a destination and all origins)
+ * of a MatrixDistanceResult. It reads the result's arrays directly, so it costs nothing to create and nothing
+ * per element read. Missing elements are -1.
+ */
+public final class DistanceView {
+    private final List<String> locations;
+    private final double[] distances;
+    private final double[] durations;
+    private final int offset;
+    private final int stride;
+
+    DistanceView(List<String> locations, double[] distances, double[] durations, int offset, int stride) {
+        this.locations = locations;
+        this.distances = distances;
+        this.durations = durations;
+        this.offset = offset;
+        this.stride = stride;
+    }
+
+    /**
+     * The number of elements: destinations for a row, origins for a column.
+     */
+    public int size() {
+        return locations.size();
+    }
+
+    /**
+     * The destination (for a row) or origin (for a column) of the element at the index.
+     */
+    public String getLocation(int index) {
+        return locations.get(index);
+    }
+
+    public double getDistance(int index) {
+        return distances[offset + index * stride];
+    }
+
+    public double getDuration(int index) {
+        return durations[offset + index * stride];
+    }
+
+    /**
+     * Returns the indexes of up to k elements with the shortest durations, shortest first. Elements without a
+     * result are never included.
+     */
+    public int[] nearestByDuration(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+
+        // Bounded max-heap of the k shortest durations seen so far, keyed by index.
+        int[] heap = new int[Math.min(k, size())];
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            double duration = getDuration(i);
+            if (duration < 0 || heap.length == 0) {
+                continue;
+            }
+
+            if (count < heap.length) {
+                heap[count] = i;
+                siftUp(heap, count++);
+            } else if (duration < getDuration(heap[0])) {
+                heap[0] = i;
+                siftDown(heap, 0, count);
+            }
+        }
+
+        int[] nearest = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            nearest[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, 0, i);
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns up to k locations with the shortest durations, shortest first.
+     */
+    public List<String> nearestLocationsByDuration(int k) {
+        int[] nearest = nearestByDuration(k);
+        List<String> result = Lists.newArrayListWithCapacity(nearest.length);
+        for (int index : nearest) {
+            result.add(getLocation(index));
+        }
+        return result;
+    }
+
+    private boolean longer(int first, int second) {
+        double firstDuration = getDuration(first);
+        double secondDuration = getDuration(second);
+        return firstDuration > secondDuration || (firstDuration == secondDuration && first > second);
+    }
+
+    private void siftUp(int[] heap, int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!longer(heap[position], heap[parent])) {
+                return;
+            }
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int position, int count) {
+        while (true) {
+            int largest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < count && longer(heap[left], heap[largest])) {
+                largest = left;
+            }
+            if (right < count && longer(heap[right], heap[largest])) {
+                largest = right;
+            }
+            if (largest == position) {
+                return;
+            }
+            swap(heap, position, largest);
+            position = largest;
+        }
+    }
+
+    private static void swap(int[] heap, int first, int second) {
+        int swap = heap[first];
+        heap[first] = heap[second];
+        heap[second] = swap;
+    }
+}
@@ -0,0 +1,32 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs a blocking MapDistanceMatrix on an executor, so that callers get a future instead of waiting for the
+ * remote call. This is not non-blocking I/O: each query holds one of the executor's worker threads for the
+ * whole remote call, so at most as many queries as the executor has threads are in flight and the rest wait
+ * in its queue.
+ */
+public class ExecutorAsyncMapDistanceMatrix implements AsyncMapDistanceMatrix {
+    private final MapDistanceMatrix delegate;
+    private final ListeningExecutorService executor;
+
+    public ExecutorAsyncMapDistanceMatrix(MapDistanceMatrix delegate, ListeningExecutorService executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public ListenableFuture<MapDistanceResult> queryAsync(final MapDistanceRequest request) {
+        return executor.submit(new Callable<MapDistanceResult>() {
+            @Override
+            public MapDistanceResult call() {
+                return delegate.query(request);
+            }
+        });
+    }
+}
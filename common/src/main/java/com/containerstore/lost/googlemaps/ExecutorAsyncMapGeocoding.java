@@ -0,0 +1,32 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs a blocking MapGeocoding on an executor, so that callers get a future instead of waiting for the
+ * remote call. This is not non-blocking I/O: each lookup holds one of the executor's worker threads for the
+ * whole remote call, so at most as many lookups as the executor has threads are in flight and the rest wait
+ * in its queue.
+ */
+public class ExecutorAsyncMapGeocoding implements AsyncMapGeocoding {
+    private final MapGeocoding delegate;
+    private final ListeningExecutorService executor;
+
+    public ExecutorAsyncMapGeocoding(MapGeocoding delegate, ListeningExecutorService executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public ListenableFuture<LatAndLong> getLocationAsync(final String address) {
+        return executor.submit(new Callable<LatAndLong>() {
+            @Override
+            public LatAndLong call() {
+                return delegate.getLocation(address);
+            }
+        });
+    }
+}
@@ -0,0 +1,33 @@
+package com.containerstore.lost.googlemaps;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A MapGeocoding that asks the primary geocoding first and the fallback when the primary fails or finds
+ * nothing, for example GoogleGeocoding backed by a GazetteerMapGeocoding for when the network is down.
+ */
+public class FallbackMapGeocoding implements MapGeocoding {
+    private static final Logger LOG = Logger.getLogger(FallbackMapGeocoding.class);
+
+    private final MapGeocoding primary;
+    private final MapGeocoding fallback;
+
+    public FallbackMapGeocoding(MapGeocoding primary, MapGeocoding fallback) {
+        this.primary = primary;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public LatAndLong getLocation(String address) {
+        try {
+            LatAndLong location = primary.getLocation(address);
+            if (location != null) {
+                return location;
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Geocoding failed, using fallback for " + address + ": " + e.getMessage());
+        }
+
+        return fallback.getLocation(address);
+    }
+}
@@ -0,0 +1,285 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only, memory-mapped index of place names (postal codes, cities, streets, any address) to locations,
+ * compiled from a CSV gazetteer so that addresses can be geocoded with no network.
+ *
+ * Each CSV line is "name,latitude,longitude". The name may itself contain commas; the last two fields are the
+ * coordinates. Blank lines and lines starting with '#' are skipped, and a later line for a name replaces an
+ * earlier one. Names are stored normalized (Addresses.normalize), so lookups ignore case and spacing.
+ *
+ * The compiled index holds the names sorted by their UTF-8 bytes, each with its location as a PackedLatLong.
+ * A lookup is a binary search of the mapped file, and names with a given prefix are adjacent. Lookups are thread
+ * safe and do not allocate beyond the key's bytes.
+ */
+public final class Gazetteer implements Closeable {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x47415A31;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 4 + 8;
+    private static final int MAX_KEY_LENGTH = 0xFFFF;
+
+    private static final Comparator<byte[]> UNSIGNED_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] first, byte[] second) {
+            int length = Math.min(first.length, second.length);
+            for (int i = 0; i < length; i++) {
+                int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return first.length - second.length;
+        }
+    };
+
+    private final MappedByteBuffer index;
+    private final int count;
+
+    private Gazetteer(MappedByteBuffer index) throws IOException {
+        if (index.capacity() < HEADER_SIZE || index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+            throw new IOException("Not a gazetteer index");
+        }
+        this.index = index;
+        this.count = index.getInt(8);
+        if (HEADER_SIZE + (long) count * ENTRY_SIZE > index.capacity()) {
+            throw new IOException("Truncated gazetteer index");
+        }
+    }
+
+    /**
+     * Compiles the CSV gazetteer into an index file, replacing any existing index.
+     *
+     * @return - the number of names in the index
+     */
+    public static int compile(File csv, File indexFile) throws IOException {
+        Map<String, Long> locations = Maps.newHashMap();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csv), UTF8));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+
+                int longitudeComma = trimmed.lastIndexOf(',');
+                int latitudeComma = longitudeComma < 0 ? -1 : trimmed.lastIndexOf(',', longitudeComma - 1);
+                if (latitudeComma <= 0) {
+                    throw new IOException("Expected name,latitude,longitude at line " + lineNumber + " of " + csv);
+                }
+                try {
+                    double latitude = Double.parseDouble(trimmed.substring(latitudeComma + 1, longitudeComma));
+                    double longitude = Double.parseDouble(trimmed.substring(longitudeComma + 1));
+                    locations.put(Addresses.normalize(trimmed.substring(0, latitudeComma)),
+                            PackedLatLong.pack(latitude, longitude));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid location at line " + lineNumber + " of " + csv + ": "
+                            + e.getMessage());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        write(locations, indexFile);
+        return locations.size();
+    }
+
+    /**
+     * Maps a compiled index for reading.
+     */
+    public static Gazetteer open(File indexFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        try {
+            return new Gazetteer(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        } finally {
+            file.close();
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the location of the name, or null if it is not in the gazetteer.
+     */
+    public LatAndLong getLocation(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        int entry = find(Addresses.normalize(name).getBytes(UTF8));
+        return entry < 0 ? null : PackedLatLong.toLatAndLong(packedLocation(entry));
+    }
+
+    /**
+     * Returns up to limit names that start with the prefix, normalized, in byte order.
+     */
+    public List<String> getNamesWithPrefix(String prefix, int limit) {
+        byte[] prefixBytes = Addresses.normalize(prefix).getBytes(UTF8);
+        List<String> names = Lists.newArrayList();
+        int entry = lowerBound(prefixBytes);
+        while (entry < count && names.size() < limit && startsWith(entry, prefixBytes)) {
+            names.add(name(entry));
+            entry++;
+        }
+        return names;
+    }
+
+    /**
+     * Returns every name in the gazetteer with its location, for building other indexes from it.
+     */
+    public Map<String, LatAndLong> getLocations() {
+        Map<String, LatAndLong> locations = Maps.newLinkedHashMap();
+        for (int entry = 0; entry < count; entry++) {
+            locations.put(name(entry), PackedLatLong.toLatAndLong(packedLocation(entry)));
+        }
+        return locations;
+    }
+
+    /**
+     * Does nothing: the mapping is released when the Gazetteer is garbage collected.
+     */
+    @Override
+    public void close() {
+    }
+
+    private int find(byte[] key) {
+        int entry = lowerBound(key);
+        return entry < count && compare(entry, key) == 0 ? entry : -1;
+    }
+
+    /**
+     * Returns the first entry whose name is not less than the key.
+     */
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int entry, byte[] key) {
+        int position = nameOffset(entry);
+        int length = index.getShort(position) & 0xFFFF;
+        position += 2;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (index.get(position + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private boolean startsWith(int entry, byte[] prefix) {
+        int position = nameOffset(entry);
+        int length = index.getShort(position) & 0xFFFF;
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (index.get(position + 2 + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String name(int entry) {
+        int position = nameOffset(entry);
+        byte[] bytes = new byte[index.getShort(position) & 0xFFFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = index.get(position + 2 + i);
+        }
+        return new String(bytes, UTF8);
+    }
+
+    private int nameOffset(int entry) {
+        return index.getInt(HEADER_SIZE + entry * ENTRY_SIZE);
+    }
+
+    private long packedLocation(int entry) {
+        return index.getLong(HEADER_SIZE + entry * ENTRY_SIZE + 4);
+    }
+
+    /**
+     * Writes the header, the entry table (name offset and packed location, in name order) and then the names,
+     * each as a two byte length and its UTF-8 bytes.
+     */
+    private static void write(Map<String, Long> locations, File indexFile) throws IOException {
+        List<byte[]> names = Lists.newArrayListWithCapacity(locations.size());
+        Map<byte[], Long> packed = Maps.newIdentityHashMap();
+        for (Map.Entry<String, Long> location : locations.entrySet()) {
+            byte[] name = location.getKey().getBytes(UTF8);
+            if (name.length > MAX_KEY_LENGTH) {
+                throw new IOException("Name too long: " + location.getKey());
+            }
+            names.add(name);
+            packed.put(name, location.getValue());
+        }
+        Collections.sort(names, UNSIGNED_ORDER);
+
+        File temporary = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.size());
+
+            long offset = HEADER_SIZE + (long) names.size() * ENTRY_SIZE;
+            for (byte[] name : names) {
+                if (offset > Integer.MAX_VALUE) {
+                    throw new IOException("Gazetteer too large");
+                }
+                out.writeInt((int) offset);
+                out.writeLong(packed.get(name));
+                offset += 2 + name.length;
+            }
+            for (byte[] name : names) {
+                out.writeShort(name.length);
+                out.write(name);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temporary.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
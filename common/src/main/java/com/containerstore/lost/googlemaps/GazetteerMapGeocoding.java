@@ -0,0 +1,59 @@
+package com.containerstore.lost.googlemaps;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A MapGeocoding backed by a local Gazetteer, for geocoding without a network.
+ *
+ * An address is looked up as a whole first. If it is not in the gazetteer the lookup gets coarser: a five digit
+ * postal code in the address, then the address without each leading comma-separated part in turn, so that
+ * "100 Main St, Dallas, TX 75201" falls back to "75201", then "Dallas, TX 75201", then "TX 75201". Addresses
+ * that are latitude and longitude pairs are returned as they are.
+ */
+public class GazetteerMapGeocoding implements MapGeocoding {
+    private static final Pattern POSTAL_CODE = Pattern.compile("\\b(\\d{5})(?:-\\d{4})?\\b");
+
+    private final Gazetteer gazetteer;
+
+    public GazetteerMapGeocoding(Gazetteer gazetteer) {
+        this.gazetteer = gazetteer;
+    }
+
+    @Override
+    public LatAndLong getLocation(String address) {
+        if (address == null) {
+            return null;
+        }
+
+        LatAndLong location = LatAndLong.fromString(address);
+        if (location != null) {
+            return location;
+        }
+
+        location = gazetteer.getLocation(address);
+        if (location != null) {
+            return location;
+        }
+
+        Matcher postalCode = POSTAL_CODE.matcher(address);
+        String lastPostalCode = null;
+        while (postalCode.find()) {
+            lastPostalCode = postalCode.group(1);
+        }
+        if (lastPostalCode != null) {
+            location = gazetteer.getLocation(lastPostalCode);
+            if (location != null) {
+                return location;
+            }
+        }
+
+        for (int comma = address.indexOf(','); comma >= 0; comma = address.indexOf(',', comma + 1)) {
+            location = gazetteer.getLocation(address.substring(comma + 1));
+            if (location != null) {
+                return location;
+            }
+        }
+        return null;
+    }
+}
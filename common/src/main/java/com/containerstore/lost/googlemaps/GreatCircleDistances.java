@@ -0,0 +1,227 @@
+package com.containerstore.lost.googlemaps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes great-circle distances in miles from one point to many, and between all pairs of two sets of
+ * points, in batches.
+ *
+ * Points are converted once to unit vectors held as three double[] arrays (Points), so the sines and cosines
+ * of the coordinates are computed once per point rather than once per pair. The distance between two points is
+ * then 2R asin(c / 2), where c is the straight-line distance between their vectors: the haversine formula,
+ * costing one sqrt and one asin per pair, and accurate at short distances where the acos form of
+ * LatAndLong.getDistance is not. Each batch first computes c squared for a block of points in a plain loop over
+ * the arrays, which the JIT can unroll and vectorize, then converts the block to miles.
+ *
+ * All-pairs matrices are split into tiles of rows and computed in parallel on a fork/join pool; columns are
+ * processed in blocks that stay in cache. A 10,000 x 10,000 matrix is 100 million floats (400 MB).
+ */
+public final class GreatCircleDistances {
+    public static final double EARTH_RADIUS_MILES = 3959;
+
+    static final int BLOCK = 1024;
+    static final int TILE_ELEMENTS = 1 << 16;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private GreatCircleDistances() {
+    }
+
+    /**
+     * Points as unit vectors, in struct-of-arrays form.
+     */
+    public static final class Points {
+        private final double[] x;
+        private final double[] y;
+        private final double[] z;
+
+        private Points(int size) {
+            x = new double[size];
+            y = new double[size];
+            z = new double[size];
+        }
+
+        public static Points of(double[] latitudes, double[] longitudes) {
+            if (latitudes.length != longitudes.length) {
+                throw new IllegalArgumentException("Latitudes and longitudes must be the same length");
+            }
+
+            Points points = new Points(latitudes.length);
+            for (int i = 0; i < latitudes.length; i++) {
+                points.set(i, latitudes[i], longitudes[i]);
+            }
+            return points;
+        }
+
+        public static Points of(Collection<LatAndLong> locations) {
+            Points points = new Points(locations.size());
+            int i = 0;
+            for (LatAndLong location : locations) {
+                points.set(i++, location.getLatitude(), location.getLongitude());
+            }
+            return points;
+        }
+
+        public static Points of(LatLongArray locations) {
+            Points points = new Points(locations.size());
+            for (int i = 0; i < locations.size(); i++) {
+                long packed = locations.getPacked(i);
+                points.set(i, PackedLatLong.latitude(packed), PackedLatLong.longitude(packed));
+            }
+            return points;
+        }
+
+        public int size() {
+            return x.length;
+        }
+
+        /**
+         * Returns the distance in miles from point i to point j of other.
+         */
+        double distance(int i, Points other, int j) {
+            double dx = x[i] - other.x[j];
+            double dy = y[i] - other.y[j];
+            double dz = z[i] - other.z[j];
+            return toMiles(dx * dx + dy * dy + dz * dz);
+        }
+
+        private void set(int i, double latitude, double longitude) {
+            double latitudeRadians = Math.toRadians(latitude);
+            double longitudeRadians = Math.toRadians(longitude);
+            double cosLatitude = Math.cos(latitudeRadians);
+            x[i] = cosLatitude * Math.cos(longitudeRadians);
+            y[i] = cosLatitude * Math.sin(longitudeRadians);
+            z[i] = Math.sin(latitudeRadians);
+        }
+    }
+
+    public static double distance(LatAndLong origin, LatAndLong destination) {
+        Points points = Points.of(Arrays.asList(origin, destination));
+        double[] squaredChord = new double[1];
+        row(points.x[0], points.y[0], points.z[0], points, 1, 2, squaredChord, 0);
+        return toMiles(squaredChord[0]);
+    }
+
+    public static double[] oneToMany(LatAndLong origin, Points destinations) {
+        double[] distances = new double[destinations.size()];
+        oneToMany(origin, destinations, distances);
+        return distances;
+    }
+
+    /**
+     * Writes the distance from the origin to each destination into distances.
+     */
+    public static void oneToMany(LatAndLong origin, Points destinations, double[] distances) {
+        if (distances.length < destinations.size()) {
+            throw new IllegalArgumentException("Result array is too small");
+        }
+
+        Points point = Points.of(Collections.singletonList(origin));
+        row(point.x[0], point.y[0], point.z[0], destinations, 0, destinations.size(), distances, 0);
+        for (int i = 0; i < destinations.size(); i++) {
+            distances[i] = toMiles(distances[i]);
+        }
+    }
+
+    public static float[] allPairs(Points origins, Points destinations) {
+        float[] distances = new float[checkedSize(origins, destinations)];
+        allPairs(origins, destinations, distances);
+        return distances;
+    }
+
+    /**
+     * Writes the distance from every origin to every destination into distances, in row order (origin i,
+     * destination j at i * destinations.size() + j), computing tiles in parallel.
+     */
+    public static void allPairs(Points origins, Points destinations, float[] distances) {
+        allPairs(origins, destinations, distances, POOL);
+    }
+
+    public static void allPairs(Points origins, Points destinations, float[] distances, ForkJoinPool pool) {
+        if (distances.length < checkedSize(origins, destinations)) {
+            throw new IllegalArgumentException("Result array is too small");
+        }
+        if (origins.size() == 0 || destinations.size() == 0) {
+            return;
+        }
+
+        int tileRows = Math.max(1, TILE_ELEMENTS / destinations.size());
+        pool.invoke(new Tile(origins, destinations, distances, 0, origins.size(), tileRows));
+    }
+
+    /**
+     * Rows of an all-pairs matrix, split in half until each part has at most tileRows rows.
+     */
+    private static final class Tile extends RecursiveAction {
+        private final Points origins;
+        private final Points destinations;
+        private final float[] distances;
+        private final int from;
+        private final int to;
+        private final int tileRows;
+
+        Tile(Points origins, Points destinations, float[] distances, int from, int to, int tileRows) {
+            this.origins = origins;
+            this.destinations = destinations;
+            this.distances = distances;
+            this.from = from;
+            this.to = to;
+            this.tileRows = tileRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > tileRows) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Tile(origins, destinations, distances, from, middle, tileRows),
+                        new Tile(origins, destinations, distances, middle, to, tileRows));
+                return;
+            }
+
+            int columns = destinations.size();
+            double[] block = new double[Math.min(BLOCK, columns)];
+            for (int column = 0; column < columns; column += BLOCK) {
+                int end = Math.min(columns, column + BLOCK);
+                for (int row = from; row < to; row++) {
+                    row(origins.x[row], origins.y[row], origins.z[row], destinations, column, end, block, 0);
+                    int offset = row * columns + column;
+                    for (int i = 0; i < end - column; i++) {
+                        distances[offset + i] = (float) toMiles(block[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the squared straight-line distance from the point to destinations from..to into result.
+     */
+    private static void row(double x, double y, double z, Points destinations, int from, int to, double[] result,
+                            int offset) {
+        double[] xs = destinations.x;
+        double[] ys = destinations.y;
+        double[] zs = destinations.z;
+        for (int i = from; i < to; i++) {
+            double dx = x - xs[i];
+            double dy = y - ys[i];
+            double dz = z - zs[i];
+            result[offset + i - from] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    private static double toMiles(double squaredChord) {
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(squaredChord) / 2));
+    }
+
+    private static int checkedSize(Points origins, Points destinations) {
+        long size = (long) origins.size() * destinations.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Matrix is too large for one array");
+        }
+        return (int) size;
+    }
+}
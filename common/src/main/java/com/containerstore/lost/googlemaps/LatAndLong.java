@@ -1,7 +1,5 @@
 package com.containerstore.lost.googlemaps;
 
-import com.google.common.base.Objects;
-
 import static java.lang.Math.*;
 import static org.apache.commons.validator.GenericValidator.*;
 
@@ -48,7 +46,13 @@ public class LatAndLong {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(latitude, longitude);
+        // The same value as Objects.hashCode(latitude, longitude), without boxing.
+        return 31 * (31 + hashCode(latitude)) + hashCode(longitude);
+    }
+
+    private static int hashCode(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return (int) (bits ^ (bits >>> 32));
     }
 
     @Override
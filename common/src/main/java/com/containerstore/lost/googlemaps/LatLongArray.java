@@ -0,0 +1,181 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A growable array of points, each stored as a PackedLatLong in 8 bytes, instead of a LatAndLong object per
+ * point. The array is held on the heap, or off the heap in a direct buffer (offHeap()) so that very large point
+ * sets do not count against the heap at all.
+ *
+ * Points can be read by index or visited with forEach() without creating any objects. sortByGeohash() puts
+ * points that are near each other on the map near each other in the array. Not thread safe.
+ */
+public class LatLongArray {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Receives the points of an array in order.
+     */
+    public interface Visitor {
+        void visit(int index, double latitude, double longitude);
+    }
+
+    private final boolean direct;
+    private LongBuffer points;
+    private int size;
+
+    public LatLongArray() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LatLongArray(int capacity) {
+        this(capacity, false);
+    }
+
+    private LatLongArray(int capacity, boolean direct) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        this.direct = direct;
+        this.points = allocate(capacity);
+    }
+
+    /**
+     * Creates an empty array held in a direct buffer outside the heap.
+     */
+    public static LatLongArray offHeap(int capacity) {
+        return new LatLongArray(capacity, true);
+    }
+
+    public static LatLongArray of(Collection<LatAndLong> locations) {
+        LatLongArray array = new LatLongArray(locations.size());
+        for (LatAndLong location : locations) {
+            array.add(location);
+        }
+        return array;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOffHeap() {
+        return direct;
+    }
+
+    public void add(double latitude, double longitude) {
+        addPacked(PackedLatLong.pack(latitude, longitude));
+    }
+
+    public void add(LatAndLong location) {
+        addPacked(PackedLatLong.pack(location));
+    }
+
+    public void addPacked(long packed) {
+        if (size == points.capacity()) {
+            grow(size + 1);
+        }
+        points.put(size++, packed);
+    }
+
+    public void set(int index, double latitude, double longitude) {
+        points.put(checkIndex(index), PackedLatLong.pack(latitude, longitude));
+    }
+
+    public long getPacked(int index) {
+        return points.get(checkIndex(index));
+    }
+
+    public double getLatitude(int index) {
+        return PackedLatLong.latitude(getPacked(index));
+    }
+
+    public double getLongitude(int index) {
+        return PackedLatLong.longitude(getPacked(index));
+    }
+
+    public LatAndLong get(int index) {
+        return PackedLatLong.toLatAndLong(getPacked(index));
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            long packed = points.get(i);
+            visitor.visit(i, PackedLatLong.latitude(packed), PackedLatLong.longitude(packed));
+        }
+    }
+
+    /**
+     * Orders the points by PackedLatLong.geohash().
+     */
+    public void sortByGeohash() {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = PackedLatLong.geohash(points.get(i));
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < size; i++) {
+            points.put(i, PackedLatLong.fromGeohash(keys[i]));
+        }
+    }
+
+    public List<LatAndLong> toList() {
+        List<LatAndLong> locations = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            locations.add(get(i));
+        }
+        return locations;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Reduces the capacity to the size.
+     */
+    public void trimToSize() {
+        if (points.capacity() > size) {
+            points = copy(size);
+        }
+    }
+
+    private void grow(int minimum) {
+        // A direct buffer is addressed in bytes, so it holds an eighth as many points.
+        long maximum = direct ? Integer.MAX_VALUE / 8 : Integer.MAX_VALUE - 8;
+        if (minimum > maximum) {
+            throw new IllegalStateException("LatLongArray cannot hold more than " + maximum + " points");
+        }
+        long capacity = Math.max((long) minimum, Math.max(DEFAULT_CAPACITY, (long) points.capacity() * 3 / 2));
+        points = copy((int) Math.min(capacity, maximum));
+    }
+
+    private LongBuffer copy(int capacity) {
+        LongBuffer copy = allocate(capacity);
+        for (int i = 0; i < size; i++) {
+            copy.put(i, points.get(i));
+        }
+        return copy;
+    }
+
+    private LongBuffer allocate(int capacity) {
+        if (direct) {
+            return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        return LongBuffer.allocate(capacity);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,70 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A MapReverseGeocoding that answers from a LocationIndex of a reference set of addresses, postal codes or
+ * stores, with no remote call. The answer is the nearest entry by great-circle distance, if it is within the
+ * maximum distance.
+ */
+public class LocalMapReverseGeocoding implements MapReverseGeocoding {
+    public static final double DEFAULT_MAXIMUM_MILES = 25;
+
+    private final LocationIndex index;
+    private final double maximumMiles;
+
+    public LocalMapReverseGeocoding(Map<String, LatAndLong> addresses) {
+        this(new LocationIndex(addresses), DEFAULT_MAXIMUM_MILES);
+    }
+
+    /**
+     * @param index        - the reference addresses; it may be updated while in use
+     * @param maximumMiles - how far the nearest address may be from a location
+     */
+    public LocalMapReverseGeocoding(LocationIndex index, double maximumMiles) {
+        if (maximumMiles < 0) {
+            throw new IllegalArgumentException("Maximum distance must not be negative");
+        }
+        this.index = index;
+        this.maximumMiles = maximumMiles;
+    }
+
+    /**
+     * Creates a reverse geocoding over every name in the gazetteer.
+     */
+    public static LocalMapReverseGeocoding of(Gazetteer gazetteer, double maximumMiles) {
+        return new LocalMapReverseGeocoding(new LocationIndex(gazetteer.getLocations()), maximumMiles);
+    }
+
+    @Override
+    public String getAddress(LatAndLong location) {
+        if (location == null) {
+            return null;
+        }
+
+        List<String> nearest = index.nearest(location, 1);
+        if (nearest.isEmpty()) {
+            return null;
+        }
+
+        String address = nearest.get(0);
+        LatAndLong addressLocation = index.get(address);
+        if (addressLocation == null
+                || GreatCircleDistances.distance(location, addressLocation) > maximumMiles) {
+            return null;
+        }
+        return address;
+    }
+
+    @Override
+    public List<String> getAddresses(List<LatAndLong> locations) {
+        List<String> addresses = Lists.newArrayListWithCapacity(locations.size());
+        for (LatAndLong location : locations) {
+            addresses.add(getAddress(location));
+        }
+        return addresses;
+    }
+}
@@ -0,0 +1,454 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A spatial index of named locations answering k-nearest and radius queries by great-circle distance.
+ *
+ * Locations are held as points on the unit sphere in a k-d tree. The straight-line (chord) distance between two
+ * such points grows with the great-circle distance between them, so nearest by chord is nearest on the earth,
+ * and a radius in miles is an exact chord radius. Distances use a spherical earth of EARTH_RADIUS_MILES.
+ *
+ * The tree is built in one pass when the index is bulk loaded. Later puts go to a small unsorted list that
+ * queries scan, and removes mark their tree entry as deleted; the tree is rebuilt once either grows past a
+ * fraction of its size. Any number of queries may run at once; puts and removes wait for them.
+ */
+public class LocationIndex {
+    public static final double EARTH_RADIUS_MILES = GreatCircleDistances.EARTH_RADIUS_MILES;
+
+    private static final int MINIMUM_REBUILD = 64;
+    private static final int REBUILD_FRACTION = 8;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, LatAndLong> locations = Maps.newHashMap();
+
+    /** The tree: the entry in the middle of each range splits the rest of the range on its split axis. */
+    private String[] keys = new String[0];
+    private double[] points = new double[0];
+    private byte[] splits = new byte[0];
+    private boolean[] deleted = new boolean[0];
+    private final Map<String, Integer> treeIndexes = Maps.newHashMap();
+    private int deletedCount;
+
+    private final List<String> pendingKeys = Lists.newArrayList();
+    private double[] pendingPoints = new double[3 * MINIMUM_REBUILD];
+
+    public LocationIndex() {
+    }
+
+    public LocationIndex(Map<String, LatAndLong> locations) {
+        this.locations.putAll(locations);
+        rebuild();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LatAndLong get(String key) {
+        lock.readLock().lock();
+        try {
+            return locations.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the location, replacing any location with the same key.
+     */
+    public void put(String key, LatAndLong location) {
+        lock.writeLock().lock();
+        try {
+            if (locations.containsKey(key)) {
+                removeEntry(key);
+            }
+            locations.put(key, location);
+
+            int pending = pendingKeys.size();
+            if (pendingPoints.length < 3 * (pending + 1)) {
+                pendingPoints = Arrays.copyOf(pendingPoints, pendingPoints.length * 2);
+            }
+            toPoint(location, pendingPoints, 3 * pending);
+            pendingKeys.add(key);
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the location with the key. Returns the removed location, or null if there was none.
+     */
+    public LatAndLong remove(String key) {
+        lock.writeLock().lock();
+        try {
+            LatAndLong location = locations.remove(key);
+            if (location != null) {
+                removeEntry(key);
+                rebuildIfNeeded();
+            }
+            return location;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the keys of up to k locations nearest the point, nearest first.
+     */
+    public List<String> nearest(LatAndLong point, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+
+        double[] query = new double[3];
+        toPoint(point, query, 0);
+
+        lock.readLock().lock();
+        try {
+            Neighbors neighbors = new Neighbors(Math.min(k, locations.size()));
+            if (neighbors.capacity() > 0) {
+                for (int i = 0; i < pendingKeys.size(); i++) {
+                    neighbors.offer(pendingKeys.get(i), squaredDistance(query, pendingPoints, 3 * i));
+                }
+                searchNearest(query, 0, keys.length, neighbors);
+            }
+            return neighbors.sortedKeys();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the keys of the locations within the given great-circle distance of the point, nearest first.
+     */
+    public List<String> withinRadius(LatAndLong point, double miles) {
+        if (miles < 0) {
+            throw new IllegalArgumentException("Radius must not be negative");
+        }
+
+        double[] query = new double[3];
+        toPoint(point, query, 0);
+        double chord = miles >= Math.PI * EARTH_RADIUS_MILES ? 2 : 2 * Math.sin(miles / (2 * EARTH_RADIUS_MILES));
+        // Allow for rounding in the conversion so that points exactly at the radius are included.
+        double limit = chord * chord * (1 + 1e-12) + 1e-24;
+
+        lock.readLock().lock();
+        try {
+            Neighbors found = new Neighbors(-1);
+            for (int i = 0; i < pendingKeys.size(); i++) {
+                double distance = squaredDistance(query, pendingPoints, 3 * i);
+                if (distance <= limit) {
+                    found.offer(pendingKeys.get(i), distance);
+                }
+            }
+            searchRadius(query, limit, 0, keys.length, found);
+            return found.sortedKeys();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the great-circle distance in miles between two locations, on the same sphere as the index.
+     */
+    public static double greatCircleDistance(LatAndLong first, LatAndLong second) {
+        return GreatCircleDistances.distance(first, second);
+    }
+
+    private void searchNearest(double[] query, int from, int to, Neighbors neighbors) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (!deleted[middle]) {
+                neighbors.offer(keys[middle], squaredDistance(query, points, 3 * middle));
+            }
+
+            double difference = query[splits[middle]] - points[3 * middle + splits[middle]];
+            if (difference < 0) {
+                searchNearest(query, from, middle, neighbors);
+                if (difference * difference >= neighbors.worst()) {
+                    return;
+                }
+                from = middle + 1;
+            } else {
+                searchNearest(query, middle + 1, to, neighbors);
+                if (difference * difference >= neighbors.worst()) {
+                    return;
+                }
+                to = middle;
+            }
+        }
+    }
+
+    private void searchRadius(double[] query, double limit, int from, int to, Neighbors found) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            double distance = squaredDistance(query, points, 3 * middle);
+            if (distance <= limit && !deleted[middle]) {
+                found.offer(keys[middle], distance);
+            }
+
+            double difference = query[splits[middle]] - points[3 * middle + splits[middle]];
+            if (difference < 0) {
+                searchRadius(query, limit, from, middle, found);
+                if (difference * difference > limit) {
+                    return;
+                }
+                from = middle + 1;
+            } else {
+                searchRadius(query, limit, middle + 1, to, found);
+                if (difference * difference > limit) {
+                    return;
+                }
+                to = middle;
+            }
+        }
+    }
+
+    private void removeEntry(String key) {
+        Integer index = treeIndexes.remove(key);
+        if (index != null) {
+            deleted[index] = true;
+            deletedCount++;
+            return;
+        }
+
+        int pending = pendingKeys.indexOf(key);
+        int last = pendingKeys.size() - 1;
+        pendingKeys.set(pending, pendingKeys.get(last));
+        pendingKeys.remove(last);
+        System.arraycopy(pendingPoints, 3 * last, pendingPoints, 3 * pending, 3);
+    }
+
+    private void rebuildIfNeeded() {
+        int threshold = Math.max(MINIMUM_REBUILD, keys.length / REBUILD_FRACTION);
+        if (pendingKeys.size() > threshold || deletedCount > threshold) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        int size = locations.size();
+        keys = new String[size];
+        points = new double[3 * size];
+        splits = new byte[size];
+        deleted = new boolean[size];
+        deletedCount = 0;
+        pendingKeys.clear();
+        treeIndexes.clear();
+
+        int i = 0;
+        for (Map.Entry<String, LatAndLong> entry : locations.entrySet()) {
+            keys[i] = entry.getKey();
+            toPoint(entry.getValue(), points, 3 * i);
+            i++;
+        }
+        build(0, size);
+        for (i = 0; i < size; i++) {
+            treeIndexes.put(keys[i], i);
+        }
+    }
+
+    /**
+     * Arranges the range so that its middle entry is the median on the axis of greatest spread, then does the
+     * same for each half.
+     */
+    private void build(int from, int to) {
+        while (to - from > 1) {
+            int axis = widestAxis(from, to);
+            int middle = (from + to) >>> 1;
+            select(from, to - 1, middle, axis);
+            splits[middle] = (byte) axis;
+
+            build(from, middle);
+            from = middle + 1;
+        }
+        if (to - from == 1) {
+            splits[from] = 0;
+        }
+    }
+
+    private int widestAxis(int from, int to) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                double value = points[3 * i + axis];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widest = axis;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Quickselect: moves the entry that belongs at index k on the axis there, with no greater entry before it
+     * and no smaller entry after it.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = points[3 * ((left + right) >>> 1) + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (points[3 * i + axis] < pivot) {
+                    i++;
+                }
+                while (points[3 * j + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int first, int second) {
+        String key = keys[first];
+        keys[first] = keys[second];
+        keys[second] = key;
+        for (int axis = 0; axis < 3; axis++) {
+            double value = points[3 * first + axis];
+            points[3 * first + axis] = points[3 * second + axis];
+            points[3 * second + axis] = value;
+        }
+    }
+
+    private static void toPoint(LatAndLong location, double[] points, int offset) {
+        double latitude = Math.toRadians(location.getLatitude());
+        double longitude = Math.toRadians(location.getLongitude());
+        double cosLatitude = Math.cos(latitude);
+        points[offset] = cosLatitude * Math.cos(longitude);
+        points[offset + 1] = cosLatitude * Math.sin(longitude);
+        points[offset + 2] = Math.sin(latitude);
+    }
+
+    private static double squaredDistance(double[] query, double[] points, int offset) {
+        double x = query[0] - points[offset];
+        double y = query[1] - points[offset + 1];
+        double z = query[2] - points[offset + 2];
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * The keys found by a query with their squared chord distances. With a capacity, it keeps only that many
+     * nearest in a max-heap; with a negative capacity it keeps everything offered.
+     */
+    private static final class Neighbors {
+        private final int capacity;
+        private String[] keys;
+        private double[] distances;
+        private int count;
+
+        Neighbors(int capacity) {
+            this.capacity = capacity;
+            this.keys = new String[capacity < 0 ? 16 : capacity];
+            this.distances = new double[keys.length];
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        double worst() {
+            return count < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(String key, double distance) {
+            if (capacity < 0) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                    distances = Arrays.copyOf(distances, count * 2);
+                }
+                keys[count] = key;
+                distances[count++] = distance;
+            } else if (count < capacity) {
+                keys[count] = key;
+                distances[count] = distance;
+                siftUp(count++);
+            } else if (capacity > 0 && distance < distances[0]) {
+                keys[0] = key;
+                distances[0] = distance;
+                siftDown(0, count);
+            }
+        }
+
+        List<String> sortedKeys() {
+            // Heapify, then repeatedly move the farthest to the end.
+            for (int i = count / 2 - 1; i >= 0; i--) {
+                siftDown(i, count);
+            }
+            for (int i = count - 1; i > 0; i--) {
+                swap(0, i);
+                siftDown(0, i);
+            }
+            return Lists.newArrayList(Arrays.asList(keys).subList(0, count));
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (distances[position] <= distances[parent]) {
+                    return;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position, int size) {
+            while (true) {
+                int largest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (right < size && distances[right] > distances[largest]) {
+                    largest = right;
+                }
+                if (largest == position) {
+                    return;
+                }
+                swap(position, largest);
+                position = largest;
+            }
+        }
+
+        private void swap(int first, int second) {
+            String key = keys[first];
+            keys[first] = keys[second];
+            keys[second] = key;
+            double distance = distances[first];
+            distances[first] = distances[second];
+            distances[second] = distance;
+        }
+    }
+}
@@ -9,7 +9,23 @@ public interface MapDistanceRequest {
 
     MapDistanceRequest withDestination(String destination);
 
+    MapDistanceRequest withDestinations(Collection<String> destinations);
+
     String getDestination();
 
+    Collection<String> getDestinations();
+
     Collection<String> getOrigins();
+
+    /**
+     * Returns a key identifying the request options that affect its results (travel mode, avoidances,
+     * language), so that results can be cached per option set.
+     */
+    String getOptionsKey();
+
+    /**
+     * Returns a new request with the same options, origins and destinations, so that a request can be split
+     * into sub-requests for parts of the matrix.
+     */
+    MapDistanceRequest copy();
 }
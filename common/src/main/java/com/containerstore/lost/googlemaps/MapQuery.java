@@ -1,22 +1,77 @@
 package com.containerstore.lost.googlemaps;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
 @Component
 public class MapQuery {
     private static final Logger LOG = Logger.getLogger(MapQuery.class);
 
+    public static final int DEFAULT_ASYNC_THREADS = 16;
+
     private final MapDistanceMatrix distanceMatrix;
     private final MapGeocoding geocoding;
     private final MapDistanceRequest request;
+    private final AsyncMapDistanceMatrix asyncDistanceMatrix;
+    private final AsyncMapGeocoding asyncGeocoding;
+    private final NearestLocationRanker ranker;
+    private final ListeningExecutorService ownedExecutor;
 
+    /**
+     * Creates a MapQuery whose asynchronous methods run the blocking geocoding and distance matrix on its own
+     * bounded pool of DEFAULT_ASYNC_THREADS worker threads, unless they already implement the asynchronous
+     * interfaces. Each outstanding call holds a worker for the length of its HTTP request, so no more than
+     * DEFAULT_ASYNC_THREADS calls are in flight; the rest queue. The pool is stopped by shutdown(), which Spring
+     * calls when the bean is destroyed.
+     */
     @Autowired
     public MapQuery(MapDistanceMatrix distanceMatrix, MapGeocoding geocoding, MapDistanceRequest request) {
+        this(distanceMatrix, geocoding, request, null);
+    }
+
+    /**
+     * @param executor - runs the blocking geocoding and distance matrix for the asynchronous methods; the caller
+     *                 owns it. If null, MapQuery creates and owns a pool as the other constructor does.
+     */
+    public MapQuery(MapDistanceMatrix distanceMatrix, MapGeocoding geocoding, MapDistanceRequest request,
+                    ListeningExecutorService executor) {
         this.distanceMatrix = distanceMatrix;
         this.geocoding = geocoding;
         this.request = request;
+
+        boolean blocking = !(distanceMatrix instanceof AsyncMapDistanceMatrix)
+                || !(geocoding instanceof AsyncMapGeocoding);
+        this.ownedExecutor = executor == null && blocking ? newAsyncExecutor() : null;
+        ListeningExecutorService asyncExecutor = executor == null ? ownedExecutor : executor;
+
+        this.asyncDistanceMatrix = distanceMatrix instanceof AsyncMapDistanceMatrix
+                ? (AsyncMapDistanceMatrix) distanceMatrix
+                : new ExecutorAsyncMapDistanceMatrix(distanceMatrix, asyncExecutor);
+        this.asyncGeocoding = geocoding instanceof AsyncMapGeocoding
+                ? (AsyncMapGeocoding) geocoding
+                : new ExecutorAsyncMapGeocoding(geocoding, asyncExecutor);
+        this.ranker = new NearestLocationRanker(distanceMatrix, geocoding, request);
+    }
+
+    /**
+     * Stops the pool that MapQuery created for the asynchronous methods, if any. An executor passed to the
+     * constructor is left to its owner.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
     }
 
     public MapDistanceRequest createRequest() {
@@ -32,7 +87,41 @@ public class MapQuery {
         return geocoding.getLocation(address);
     }
 
+    public ListenableFuture<LatAndLong> getLocationAsync(String address) {
+        return asyncGeocoding.getLocationAsync(address);
+    }
+
     public MapDistanceResult queryDistance(MapDistanceRequest request) {
         return distanceMatrix.query(request);
     }
+
+    public ListenableFuture<MapDistanceResult> queryDistanceAsync(MapDistanceRequest request) {
+        return asyncDistanceMatrix.queryAsync(request);
+    }
+
+    /**
+     * Returns up to count candidates with the shortest driving durations from the address, shortest first,
+     * querying the distance matrix for only the candidates that are near enough to be among them. See
+     * NearestLocationRanker.
+     */
+    public List<RankedLocation> rankNearest(String address, Map<String, LatAndLong> candidates, int count) {
+        return ranker.rank(address, candidates, count);
+    }
+
+    public List<RankedLocation> rankNearest(String address, Map<String, LatAndLong> candidates, int count,
+                                            double tolerance) {
+        return ranker.rank(address, candidates, count, tolerance);
+    }
+
+    public NearestLocationRanker getNearestLocationRanker() {
+        return ranker;
+    }
+
+    private static ListeningExecutorService newAsyncExecutor() {
+        return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(DEFAULT_ASYNC_THREADS,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("map-query-%d")
+                        .setDaemon(true)
+                        .build()));
+    }
 }
@@ -0,0 +1,15 @@
+package com.containerstore.lost.googlemaps;
+
+import java.util.List;
+
+public interface MapReverseGeocoding {
+    /**
+     * Returns the known address nearest the location, or null if there is none.
+     */
+    String getAddress(LatAndLong location);
+
+    /**
+     * Returns the address for each location, in the same order, with null for locations that have none.
+     */
+    List<String> getAddresses(List<LatAndLong> locations);
+}
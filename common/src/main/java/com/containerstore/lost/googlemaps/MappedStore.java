@@ -0,0 +1,459 @@
+package com.containerstore.lost.googlemaps;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A disk-backed store of string keys to pairs of doubles, which is all that is needed to remember geocoded
+ * locations (latitude, longitude) and distance matrix elements (distance, duration) across restarts.
+ *
+ * Entries are appended to a log file ("name.log"), one checksummed record per put; a later record for a key
+ * replaces the earlier one. A memory-mapped open-addressing hash table ("name.idx") maps each key to the offset
+ * of its latest record, so a lookup is a probe of the mapped table and one positional read of the log.
+ *
+ * The index header records how much of the log it covers. On open, any log records past that point are
+ * replayed into the index, and a torn record at the end of the log (from a crash during a put) is truncated.
+ * A missing or unreadable index is rebuilt from the log. Data is durable once sync() or close() returns.
+ * compact() rewrites the log without the records that have been replaced.
+ *
+ * All methods are thread safe; lookups may run concurrently with each other.
+ */
+public final class MappedStore implements Closeable {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int LOG_MAGIC = 0x4D534C47;
+    private static final int INDEX_MAGIC = 0x4D534958;
+    private static final int VERSION = 1;
+
+    private static final int LOG_HEADER_SIZE = 8;
+    private static final int RECORD_OVERHEAD = 4 + 8 + 8 + 4;
+    private static final int MAX_KEY_LENGTH = 0xFFFF;
+
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int COVERED_OFFSET = 16;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+
+    private final File logFile;
+    private final File indexFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private RandomAccessFile log;
+    private FileChannel logChannel;
+    private long logEnd;
+
+    private MappedByteBuffer index;
+    private int capacity;
+    private int size;
+
+    private MappedStore(File logFile, File indexFile) {
+        this.logFile = logFile;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Opens (creating if necessary) the store with the given name in the given directory, recovering any
+     * records written after the index was last updated.
+     */
+    public static MappedStore open(File directory, String name) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+
+        MappedStore store = new MappedStore(new File(directory, name + ".log"), new File(directory, name + ".idx"));
+        store.recover();
+        return store;
+    }
+
+    /**
+     * Looks up the given key, filling value[0] and value[1] if it is found.
+     *
+     * @return - true if the key was found
+     */
+    public boolean get(String key, double[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(UTF8);
+        long hash = hash(keyBytes);
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int mask = capacity - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                long slotHash = index.getLong(slotPosition(slot));
+                if (slotHash == 0) {
+                    return false;
+                }
+                if (slotHash == hash && readValue(index.getLong(slotPosition(slot) + 8), keyBytes, value)) {
+                    return true;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the given pair of values for the key, replacing any earlier values.
+     */
+    public void put(String key, double first, double second) throws IOException {
+        byte[] keyBytes = key.getBytes(UTF8);
+        if (keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key too long: " + keyBytes.length + " bytes");
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + keyBytes.length);
+        record.putInt(keyBytes.length).put(keyBytes).putDouble(first).putDouble(second);
+        record.putInt(checksum(record.array(), record.position()));
+        record.flip();
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            long offset = logEnd;
+            while (record.hasRemaining()) {
+                logChannel.write(record, offset + record.position());
+            }
+            logEnd += record.limit();
+
+            insert(keyBytes, hash(keyBytes), offset);
+            index.putLong(COVERED_OFFSET, logEnd);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct keys in the store.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the log and index to disk.
+     */
+    public void sync() throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            logChannel.force(false);
+            index.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log so that it only holds the latest record for each key.
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            File compactedLog = new File(logFile.getPath() + ".compact");
+            RandomAccessFile target = new RandomAccessFile(compactedLog, "rw");
+            try {
+                target.setLength(0);
+                FileChannel targetChannel = target.getChannel();
+                writeLogHeader(targetChannel);
+
+                long targetEnd = LOG_HEADER_SIZE;
+                for (int slot = 0; slot < capacity; slot++) {
+                    if (index.getLong(slotPosition(slot)) != 0) {
+                        ByteBuffer record = readRecord(index.getLong(slotPosition(slot) + 8));
+                        if (record != null) {
+                            while (record.hasRemaining()) {
+                                targetChannel.write(record, targetEnd + record.position());
+                            }
+                            targetEnd += record.limit();
+                        }
+                    }
+                }
+                targetChannel.force(false);
+            } finally {
+                target.close();
+            }
+
+            // Without an index the store is rebuilt from whichever log is in place, so a crash at any point
+            // leaves either the old or the compacted log, and a consistent index.
+            closeFiles();
+            if (!indexFile.delete() && indexFile.exists()) {
+                throw new IOException("Unable to delete " + indexFile);
+            }
+            Files.move(compactedLog.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            recover();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (logChannel != null) {
+                logChannel.force(false);
+                index.force();
+                closeFiles();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        log = new RandomAccessFile(logFile, "rw");
+        logChannel = log.getChannel();
+        if (log.length() < LOG_HEADER_SIZE) {
+            log.setLength(0);
+            writeLogHeader(logChannel);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+            readFully(header, 0);
+            if (header.getInt(0) != LOG_MAGIC || header.getInt(4) != VERSION) {
+                closeFiles();
+                throw new IOException(logFile + " is not a store log");
+            }
+        }
+        logEnd = log.length();
+
+        long covered = openIndex();
+        while (covered < logEnd) {
+            ByteBuffer record = readRecord(covered);
+            if (record == null) {
+                // Torn or corrupt record from an interrupted put; everything from here on is discarded.
+                log.setLength(covered);
+                logEnd = covered;
+                break;
+            }
+
+            byte[] keyBytes = new byte[record.getInt(0)];
+            record.position(4);
+            record.get(keyBytes);
+            insert(keyBytes, hash(keyBytes), covered);
+            covered += record.limit();
+        }
+        index.putLong(COVERED_OFFSET, logEnd);
+    }
+
+    private long openIndex() throws IOException {
+        if (indexFile.length() >= INDEX_HEADER_SIZE) {
+            MappedByteBuffer existing = map(indexFile, indexFile.length());
+            int existingCapacity = existing.getInt(CAPACITY_OFFSET);
+            long covered = existing.getLong(COVERED_OFFSET);
+            if (existing.getInt(0) == INDEX_MAGIC && existing.getInt(4) == VERSION
+                    && Integer.bitCount(existingCapacity) == 1
+                    && indexFile.length() == INDEX_HEADER_SIZE + (long) existingCapacity * SLOT_SIZE
+                    && covered >= LOG_HEADER_SIZE && covered <= logEnd) {
+                index = existing;
+                capacity = existingCapacity;
+                size = existing.getInt(SIZE_OFFSET);
+                return covered;
+            }
+        }
+
+        index = createIndex(indexFile, INITIAL_CAPACITY);
+        capacity = INITIAL_CAPACITY;
+        size = 0;
+        return LOG_HEADER_SIZE;
+    }
+
+    private void insert(byte[] keyBytes, long hash, long offset) throws IOException {
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            long slotHash = index.getLong(position);
+            if (slotHash == 0) {
+                if (size + 1 > capacity * MAX_LOAD) {
+                    resize(capacity * 2);
+                    insert(keyBytes, hash, offset);
+                    return;
+                }
+                index.putLong(position + 8, offset);
+                index.putLong(position, hash);
+                index.putInt(SIZE_OFFSET, ++size);
+                return;
+            }
+            if (slotHash == hash && keyMatches(index.getLong(position + 8), keyBytes)) {
+                index.putLong(position + 8, offset);
+                return;
+            }
+        }
+    }
+
+    private void resize(int newCapacity) throws IOException {
+        File resized = new File(indexFile.getPath() + ".resize");
+        MappedByteBuffer target = createIndex(resized, newCapacity);
+
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            long hash = index.getLong(slotPosition(slot));
+            if (hash != 0) {
+                int targetSlot = (int) hash & mask;
+                while (target.getLong(slotPosition(targetSlot)) != 0) {
+                    targetSlot = (targetSlot + 1) & mask;
+                }
+                target.putLong(slotPosition(targetSlot) + 8, index.getLong(slotPosition(slot) + 8));
+                target.putLong(slotPosition(targetSlot), hash);
+            }
+        }
+        target.putInt(SIZE_OFFSET, size);
+        target.putLong(COVERED_OFFSET, index.getLong(COVERED_OFFSET));
+        target.force();
+
+        Files.move(resized.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        index = target;
+        capacity = newCapacity;
+    }
+
+    private boolean keyMatches(long offset, byte[] keyBytes) throws IOException {
+        ByteBuffer key = ByteBuffer.allocate(4 + keyBytes.length);
+        if (offset + key.capacity() > logEnd) {
+            return false;
+        }
+        readFully(key, offset);
+        return key.getInt(0) == keyBytes.length
+                && Arrays.equals(Arrays.copyOfRange(key.array(), 4, key.capacity()), keyBytes);
+    }
+
+    private boolean readValue(long offset, byte[] keyBytes, double[] value) throws IOException {
+        int length = RECORD_OVERHEAD + keyBytes.length;
+        if (offset + length > logEnd) {
+            return false;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(record, offset);
+        if (record.getInt(0) != keyBytes.length
+                || !Arrays.equals(Arrays.copyOfRange(record.array(), 4, 4 + keyBytes.length), keyBytes)
+                || record.getInt(length - 4) != checksum(record.array(), length - 4)) {
+            return false;
+        }
+
+        value[0] = record.getDouble(4 + keyBytes.length);
+        value[1] = record.getDouble(12 + keyBytes.length);
+        return true;
+    }
+
+    /**
+     * Reads and verifies the record at the given offset, returning null if it is incomplete or corrupt.
+     */
+    private ByteBuffer readRecord(long offset) throws IOException {
+        if (offset + RECORD_OVERHEAD > logEnd) {
+            return null;
+        }
+
+        ByteBuffer keyLength = ByteBuffer.allocate(4);
+        readFully(keyLength, offset);
+        int length = keyLength.getInt(0);
+        if (length < 0 || length > MAX_KEY_LENGTH || offset + RECORD_OVERHEAD + length > logEnd) {
+            return null;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + length);
+        readFully(record, offset);
+        if (record.getInt(record.limit() - 4) != checksum(record.array(), record.limit() - 4)) {
+            return null;
+        }
+        return record;
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (logChannel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + logFile);
+            }
+        }
+        buffer.flip();
+    }
+
+    private void checkOpen() throws IOException {
+        if (logChannel == null) {
+            throw new IOException("Store " + logFile + " is closed");
+        }
+    }
+
+    private void closeFiles() throws IOException {
+        index = null;
+        logChannel = null;
+        log.close();
+    }
+
+    private static void writeLogHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        header.putInt(LOG_MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private static MappedByteBuffer createIndex(File file, int capacity) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        } finally {
+            raf.close();
+        }
+
+        MappedByteBuffer buffer = map(file, INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        buffer.putInt(0, INDEX_MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(SIZE_OFFSET, 0);
+        buffer.putLong(COVERED_OFFSET, LOG_HEADER_SIZE);
+        return buffer;
+    }
+
+    private static MappedByteBuffer map(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the key; zero is reserved to mark empty slots.
+     */
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte each : bytes) {
+            hash ^= each & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,126 @@
+package com.containerstore.lost.googlemaps;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces outbound Maps API calls so that they stay within the provider's rate limits.
+ *
+ * There is a token bucket for geocoding requests and one for distance matrix elements. Each call takes its
+ * tokens from the right bucket before it is made. Callers are admitted in priority order: the priority is
+ * set per thread, defaults to INTERACTIVE, and batch jobs should run with BATCH so that checkout traffic goes
+ * first. When the tokens are not available the backpressure mode decides whether to wait (BLOCK), to fail
+ * immediately (FAIL_FAST), or to wait up to a timeout (DEADLINE). A refused call throws a
+ * MapsRateLimitException.
+ *
+ * As a Spring bean the rates, backpressure mode and DEADLINE timeout are read from the googlemaps.geocodePerSecond,
+ * googlemaps.distanceElementsPerSecond, googlemaps.backpressure and googlemaps.timeoutMillis properties, which
+ * default to 10 geocodes and 100 elements per second, BLOCK and no timeout.
+ *
+ * The priority is held in a thread local, so it applies to calls made on the thread that set it; calls
+ * handed to another thread (such as the MapQuery asynchronous methods) run with that thread's priority.
+ */
+@Component("MapsCallScheduler")
+public class MapsCallScheduler {
+    public static final double DEFAULT_GEOCODE_PER_SECOND = 10;
+    public static final double DEFAULT_DISTANCE_ELEMENTS_PER_SECOND = 100;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 0;
+
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    public enum Backpressure {
+        BLOCK,
+        FAIL_FAST,
+        DEADLINE
+    }
+
+    private static final ThreadLocal<Priority> PRIORITY = new ThreadLocal<Priority>() {
+        @Override
+        protected Priority initialValue() {
+            return Priority.INTERACTIVE;
+        }
+    };
+
+    private final TokenBucket geocodeBucket;
+    private final TokenBucket distanceBucket;
+    private final Backpressure backpressure;
+    private final long timeoutNanos;
+
+    public MapsCallScheduler() {
+        this(DEFAULT_GEOCODE_PER_SECOND, DEFAULT_DISTANCE_ELEMENTS_PER_SECOND, Backpressure.BLOCK,
+                DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Autowired
+    public MapsCallScheduler(
+            @Value("${googlemaps.geocodePerSecond:" + DEFAULT_GEOCODE_PER_SECOND + "}") double geocodePerSecond,
+            @Value("${googlemaps.distanceElementsPerSecond:" + DEFAULT_DISTANCE_ELEMENTS_PER_SECOND + "}")
+            double distanceElementsPerSecond,
+            @Value("${googlemaps.backpressure:BLOCK}") Backpressure backpressure,
+            @Value("${googlemaps.timeoutMillis:" + DEFAULT_TIMEOUT_MILLIS + "}") long timeoutMillis) {
+        this(geocodePerSecond, distanceElementsPerSecond, backpressure, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param geocodePerSecond          - sustained geocoding requests per second; also the burst size
+     * @param distanceElementsPerSecond - sustained distance matrix elements per second; also the burst size
+     * @param backpressure              - what to do when a call cannot be made immediately
+     * @param timeout                   - how long to wait in DEADLINE mode
+     * @param unit                      - the unit of the timeout
+     */
+    public MapsCallScheduler(double geocodePerSecond, double distanceElementsPerSecond, Backpressure backpressure,
+                             long timeout, TimeUnit unit) {
+        this.geocodeBucket = new TokenBucket("geocode", geocodePerSecond, Math.max(1, geocodePerSecond));
+        this.distanceBucket = new TokenBucket("distance elements", distanceElementsPerSecond,
+                Math.max(1, distanceElementsPerSecond));
+        this.backpressure = backpressure;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Sets the priority of calls made by the current thread, returning the previous priority so that it can be
+     * restored.
+     */
+    public static Priority setPriority(Priority priority) {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(priority);
+        return previous;
+    }
+
+    public static Priority getPriority() {
+        return PRIORITY.get();
+    }
+
+    /**
+     * Waits (according to the backpressure mode) until a geocoding request may be made.
+     */
+    public void acquireGeocode() {
+        geocodeBucket.acquire(1, PRIORITY.get(), backpressure, timeoutNanos);
+    }
+
+    /**
+     * Waits (according to the backpressure mode) until a distance matrix request with the given number of
+     * elements may be made.
+     */
+    public void acquireDistanceElements(int elements) {
+        distanceBucket.acquire(elements, PRIORITY.get(), backpressure, timeoutNanos);
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    public TokenBucket getGeocodeBucket() {
+        return geocodeBucket;
+    }
+
+    public TokenBucket getDistanceBucket() {
+        return distanceBucket;
+    }
+}
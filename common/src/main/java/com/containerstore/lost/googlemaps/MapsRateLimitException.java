@@ -0,0 +1,11 @@
+package com.containerstore.lost.googlemaps;
+
+/**
+ * Thrown when a Maps API call is refused because of a rate limit, either by the MapsCallScheduler or by the
+ * provider itself.
+ */
+public class MapsRateLimitException extends IllegalStateException {
+    public MapsRateLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,228 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.Maps.*;
+
+/**
+ * A MapDistanceResult held as dense origin-by-destination arrays of distances (miles) and durations (seconds).
+ * Elements that have no value are -1, as with the other MapDistanceResult implementations.
+ *
+ * Every element lookup is a hash of the origin and destination followed by an array read. getRow() and
+ * getColumn() give views of a whole row or column, including the nearest locations by duration, without
+ * building a map.
+ *
+ * The builder assembles a result from parts (cached and stored elements, merged sub-requests, locally computed
+ * matrices); provider results such as GoogleDistanceResult extend this class.
+ *
+ * A result is incomplete when part of the query behind it failed, so that some of its -1 elements mean "not
+ * answered" rather than "no route". A result built from an incomplete part is itself incomplete.
+ */
+public class MatrixDistanceResult implements MapDistanceResult {
+    private final List<String> origins;
+    private final List<String> destinations;
+    private final Map<String, Integer> originIndexes;
+    private final Map<String, Integer> destinationIndexes;
+    private final double[] distances;
+    private final double[] durations;
+    private final boolean complete;
+
+    /**
+     * @param origins      - the row locations
+     * @param destinations - the column locations
+     * @param distances    - origins.size() * destinations.size() distances in row order; owned by the result
+     * @param durations    - the matching durations; owned by the result
+     */
+    protected MatrixDistanceResult(List<String> origins, List<String> destinations, double[] distances,
+                                   double[] durations) {
+        this(origins, destinations, distances, durations, true);
+    }
+
+    private MatrixDistanceResult(List<String> origins, List<String> destinations, double[] distances,
+                                 double[] durations, boolean complete) {
+        if (distances.length != origins.size() * destinations.size() || durations.length != distances.length) {
+            throw new IllegalArgumentException("Element arrays do not match the origins and destinations");
+        }
+
+        this.origins = origins;
+        this.destinations = destinations;
+        this.originIndexes = indexesOf(origins);
+        this.destinationIndexes = indexesOf(destinations);
+        this.distances = distances;
+        this.durations = durations;
+        this.complete = complete;
+    }
+
+    /**
+     * Whether every part of the query behind this result succeeded.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public List<String> getOrigins() {
+        return origins;
+    }
+
+    public List<String> getDestinations() {
+        return destinations;
+    }
+
+    @Override
+    public Map<String, Double> getDistancesToDestination(String destination) {
+        Map<String, Double> distanceMap = newLinkedHashMap();
+
+        Integer column = destinationIndexes.get(destination);
+        if (column == null) {
+            return distanceMap;
+        }
+
+        for (int row = 0; row < origins.size(); row++) {
+            distanceMap.put(origins.get(row), distances[row * destinations.size() + column]);
+        }
+
+        return distanceMap;
+    }
+
+    @Override
+    public Map<String, Double> getDistancesFromOrigin(String origin) {
+        Integer row = originIndexes.get(origin);
+        if (row == null) {
+            return null;
+        }
+
+        Map<String, Double> distanceMap = newLinkedHashMap();
+        for (int column = 0; column < destinations.size(); column++) {
+            distanceMap.put(destinations.get(column), distances[row * destinations.size() + column]);
+        }
+
+        return distanceMap;
+    }
+
+    @Override
+    public double getDistance(String origin, String destination) {
+        int index = indexOf(origin, destination);
+        return index < 0 ? -1 : distances[index];
+    }
+
+    @Override
+    public double getDuration(String origin, String destination) {
+        int index = indexOf(origin, destination);
+        return index < 0 ? -1 : durations[index];
+    }
+
+    /**
+     * Returns a view of the elements from the origin to every destination, or null if the origin is not part of
+     * the result.
+     */
+    public DistanceView getRow(String origin) {
+        Integer row = originIndexes.get(origin);
+        if (row == null) {
+            return null;
+        }
+        return new DistanceView(destinations, distances, durations, row * destinations.size(), 1);
+    }
+
+    /**
+     * Returns a view of the elements from every origin to the destination, or null if the destination is not
+     * part of the result.
+     */
+    public DistanceView getColumn(String destination) {
+        Integer column = destinationIndexes.get(destination);
+        if (column == null) {
+            return null;
+        }
+        return new DistanceView(origins, distances, durations, column, destinations.size());
+    }
+
+    /**
+     * Returns the index of the element in row order, or -1 if the origin or destination is not part of the
+     * result.
+     */
+    protected int indexOf(String origin, String destination) {
+        Integer row = originIndexes.get(origin);
+        Integer column = destinationIndexes.get(destination);
+        if (row == null || column == null) {
+            return -1;
+        }
+        return row * destinations.size() + column;
+    }
+
+    private static Map<String, Integer> indexesOf(List<String> locations) {
+        Map<String, Integer> indexes = newHashMapWithExpectedSize(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            if (!indexes.containsKey(locations.get(i))) {
+                indexes.put(locations.get(i), i);
+            }
+        }
+        return indexes;
+    }
+
+    public static MatrixDistanceResultBuilder result(Collection<String> origins, Collection<String> destinations) {
+        return new MatrixDistanceResultBuilder(origins, destinations);
+    }
+
+    public static class MatrixDistanceResultBuilder {
+        private final List<String> origins;
+        private final List<String> destinations;
+        private final Map<String, Integer> originIndexes;
+        private final Map<String, Integer> destinationIndexes;
+        private final double[] distances;
+        private final double[] durations;
+        private boolean complete = true;
+
+        private MatrixDistanceResultBuilder(Collection<String> origins, Collection<String> destinations) {
+            // Repeated locations would only repeat rows or columns, so each location is kept once.
+            this.origins = ImmutableSet.copyOf(origins).asList();
+            this.destinations = ImmutableSet.copyOf(destinations).asList();
+            this.originIndexes = indexesOf(this.origins);
+            this.destinationIndexes = indexesOf(this.destinations);
+            this.distances = new double[this.origins.size() * this.destinations.size()];
+            this.durations = new double[distances.length];
+            Arrays.fill(distances, -1);
+            Arrays.fill(durations, -1);
+        }
+
+        /**
+         * Sets the element for the given origin and destination. Locations that are not part of the result
+         * are ignored.
+         */
+        public MatrixDistanceResultBuilder withElement(String origin, String destination, double distance,
+                                                       double duration) {
+            Integer row = originIndexes.get(origin);
+            Integer column = destinationIndexes.get(destination);
+            if (row != null && column != null) {
+                distances[row * destinations.size() + column] = distance;
+                durations[row * destinations.size() + column] = duration;
+            }
+            return this;
+        }
+
+        /**
+         * Copies the elements of the given result for each of the given origins and destinations. If the result
+         * is incomplete, so is the one being built.
+         */
+        public MatrixDistanceResultBuilder withElements(MapDistanceResult result, Collection<String> origins,
+                                                        Collection<String> destinations) {
+            if (result instanceof MatrixDistanceResult && !((MatrixDistanceResult) result).isComplete()) {
+                complete = false;
+            }
+            for (String origin : origins) {
+                for (String destination : destinations) {
+                    withElement(origin, destination, result.getDistance(origin, destination),
+                            result.getDuration(origin, destination));
+                }
+            }
+            return this;
+        }
+
+        public MatrixDistanceResult build() {
+            return new MatrixDistanceResult(origins, destinations, distances.clone(), durations.clone(), complete);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the candidate locations with the shortest driving durations from an address, querying the distance
+ * matrix for only a small part of the candidates.
+ *
+ * The address is geocoded and the candidates are ordered by great-circle distance. The nearest K are sent to
+ * the distance matrix, in one row. The count-th shortest duration among them, divided by a lower bound on
+ * seconds per great-circle mile, gives a radius outside of which no candidate can be faster; any candidates
+ * inside the radius that were not queried are queried as well. The result is the count fastest candidates,
+ * shortest duration first.
+ *
+ * Both K and the radius adapt. The lower bound on seconds per mile is the tolerance quantile of the paces seen
+ * in earlier rankings (DEFAULT_MINIMUM_PACE until there are enough), so a tolerance of 0.01 accepts that about
+ * one candidate in a hundred is faster than the bound assumes. K is kept a little above the number of
+ * candidates that recent radii needed, so most rankings are answered by the first query.
+ */
+public class NearestLocationRanker {
+    public static final double DEFAULT_TOLERANCE = 0.01;
+
+    /** Seconds per great-circle mile assumed until enough paces have been seen: about 80 mph as the crow flies. */
+    public static final double DEFAULT_MINIMUM_PACE = 45;
+
+    static final int PACE_SAMPLES = 1024;
+    static final int MINIMUM_PACE_SAMPLES = 50;
+
+    private static final double INITIAL_EXPANSION = 4;
+    private static final double EXPANSION_MARGIN = 1.25;
+    private static final double EXPANSION_WEIGHT = 0.2;
+
+    /** Paces over very short distances say more about the last mile than the road network. */
+    private static final double MINIMUM_SAMPLE_MILES = 1;
+
+    private final MapDistanceMatrix distanceMatrix;
+    private final MapGeocoding geocoding;
+    private final MapDistanceRequest request;
+
+    private final double[] paces = new double[PACE_SAMPLES];
+    private int paceCount;
+    private double expansion = INITIAL_EXPANSION;
+
+    private final AtomicLong candidateCount = new AtomicLong();
+    private final AtomicLong elementCount = new AtomicLong();
+
+    /**
+     * @param distanceMatrix - queried with the address as the only origin
+     * @param geocoding      - used to locate the address
+     * @param request        - a request whose copies carry the options for each query
+     */
+    public NearestLocationRanker(MapDistanceMatrix distanceMatrix, MapGeocoding geocoding,
+                                 MapDistanceRequest request) {
+        this.distanceMatrix = distanceMatrix;
+        this.geocoding = geocoding;
+        this.request = request;
+    }
+
+    public List<RankedLocation> rank(String address, Map<String, LatAndLong> candidates, int count) {
+        return rank(address, candidates, count, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Returns up to count candidates with the shortest driving durations from the address, shortest first.
+     * Candidates are keyed by the location string sent to the distance matrix. Candidates without a result are
+     * left out, and an address that cannot be geocoded gives an empty list.
+     */
+    public List<RankedLocation> rank(String address, Map<String, LatAndLong> candidates, int count,
+                                     double tolerance) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be positive");
+        }
+        if (tolerance <= 0 || tolerance >= 1) {
+            throw new IllegalArgumentException("Tolerance must be between 0 and 1");
+        }
+
+        LatAndLong origin = geocoding.getLocation(address);
+        if (origin == null || candidates.isEmpty()) {
+            return Lists.newArrayList();
+        }
+
+        // Candidates in great-circle order.
+        int size = candidates.size();
+        String[] names = candidates.keySet().toArray(new String[size]);
+        final double[] miles = GreatCircleDistances.oneToMany(origin,
+                GreatCircleDistances.Points.of(candidates.values()));
+        int i;
+        Integer[] order = new Integer[size];
+        for (i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return Double.compare(miles[first], miles[second]);
+            }
+        });
+
+        double[] distances = new double[size];
+        double[] durations = new double[size];
+        double minimumPace = getMinimumPace(tolerance);
+        double radius = Double.POSITIVE_INFINITY;
+        int queried = 0;
+        int k = Math.min(size, Math.max(count, (int) Math.ceil(count * getExpansion())));
+        while (k > queried) {
+            query(address, names, order, queried, k, distances, durations);
+            queried = k;
+
+            double threshold = nthDuration(durations, queried, count);
+            if (threshold < 0) {
+                // Not enough results yet to bound the search.
+                k = Math.min(size, queried * 2);
+                continue;
+            }
+
+            radius = threshold / minimumPace;
+            while (k < size && miles[order[k]] < radius) {
+                k++;
+            }
+        }
+
+        candidateCount.addAndGet(size);
+        elementCount.addAndGet(queried);
+
+        List<RankedLocation> ranked = Lists.newArrayList();
+        for (i = 0; i < queried; i++) {
+            if (durations[i] >= 0) {
+                int candidate = order[i];
+                ranked.add(new RankedLocation(names[candidate], candidates.get(names[candidate]), miles[candidate],
+                        distances[i], durations[i]));
+            }
+        }
+        Collections.sort(ranked, new Comparator<RankedLocation>() {
+            @Override
+            public int compare(RankedLocation first, RankedLocation second) {
+                return Double.compare(first.getDuration(), second.getDuration());
+            }
+        });
+
+        record(ranked, radius, miles, order, count);
+        return ranked.size() > count ? Lists.newArrayList(ranked.subList(0, count)) : ranked;
+    }
+
+    /**
+     * Number of candidates passed to rank().
+     */
+    public long getCandidateCount() {
+        return candidateCount.get();
+    }
+
+    /**
+     * Number of distance matrix elements queried by rank().
+     */
+    public long getElementCount() {
+        return elementCount.get();
+    }
+
+    /**
+     * The number of candidates queried first, as a multiple of the count asked for.
+     */
+    public synchronized double getExpansion() {
+        return expansion;
+    }
+
+    /**
+     * The lower bound on seconds per great-circle mile used for the given tolerance.
+     */
+    public synchronized double getMinimumPace(double tolerance) {
+        if (paceCount < MINIMUM_PACE_SAMPLES) {
+            return DEFAULT_MINIMUM_PACE;
+        }
+
+        int samples = Math.min(paceCount, PACE_SAMPLES);
+        double[] sorted = Arrays.copyOf(paces, samples);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.floor(tolerance * (samples - 1))];
+    }
+
+    private void query(String address, String[] names, Integer[] order, int from, int to, double[] distances,
+                       double[] durations) {
+        List<String> destinations = Lists.newArrayListWithCapacity(to - from);
+        for (int i = from; i < to; i++) {
+            destinations.add(names[order[i]]);
+        }
+
+        MapDistanceResult result = distanceMatrix.query(request.copy()
+                .withOrigin(address)
+                .withDestinations(destinations));
+        for (int i = from; i < to; i++) {
+            distances[i] = result == null ? -1 : result.getDistance(address, names[order[i]]);
+            durations[i] = result == null ? -1 : result.getDuration(address, names[order[i]]);
+        }
+    }
+
+    /**
+     * Learns from a ranking: the pace of each result, and how many candidates its radius covered.
+     */
+    private synchronized void record(List<RankedLocation> ranked, double radius, double[] miles, Integer[] order,
+                                     int count) {
+        for (RankedLocation location : ranked) {
+            if (location.getGreatCircleDistance() >= MINIMUM_SAMPLE_MILES) {
+                paces[paceCount % PACE_SAMPLES] = location.getDuration() / location.getGreatCircleDistance();
+                paceCount++;
+            }
+        }
+
+        if (!Double.isInfinite(radius)) {
+            int needed = count;
+            while (needed < order.length && miles[order[needed]] < radius) {
+                needed++;
+            }
+            double target = Math.max(1, EXPANSION_MARGIN * needed / count);
+            expansion = (1 - EXPANSION_WEIGHT) * expansion + EXPANSION_WEIGHT * target;
+        }
+    }
+
+    /**
+     * Returns the nth shortest duration among the first size, or -1 if fewer than n have a result.
+     */
+    private static double nthDuration(double[] durations, int size, int n) {
+        double[] sorted = Arrays.copyOf(durations, size);
+        Arrays.sort(sorted);
+        int first = 0;
+        while (first < size && sorted[first] < 0) {
+            first++;
+        }
+        return first + n - 1 < size ? sorted[first + n - 1] : -1;
+    }
+}
@@ -0,0 +1,87 @@
+package com.containerstore.lost.googlemaps;
+
+/**
+ * Packs a latitude and longitude into one long: the latitude in the high 32 bits and the longitude in the low
+ * 32 bits, each as a signed count of SCALE-ths of a degree (1e-7 degrees, about a centimeter).
+ *
+ * geohash() maps a packed point to a 64-bit key whose bits interleave the latitude and longitude, so points that
+ * sort near each other by key are near each other on the map. The mapping is one-to-one; fromGeohash() reverses
+ * it.
+ */
+public final class PackedLatLong {
+    public static final double SCALE = 1e7;
+
+    private static final long LATITUDE_OFFSET = 1L << 30;
+
+    private PackedLatLong() {
+    }
+
+    public static long pack(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid latitude and longitude: " + latitude + "," + longitude);
+        }
+        return ((long) toFixed(latitude) << 32) | (toFixed(longitude) & 0xFFFFFFFFL);
+    }
+
+    public static long pack(LatAndLong location) {
+        return pack(location.getLatitude(), location.getLongitude());
+    }
+
+    public static double latitude(long packed) {
+        return (int) (packed >> 32) / SCALE;
+    }
+
+    public static double longitude(long packed) {
+        return (int) packed / SCALE;
+    }
+
+    public static LatAndLong toLatAndLong(long packed) {
+        return new LatAndLong(latitude(packed), longitude(packed));
+    }
+
+    /**
+     * Returns the key that orders points along a Z-order curve: the bits of the latitude and longitude,
+     * offset to be unsigned, interleaved with the latitude's bits first. Latitudes are offset by only 2^30, which
+     * keeps the top bit of every key clear, so keys sort the same as signed longs.
+     */
+    public static long geohash(long packed) {
+        long latitude = (packed >> 32) + LATITUDE_OFFSET;
+        long longitude = (packed ^ 0x80000000L) & 0xFFFFFFFFL;
+        return (spread(latitude) << 1) | spread(longitude);
+    }
+
+    public static long fromGeohash(long geohash) {
+        long latitude = (compact(geohash >>> 1) - LATITUDE_OFFSET) & 0xFFFFFFFFL;
+        long longitude = compact(geohash) ^ 0x80000000L;
+        return (latitude << 32) | longitude;
+    }
+
+    private static int toFixed(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+
+    /**
+     * Moves the low 32 bits of value to the even bit positions.
+     */
+    private static long spread(long value) {
+        value = (value | (value << 16)) & 0x0000FFFF0000FFFFL;
+        value = (value | (value << 8)) & 0x00FF00FF00FF00FFL;
+        value = (value | (value << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | (value << 2)) & 0x3333333333333333L;
+        value = (value | (value << 1)) & 0x5555555555555555L;
+        return value;
+    }
+
+    /**
+     * Gathers the even bits of value into the low 32 bits.
+     */
+    private static long compact(long value) {
+        value &= 0x5555555555555555L;
+        value = (value | (value >>> 1)) & 0x3333333333333333L;
+        value = (value | (value >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | (value >>> 4)) & 0x00FF00FF00FF00FFL;
+        value = (value | (value >>> 8)) & 0x0000FFFF0000FFFFL;
+        value = (value | (value >>> 16)) & 0x00000000FFFFFFFFL;
+        return value;
+    }
+}
@@ -0,0 +1,79 @@
+package com.containerstore.lost.googlemaps;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * A MapDistanceMatrix decorator that remembers distance and duration elements in a MappedStore, keyed by the
+ * request options and the normalized origin and destination, so that known pairs are not queried again after
+ * a restart.
+ *
+ * A request is answered from the store only when every origin-destination pair is known; otherwise the whole
+ * request goes to the delegate and its elements are stored. Elements without a result are not stored. If the
+ * store fails, the failure is logged and the delegate is used as if the store were empty.
+ */
+public class PersistentMapDistanceMatrix implements MapDistanceMatrix {
+    private static final Logger LOG = Logger.getLogger(PersistentMapDistanceMatrix.class);
+
+    private final MapDistanceMatrix delegate;
+    private final MappedStore store;
+
+    public PersistentMapDistanceMatrix(MapDistanceMatrix delegate, MappedStore store) {
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    @Override
+    public MapDistanceResult query(MapDistanceRequest request) {
+        MapDistanceResult stored = getStoredResult(request);
+        if (stored != null) {
+            return stored;
+        }
+
+        MapDistanceResult result = delegate.query(request);
+        if (result != null) {
+            storeResult(request, result);
+        }
+
+        return result;
+    }
+
+    private MapDistanceResult getStoredResult(MapDistanceRequest request) {
+        MatrixDistanceResult.MatrixDistanceResultBuilder builder =
+                MatrixDistanceResult.result(request.getOrigins(), request.getDestinations());
+
+        double[] value = new double[2];
+        try {
+            for (String origin : request.getOrigins()) {
+                for (String destination : request.getDestinations()) {
+                    if (!store.get(Addresses.pairKey(request.getOptionsKey(), origin, destination), value)) {
+                        return null;
+                    }
+                    builder.withElement(origin, destination, value[0], value[1]);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read stored distances: " + e.getMessage());
+            return null;
+        }
+
+        return builder.build();
+    }
+
+    private void storeResult(MapDistanceRequest request, MapDistanceResult result) {
+        try {
+            for (String origin : request.getOrigins()) {
+                for (String destination : request.getDestinations()) {
+                    double distance = result.getDistance(origin, destination);
+                    if (distance >= 0) {
+                        store.put(Addresses.pairKey(request.getOptionsKey(), origin, destination), distance,
+                                result.getDuration(origin, destination));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to store distances: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.containerstore.lost.googlemaps;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * A MapGeocoding decorator that remembers geocoded locations in a MappedStore, keyed by normalized address, so
+ * that known addresses are not geocoded again after a restart.
+ *
+ * Addresses that geocode to no result are not stored. If the store fails, the failure is logged and the
+ * delegate is used as if the store were empty.
+ */
+public class PersistentMapGeocoding implements MapGeocoding {
+    private static final Logger LOG = Logger.getLogger(PersistentMapGeocoding.class);
+
+    private final MapGeocoding delegate;
+    private final MappedStore store;
+
+    public PersistentMapGeocoding(MapGeocoding delegate, MappedStore store) {
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    @Override
+    public LatAndLong getLocation(String address) {
+        String key = Addresses.normalize(address);
+
+        double[] value = new double[2];
+        try {
+            if (store.get(key, value)) {
+                return new LatAndLong(value[0], value[1]);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read stored location for " + key + ": " + e.getMessage());
+        }
+
+        LatAndLong location = delegate.getLocation(address);
+        if (location != null) {
+            try {
+                store.put(key, location.getLatitude(), location.getLongitude());
+            } catch (IOException e) {
+                LOG.warn("Unable to store location for " + key + ": " + e.getMessage());
+            }
+        }
+
+        return location;
+    }
+}
@@ -0,0 +1,47 @@
+package com.containerstore.lost.googlemaps;
+
+/**
+ * A candidate location returned by NearestLocationRanker, with its driving distance (miles) and duration
+ * (seconds) from the origin and the great-circle distance (miles) used to prefilter it.
+ */
+public class RankedLocation {
+    private final String name;
+    private final LatAndLong location;
+    private final double greatCircleDistance;
+    private final double distance;
+    private final double duration;
+
+    public RankedLocation(String name, LatAndLong location, double greatCircleDistance, double distance,
+                          double duration) {
+        this.name = name;
+        this.location = location;
+        this.greatCircleDistance = greatCircleDistance;
+        this.distance = distance;
+        this.duration = duration;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatAndLong getLocation() {
+        return location;
+    }
+
+    public double getGreatCircleDistance() {
+        return greatCircleDistance;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public double getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + distance + " mi, " + duration + " s)";
+    }
+}
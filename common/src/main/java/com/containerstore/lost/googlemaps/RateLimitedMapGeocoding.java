@@ -0,0 +1,33 @@
+package com.containerstore.lost.googlemaps;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * A MapGeocoding decorator that takes a geocoding token from the MapsCallScheduler before each call. If the
+ * provider still reports that the limit was exceeded, the bucket is emptied so that later calls back off.
+ */
+@Component("RateLimitedMapGeocoding")
+public class RateLimitedMapGeocoding implements MapGeocoding {
+    private final MapGeocoding delegate;
+    private final MapsCallScheduler scheduler;
+
+    @Autowired
+    public RateLimitedMapGeocoding(@Qualifier("GoogleGeocoding") MapGeocoding delegate,
+                                   MapsCallScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public LatAndLong getLocation(String address) {
+        scheduler.acquireGeocode();
+        try {
+            return delegate.getLocation(address);
+        } catch (MapsRateLimitException e) {
+            scheduler.getGeocodeBucket().drain();
+            throw e;
+        }
+    }
+}
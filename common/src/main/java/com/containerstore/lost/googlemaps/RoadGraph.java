@@ -0,0 +1,232 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Maps;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A road network loaded from an edge-list file, held in compressed sparse row form: for each node, its outgoing
+ * edges are a contiguous range of the target, miles and seconds arrays.
+ *
+ * Each line of the file is one road segment:
+ * <pre>
+ * from_latitude,from_longitude,to_latitude,to_longitude,miles,seconds[,oneway]
+ * </pre>
+ * Segments are two-way unless the last field is "1" or "oneway". Segments that share an end point (to 1e-7
+ * degrees) are joined at the same node. Blank lines and lines starting with '#' are skipped.
+ *
+ * The graph is immutable, so any number of searches may use it at once.
+ */
+public final class RoadGraph {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final LatLongArray nodes;
+    private final GreatCircleDistances.Points points;
+    private final int[] firstEdges;
+    private final int[] targets;
+    private final double[] miles;
+    private final double[] seconds;
+    private final double minimumPace;
+    private final LocationIndex index;
+
+    private RoadGraph(LatLongArray nodes, int[] firstEdges, int[] targets, double[] miles, double[] seconds) {
+        this.nodes = nodes;
+        this.points = GreatCircleDistances.Points.of(nodes);
+        this.firstEdges = firstEdges;
+        this.targets = targets;
+        this.miles = miles;
+        this.seconds = seconds;
+
+        Map<String, LatAndLong> locations = Maps.newHashMapWithExpectedSize(nodes.size());
+        for (int node = 0; node < nodes.size(); node++) {
+            locations.put(Integer.toString(node), nodes.get(node));
+        }
+        this.index = new LocationIndex(locations);
+
+        double pace = Double.POSITIVE_INFINITY;
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int edge = firstEdges[node]; edge < firstEdges[node + 1]; edge++) {
+                double straight = straightMiles(node, targets[edge]);
+                if (straight > 0) {
+                    pace = Math.min(pace, seconds[edge] / straight);
+                }
+            }
+        }
+        this.minimumPace = Double.isInfinite(pace) ? 0 : pace;
+    }
+
+    public static RoadGraph load(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        try {
+            return read(reader, file.getPath());
+        } finally {
+            reader.close();
+        }
+    }
+
+    static RoadGraph read(BufferedReader reader, String source) throws IOException {
+        Map<Long, Integer> nodeIds = Maps.newHashMap();
+        LatLongArray nodes = new LatLongArray();
+        EdgeList edges = new EdgeList();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = trimmed.split(",");
+            if (fields.length != 6 && fields.length != 7) {
+                throw new IOException("Expected 6 or 7 fields at line " + lineNumber + " of " + source);
+            }
+            try {
+                int from = node(nodeIds, nodes, Double.parseDouble(fields[0].trim()),
+                        Double.parseDouble(fields[1].trim()));
+                int to = node(nodeIds, nodes, Double.parseDouble(fields[2].trim()),
+                        Double.parseDouble(fields[3].trim()));
+                double segmentMiles = Double.parseDouble(fields[4].trim());
+                double segmentSeconds = Double.parseDouble(fields[5].trim());
+                if (segmentMiles < 0 || segmentSeconds < 0) {
+                    throw new IllegalArgumentException("negative length");
+                }
+
+                edges.add(from, to, segmentMiles, segmentSeconds);
+                String oneway = fields.length == 7 ? fields[6].trim() : "";
+                if (!oneway.equals("1") && !oneway.equalsIgnoreCase("oneway")) {
+                    edges.add(to, from, segmentMiles, segmentSeconds);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid segment at line " + lineNumber + " of " + source + ": "
+                        + e.getMessage());
+            }
+        }
+
+        return edges.toGraph(nodes);
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    public LatAndLong getLocation(int node) {
+        return nodes.get(node);
+    }
+
+    /**
+     * Returns the node nearest the location, or -1 if there is none within the given great-circle distance.
+     */
+    public int nearestNode(LatAndLong location, double maximumMiles) {
+        List<String> nearest = index.nearest(location, 1);
+        if (nearest.isEmpty()) {
+            return -1;
+        }
+
+        int node = Integer.parseInt(nearest.get(0));
+        return GreatCircleDistances.distance(location, nodes.get(node)) <= maximumMiles ? node : -1;
+    }
+
+    int firstEdge(int node) {
+        return firstEdges[node];
+    }
+
+    int endEdge(int node) {
+        return firstEdges[node + 1];
+    }
+
+    int target(int edge) {
+        return targets[edge];
+    }
+
+    double miles(int edge) {
+        return miles[edge];
+    }
+
+    double seconds(int edge) {
+        return seconds[edge];
+    }
+
+    /**
+     * The fewest seconds any segment takes per great-circle mile, so that great-circle miles times this pace
+     * never overestimates the driving time between two nodes.
+     */
+    double getMinimumPace() {
+        return minimumPace;
+    }
+
+    double straightMiles(int from, int to) {
+        return points.distance(from, points, to);
+    }
+
+    private static int node(Map<Long, Integer> nodeIds, LatLongArray nodes, double latitude, double longitude) {
+        long packed = PackedLatLong.pack(latitude, longitude);
+        Integer node = nodeIds.get(packed);
+        if (node == null) {
+            node = nodes.size();
+            nodeIds.put(packed, node);
+            nodes.addPacked(packed);
+        }
+        return node;
+    }
+
+    /**
+     * Edges as they are read, before they are grouped by source node.
+     */
+    private static final class EdgeList {
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private double[] miles = new double[16];
+        private double[] seconds = new double[16];
+        private int size;
+
+        void add(int source, int target, double edgeMiles, double edgeSeconds) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+                miles = Arrays.copyOf(miles, size * 2);
+                seconds = Arrays.copyOf(seconds, size * 2);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            miles[size] = edgeMiles;
+            seconds[size] = edgeSeconds;
+            size++;
+        }
+
+        RoadGraph toGraph(LatLongArray nodes) {
+            int[] firstEdges = new int[nodes.size() + 1];
+            for (int i = 0; i < size; i++) {
+                firstEdges[sources[i] + 1]++;
+            }
+            for (int node = 0; node < nodes.size(); node++) {
+                firstEdges[node + 1] += firstEdges[node];
+            }
+
+            int[] next = Arrays.copyOf(firstEdges, nodes.size());
+            int[] sortedTargets = new int[size];
+            double[] sortedMiles = new double[size];
+            double[] sortedSeconds = new double[size];
+            for (int i = 0; i < size; i++) {
+                int edge = next[sources[i]]++;
+                sortedTargets[edge] = targets[i];
+                sortedMiles[edge] = miles[i];
+                sortedSeconds[edge] = seconds[i];
+            }
+            return new RoadGraph(nodes, firstEdges, sortedTargets, sortedMiles, sortedSeconds);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A MapDistanceMatrix computed from a local RoadGraph, with no quota, no network and the same answer every time.
+ *
+ * Origins and destinations are "latitude,longitude" strings or, if a geocoding is given, addresses. Each is
+ * snapped to the nearest graph node within the maximum snap distance; locations with no node that close have
+ * no result. Distances and durations are measured between the snapped nodes along the fastest route.
+ *
+ * Each origin row is one search from the origin that stops once every destination is settled: plain one-to-many
+ * Dijkstra for many destinations, and A* with a great-circle bound for a single destination. There is no
+ * preprocessing (such as contraction hierarchies) and no bidirectional search, so a row costs a search of the
+ * graph out to its farthest destination. Rows are computed in parallel, at most parallelism at a time.
+ *
+ * A location that cannot be snapped, or a destination with no route, has -1 as its elements. If computing the
+ * rows fails or is interrupted, the query throws instead of returning a partly filled matrix.
+ */
+public class RoadNetworkMapDistanceMatrix implements MapDistanceMatrix {
+    public static final double DEFAULT_MAXIMUM_SNAP_MILES = 5;
+
+    private final RoadGraph graph;
+    private final MapGeocoding geocoding;
+    private final double maximumSnapMiles;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final ThreadLocal<Search> searches = new ThreadLocal<Search>() {
+        @Override
+        protected Search initialValue() {
+            return new Search(graph);
+        }
+    };
+
+    public RoadNetworkMapDistanceMatrix(RoadGraph graph) {
+        this(graph, null, DEFAULT_MAXIMUM_SNAP_MILES, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param graph            - the road network
+     * @param geocoding        - used to locate addresses that are not latitude and longitude pairs; may be null
+     * @param maximumSnapMiles - how far a location may be from its nearest node
+     * @param parallelism      - the number of rows computed at once
+     */
+    public RoadNetworkMapDistanceMatrix(RoadGraph graph, MapGeocoding geocoding, double maximumSnapMiles,
+                                        int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+
+        this.graph = graph;
+        this.geocoding = geocoding;
+        this.maximumSnapMiles = maximumSnapMiles;
+        this.parallelism = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("road-network-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public MapDistanceResult query(MapDistanceRequest request) {
+        final List<String> origins = ImmutableSet.copyOf(request.getOrigins()).asList();
+        final List<String> destinations = ImmutableSet.copyOf(request.getDestinations()).asList();
+        final int[] originNodes = snap(origins);
+        final int[] destinationNodes = snap(destinations);
+
+        final double[] distances = new double[origins.size() * destinations.size()];
+        final double[] durations = new double[distances.length];
+        Arrays.fill(distances, -1);
+        Arrays.fill(durations, -1);
+
+        int chunks = Math.min(parallelism, origins.size());
+        List<Callable<Void>> tasks = Lists.newArrayListWithCapacity(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final int first = chunk;
+            final int step = chunks;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Search search = searches.get();
+                    for (int row = first; row < origins.size(); row += step) {
+                        search.run(originNodes[row], destinationNodes, distances, durations,
+                                row * destinations.size());
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted computing road network distances", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Exception computing road network distances", e.getCause());
+        }
+
+        return new MatrixDistanceResult(origins, destinations, distances, durations);
+    }
+
+    /**
+     * Stops the threads used to compute rows.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private int[] snap(List<String> locations) {
+        int[] nodes = new int[locations.size()];
+        for (int i = 0; i < locations.size(); i++) {
+            LatAndLong location = LatAndLong.fromString(locations.get(i));
+            if (location == null && geocoding != null) {
+                location = geocoding.getLocation(locations.get(i));
+            }
+            nodes[i] = location == null ? -1 : graph.nearestNode(location, maximumSnapMiles);
+        }
+        return nodes;
+    }
+
+    /**
+     * The state of a search from one node, reused for every row computed by one thread. Node labels are only
+     * valid when their stamp is the current search's, so nothing is cleared between searches.
+     */
+    static final class Search {
+        private final RoadGraph graph;
+        private final double[] seconds;
+        private final double[] miles;
+        private final int[] reached;
+        private final int[] settled;
+        private final int[] wanted;
+        private int stamp;
+
+        private double[] heapKeys = new double[64];
+        private int[] heapNodes = new int[64];
+        private int heapSize;
+
+        Search(RoadGraph graph) {
+            this.graph = graph;
+            this.seconds = new double[graph.getNodeCount()];
+            this.miles = new double[graph.getNodeCount()];
+            this.reached = new int[graph.getNodeCount()];
+            this.settled = new int[graph.getNodeCount()];
+            this.wanted = new int[graph.getNodeCount()];
+        }
+
+        /**
+         * Finds the fastest route from the source to each target node (-1 for none), writing the results for
+         * target i at offset + i.
+         */
+        void run(int source, int[] targets, double[] distances, double[] durations, int offset) {
+            if (source < 0) {
+                return;
+            }
+
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(reached, 0);
+                Arrays.fill(settled, 0);
+                Arrays.fill(wanted, 0);
+                stamp = 0;
+            }
+            stamp++;
+
+            int remaining = 0;
+            int single = -1;
+            for (int target : targets) {
+                if (target >= 0 && wanted[target] != stamp) {
+                    wanted[target] = stamp;
+                    remaining++;
+                    single = target;
+                }
+            }
+            // With one target the search is A*; with more a bound toward any one of them would be wrong.
+            int goal = remaining == 1 ? single : -1;
+            double pace = graph.getMinimumPace();
+
+            heapSize = 0;
+            reach(source, 0, 0, goal < 0 ? 0 : pace * graph.straightMiles(source, goal));
+            while (heapSize > 0 && remaining > 0) {
+                int node = heapNodes[0];
+                pop();
+                if (settled[node] == stamp) {
+                    continue;
+                }
+                settled[node] = stamp;
+                if (wanted[node] == stamp) {
+                    remaining--;
+                }
+
+                for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+                    int next = graph.target(edge);
+                    if (settled[next] == stamp) {
+                        continue;
+                    }
+                    double nextSeconds = seconds[node] + graph.seconds(edge);
+                    if (reached[next] != stamp || nextSeconds < seconds[next]) {
+                        reach(next, nextSeconds, miles[node] + graph.miles(edge),
+                                goal < 0 ? 0 : pace * graph.straightMiles(next, goal));
+                    }
+                }
+            }
+
+            for (int i = 0; i < targets.length; i++) {
+                int target = targets[i];
+                if (target >= 0 && settled[target] == stamp) {
+                    distances[offset + i] = miles[target];
+                    durations[offset + i] = seconds[target];
+                }
+            }
+        }
+
+        private void reach(int node, double nodeSeconds, double nodeMiles, double bound) {
+            reached[node] = stamp;
+            seconds[node] = nodeSeconds;
+            miles[node] = nodeMiles;
+            push(nodeSeconds + bound, node);
+        }
+
+        private void push(double key, int node) {
+            if (heapSize == heapKeys.length) {
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+                heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            }
+
+            int position = heapSize++;
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (heapKeys[parent] <= key) {
+                    break;
+                }
+                heapKeys[position] = heapKeys[parent];
+                heapNodes[position] = heapNodes[parent];
+                position = parent;
+            }
+            heapKeys[position] = key;
+            heapNodes[position] = node;
+        }
+
+        private void pop() {
+            double key = heapKeys[--heapSize];
+            int node = heapNodes[heapSize];
+            int position = 0;
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                    child++;
+                }
+                if (heapKeys[child] >= key) {
+                    break;
+                }
+                heapKeys[position] = heapKeys[child];
+                heapNodes[position] = heapNodes[child];
+                position = child;
+            }
+            heapKeys[position] = key;
+            heapNodes[position] = node;
+        }
+    }
+}
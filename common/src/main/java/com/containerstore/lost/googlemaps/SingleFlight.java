@@ -0,0 +1,91 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent calls with the same key into one: the first caller for a key runs the call, and callers
+ * that arrive while it is running wait for it and share its result or exception. Once the call completes the
+ * key is released, so later callers run the call again; results are not cached.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, SettableFuture<V>> inFlight = Maps.newConcurrentMap();
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong sharedCount = new AtomicLong();
+
+    /**
+     * Runs the call for the key, or waits for the call already running for it. Runtime exceptions from the
+     * call are rethrown to every caller; checked exceptions are wrapped in an IllegalStateException.
+     */
+    public V execute(K key, Callable<V> call) {
+        SettableFuture<V> future = SettableFuture.create();
+        SettableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            sharedCount.incrementAndGet();
+            return await(existing);
+        }
+
+        callCount.incrementAndGet();
+        try {
+            V value = call.call();
+            future.set(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.setException(e);
+            throw e;
+        } catch (Exception e) {
+            future.setException(e);
+            throw new IllegalStateException(e);
+        } catch (Error e) {
+            future.setException(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Number of calls actually run.
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * Number of callers that shared the result of a call already running.
+     */
+    public long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    private V await(SettableFuture<V> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSortedSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A MapDistanceMatrix decorator that makes only one delegate call at a time per canonical request: the same
+ * options and the same sets of origins and destinations, in any order. Concurrent identical queries share the
+ * result, or the exception, of that call.
+ */
+@Component("SingleFlightMapDistanceMatrix")
+public class SingleFlightMapDistanceMatrix implements MapDistanceMatrix {
+    private static final Joiner JOINER = Joiner.on('\u0000');
+
+    private final MapDistanceMatrix delegate;
+    private final SingleFlight<String, MapDistanceResult> flights = new SingleFlight<String, MapDistanceResult>();
+
+    @Autowired
+    public SingleFlightMapDistanceMatrix(@Qualifier("GoogleDistanceMatrix") MapDistanceMatrix delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MapDistanceResult query(final MapDistanceRequest request) {
+        return flights.execute(canonicalKey(request), new Callable<MapDistanceResult>() {
+            @Override
+            public MapDistanceResult call() {
+                return delegate.query(request);
+            }
+        });
+    }
+
+    /**
+     * Number of queries that shared a call already in flight.
+     */
+    public long getSharedCount() {
+        return flights.getSharedCount();
+    }
+
+    static String canonicalKey(MapDistanceRequest request) {
+        // Results are looked up by the caller's own strings, so these are not normalized.
+        return request.getOptionsKey() + '\u0001'
+                + JOINER.join(ImmutableSortedSet.copyOf(request.getOrigins())) + '\u0001'
+                + JOINER.join(ImmutableSortedSet.copyOf(request.getDestinations()));
+    }
+}
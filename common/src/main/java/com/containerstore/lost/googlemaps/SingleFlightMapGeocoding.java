@@ -0,0 +1,39 @@
+package com.containerstore.lost.googlemaps;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A MapGeocoding decorator that makes only one delegate call at a time per normalized address. Concurrent
+ * lookups of the same address share the result, or the exception, of that call.
+ */
+@Component("SingleFlightMapGeocoding")
+public class SingleFlightMapGeocoding implements MapGeocoding {
+    private final MapGeocoding delegate;
+    private final SingleFlight<String, LatAndLong> flights = new SingleFlight<String, LatAndLong>();
+
+    @Autowired
+    public SingleFlightMapGeocoding(@Qualifier("RateLimitedMapGeocoding") MapGeocoding delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public LatAndLong getLocation(final String address) {
+        return flights.execute(Addresses.normalize(address), new Callable<LatAndLong>() {
+            @Override
+            public LatAndLong call() {
+                return delegate.getLocation(address);
+            }
+        });
+    }
+
+    /**
+     * Number of lookups that shared a call already in flight.
+     */
+    public long getSharedCount() {
+        return flights.getSharedCount();
+    }
+}
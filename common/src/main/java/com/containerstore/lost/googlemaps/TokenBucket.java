@@ -0,0 +1,154 @@
+package com.containerstore.lost.googlemaps;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket that admits callers in priority order.
+ *
+ * Tokens accrue at a fixed rate up to a burst size. Callers wait in a queue ordered by priority and then by
+ * arrival, and only the caller at the head of the queue takes tokens, so a higher priority caller never waits
+ * behind a lower priority one. A caller asking for more tokens than the burst size is admitted once the
+ * bucket is full and leaves it in debt, so that large requests are still paced at the sustained rate.
+ */
+public class TokenBucket {
+    private static final class Waiter implements Comparable<Waiter> {
+        private final MapsCallScheduler.Priority priority;
+        private final long sequence;
+
+        Waiter(MapsCallScheduler.Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int compare = priority.compareTo(other.priority);
+            if (compare != 0) {
+                return compare;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    private final String name;
+    private final double permitsPerNano;
+    private final double burst;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<Waiter>();
+    private long sequence;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(String name, double permitsPerSecond, double burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+        }
+
+        this.name = name;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Takes the given number of tokens, waiting according to the backpressure mode.
+     *
+     * @param permits  - the number of tokens to take
+     * @param priority - the lane of the caller
+     * @param mode     - what to do when tokens are not available immediately
+     * @param timeout  - how long to wait in DEADLINE mode, in nanoseconds
+     * @throws MapsRateLimitException if the tokens could not be taken within the constraints of the mode
+     */
+    public void acquire(int permits, MapsCallScheduler.Priority priority, MapsCallScheduler.Backpressure mode,
+                        long timeout) {
+        long deadline = System.nanoTime() + timeout;
+        double needed = Math.min(permits, burst);
+
+        lock.lock();
+        Waiter waiter = new Waiter(priority, sequence++);
+        waiters.add(waiter);
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+
+                long wait;
+                if (waiters.peek() == waiter) {
+                    if (tokens >= needed) {
+                        tokens -= permits;
+                        return;
+                    }
+                    wait = (long) Math.ceil((needed - tokens) / permitsPerNano);
+                } else {
+                    wait = Long.MAX_VALUE;
+                }
+
+                if (mode == MapsCallScheduler.Backpressure.FAIL_FAST) {
+                    throw new MapsRateLimitException("No " + name + " capacity for " + permits + " permits");
+                }
+                if (mode == MapsCallScheduler.Backpressure.DEADLINE) {
+                    long remaining = deadline - now;
+                    if (remaining <= 0 || (wait != Long.MAX_VALUE && wait > remaining)) {
+                        throw new MapsRateLimitException("No " + name + " capacity for " + permits
+                                + " permits within " + TimeUnit.NANOSECONDS.toMillis(timeout) + " ms");
+                    }
+                    wait = Math.min(wait, remaining);
+                }
+
+                if (wait == Long.MAX_VALUE) {
+                    changed.await();
+                } else {
+                    changed.awaitNanos(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MapsRateLimitException("Interrupted waiting for " + name + " capacity");
+        } finally {
+            waiters.remove(waiter);
+            changed.signalAll();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Empties the bucket, for when the provider reports that the limit has been exceeded anyway.
+     */
+    public void drain() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            tokens = Math.min(tokens, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of tokens currently available; negative while the bucket is in debt.
+     */
+    public double getAvailable() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return tokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
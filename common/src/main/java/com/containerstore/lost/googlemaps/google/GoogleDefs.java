@@ -2,9 +2,24 @@ package com.containerstore.lost.googlemaps.google;
 
 public class GoogleDefs {
     public static final String GOOGLE_API = "http://maps.googleapis.com/maps/api";
+
+    /** System property that replaces GOOGLE_API as the base URL of every call, for example to use a stub server. */
+    public static final String GOOGLE_API_PROPERTY = "googlemaps.api";
     public static final String DISTANCE_URI = "/distancematrix/json";
     public static final String GEOCODING_URI = "/geocode/json";
 
+    /** Response status when the request rate or quota has been exceeded. */
+    public static final String OVER_QUERY_LIMIT = "OVER_QUERY_LIMIT";
+
+    /** Response status when the request could not be completed, including when no response was read. */
+    public static final String UNKNOWN_ERROR = "UNKNOWN_ERROR";
+
+    /** Limits on a single distance matrix request. */
+    public static final int MAX_DISTANCE_ORIGINS = 25;
+    public static final int MAX_DISTANCE_DESTINATIONS = 25;
+    public static final int MAX_DISTANCE_ELEMENTS = 100;
+    public static final int MAX_URL_LENGTH = 8192;
+
     public enum Mode {
         DRIVING,
         WALKING,
@@ -21,6 +36,20 @@ public class GoogleDefs {
         IMPERIAL
     }
 
+    private static volatile String googleApi = System.getProperty(GOOGLE_API_PROPERTY, GOOGLE_API);
+
+    /**
+     * Returns the base URL that requests are sent to: GOOGLE_API, unless the googlemaps.api system property or
+     * setGoogleApi says otherwise.
+     */
+    public static String getGoogleApi() {
+        return googleApi;
+    }
+
+    public static void setGoogleApi(String api) {
+        googleApi = api == null ? GOOGLE_API : api;
+    }
+
     private GoogleDefs() {
         throw new UnsupportedOperationException();
     }
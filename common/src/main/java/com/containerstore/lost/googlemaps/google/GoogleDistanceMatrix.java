@@ -3,24 +3,111 @@ package com.containerstore.lost.googlemaps.google;
 import com.containerstore.lost.googlemaps.MapDistanceMatrix;
 import com.containerstore.lost.googlemaps.MapDistanceRequest;
 import com.containerstore.lost.googlemaps.MapDistanceResult;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
+import com.containerstore.lost.googlemaps.MapsCallScheduler;
+import com.containerstore.lost.googlemaps.MapsRateLimitException;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.containerstore.lost.googlemaps.google.GoogleDefs.*;
+
+/**
+ * Queries the Google Distance Matrix API.
+ *
+ * Requests larger than Google allows in one call (origins, destinations, elements or URL length) are split
+ * into tiles that are each within the limits. The tiles are queried concurrently, at most parallelism at a
+ * time, and stitched back together into one GoogleDistanceResult. A tile that fails is logged and the tiles that
+ * succeeded are still merged; the failed tile's elements keep the ELEMENT_OTHER status and the result's response
+ * status is the failed tile's instead of OK. A rate limit response is thrown as a MapsRateLimitException.
+ *
+ * Given a MapsCallScheduler, each tile takes its elements from the distance bucket just before it is sent, with
+ * the priority of the thread that made the query, so a request larger than the burst is sent at the sustained
+ * rate instead of all at once. A rate limit response empties the bucket so that later tiles back off.
+ */
 @Component("GoogleDistanceMatrix")
 public class GoogleDistanceMatrix implements MapDistanceMatrix {
     private static final Logger LOG = Logger.getLogger(GoogleDistanceMatrix.class);
 
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * A part of a request that is within the request limits.
+     */
+    static final class Tile {
+        private final List<String> origins;
+        private final List<String> destinations;
+
+        Tile(List<String> origins, List<String> destinations) {
+            this.origins = origins;
+            this.destinations = destinations;
+        }
+
+        List<String> getOrigins() {
+            return origins;
+        }
+
+        List<String> getDestinations() {
+            return destinations;
+        }
+    }
+
     private final RestTemplate restTemplate;
+    private final MapsCallScheduler scheduler;
+    private final ExecutorService executor;
 
     public GoogleDistanceMatrix() {
-        this.restTemplate = new RestTemplate();
+        this(MapsHttpTransport.getDefault(), DEFAULT_PARALLELISM);
+    }
+
+    @Autowired
+    public GoogleDistanceMatrix(MapsCallScheduler scheduler) {
+        this(MapsHttpTransport.getDefault().getRestTemplate(), DEFAULT_PARALLELISM, scheduler);
+    }
+
+    public GoogleDistanceMatrix(MapsHttpTransport transport, int parallelism) {
+        this(transport.getRestTemplate(), parallelism);
     }
 
     public GoogleDistanceMatrix(RestTemplate restTemplate) {
+        this(restTemplate, DEFAULT_PARALLELISM);
+    }
+
+    public GoogleDistanceMatrix(RestTemplate restTemplate, int parallelism) {
+        this(restTemplate, parallelism, null);
+    }
+
+    /**
+     * @param restTemplate - the template used to call the API
+     * @param parallelism  - the most tiles queried at a time
+     * @param scheduler    - paces the tiles; null to send them unpaced
+     */
+    public GoogleDistanceMatrix(RestTemplate restTemplate, int parallelism, MapsCallScheduler scheduler) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+
         this.restTemplate = restTemplate;
+        this.scheduler = scheduler;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("google-distance-%d")
+                .setDaemon(true)
+                .build());
     }
 
     @Override
@@ -30,20 +117,180 @@ public class GoogleDistanceMatrix implements MapDistanceMatrix {
                 .withMode(GoogleDefs.Mode.DRIVING)
                 .withUnits(GoogleDefs.Units.IMPERIAL);
 
+        List<String> origins = ImmutableSet.copyOf(distanceRequest.getOrigins()).asList();
+        List<String> destinations = ImmutableSet.copyOf(distanceRequest.getDestinations()).asList();
+        GoogleDistanceRequest deduplicated = requestFor(distanceRequest, new Tile(origins, destinations));
+        if (origins.size() <= MAX_DISTANCE_ORIGINS && destinations.size() <= MAX_DISTANCE_DESTINATIONS
+                && origins.size() * destinations.size() <= MAX_DISTANCE_ELEMENTS && fitsUrl(deduplicated)) {
+            return queryTile(deduplicated);
+        }
+
+        List<Tile> tiles = Lists.newArrayList();
+        for (Tile tile : tile(origins, destinations, MAX_DISTANCE_ORIGINS, MAX_DISTANCE_DESTINATIONS,
+                MAX_DISTANCE_ELEMENTS)) {
+            addFittingTiles(distanceRequest, tile, tiles);
+        }
+
+        return queryTiles(distanceRequest, origins, destinations, tiles);
+    }
+
+    /**
+     * Stops the threads used to query tiles.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private GoogleDistanceResult queryTiles(GoogleDistanceRequest distanceRequest, List<String> origins,
+                                            List<String> destinations, List<Tile> tiles) {
+        final MapsCallScheduler.Priority priority = MapsCallScheduler.getPriority();
+        List<Callable<GoogleDistanceResult>> tasks = Lists.newArrayListWithCapacity(tiles.size());
+        for (Tile tile : tiles) {
+            final GoogleDistanceRequest tileRequest = requestFor(distanceRequest, tile);
+            tasks.add(new Callable<GoogleDistanceResult>() {
+                @Override
+                public GoogleDistanceResult call() {
+                    MapsCallScheduler.Priority previous = MapsCallScheduler.setPriority(priority);
+                    try {
+                        return queryTile(tileRequest);
+                    } finally {
+                        MapsCallScheduler.setPriority(previous);
+                    }
+                }
+            });
+        }
+
+        List<Future<GoogleDistanceResult>> futures;
         try {
-            String json = restTemplate.getForObject(distanceRequest.build(), String.class);
+            futures = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted querying distance matrix tiles", e);
+        }
+
+        List<GoogleDistanceResult> results = Lists.newArrayListWithCapacity(tiles.size());
+        MapsRateLimitException rateLimit = null;
+        for (Future<GoogleDistanceResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted querying distance matrix tiles", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof MapsRateLimitException) {
+                    rateLimit = (MapsRateLimitException) e.getCause();
+                }
+                LOG.error("Exception querying distance matrix tile: " + e.getCause());
+                results.add(null);
+            }
+        }
+
+        if (rateLimit != null) {
+            throw rateLimit;
+        }
+        return GoogleDistanceResult.merge(origins, destinations, results);
+    }
 
-            JSONObject jsonObject = (JSONObject) JSONSerializer.toJSON(json);
+    private GoogleDistanceResult queryTile(final GoogleDistanceRequest distanceRequest) {
+        if (scheduler != null) {
+            scheduler.acquireDistanceElements(distanceRequest.getOrigins().size()
+                    * distanceRequest.getDestinations().size());
+        }
 
-            return GoogleDistanceResult.result()
-                    .withJSONObject(jsonObject)
-                    .withOrigins(distanceRequest.getOrigins())
-                    .withDestinations(distanceRequest.getDestinations())
-                    .build();
+        GoogleDistanceResult result = GoogleDistanceResult.result().build();
+        try {
+            result = restTemplate.execute(distanceRequest.build(), HttpMethod.GET, null,
+                    new ResponseExtractor<GoogleDistanceResult>() {
+                        @Override
+                        public GoogleDistanceResult extractData(ClientHttpResponse response) throws IOException {
+                            return GoogleDistanceResult.result()
+                                    .withInputStream(response.getBody())
+                                    .withOrigins(distanceRequest.getOrigins())
+                                    .withDestinations(distanceRequest.getDestinations())
+                                    .build();
+                        }
+                    });
         } catch (Exception e) {
             LOG.error("Exception querying URI: " + e.getMessage());
         }
 
-        return GoogleDistanceResult.result().build();
+        if (OVER_QUERY_LIMIT.equalsIgnoreCase(result.getResponseStatus())) {
+            if (scheduler != null) {
+                scheduler.getDistanceBucket().drain();
+            }
+            throw new MapsRateLimitException("Google Distance Matrix query returned " + OVER_QUERY_LIMIT);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the tile, halving it along its longer side until each part's URL is within the length limit.
+     */
+    private void addFittingTiles(GoogleDistanceRequest distanceRequest, Tile tile, List<Tile> tiles) {
+        int originCount = tile.getOrigins().size();
+        int destinationCount = tile.getDestinations().size();
+        if ((originCount == 1 && destinationCount == 1) || fitsUrl(requestFor(distanceRequest, tile))) {
+            tiles.add(tile);
+        } else if (originCount >= destinationCount) {
+            addFittingTiles(distanceRequest, new Tile(tile.getOrigins().subList(0, originCount / 2),
+                    tile.getDestinations()), tiles);
+            addFittingTiles(distanceRequest, new Tile(tile.getOrigins().subList(originCount / 2, originCount),
+                    tile.getDestinations()), tiles);
+        } else {
+            addFittingTiles(distanceRequest, new Tile(tile.getOrigins(),
+                    tile.getDestinations().subList(0, destinationCount / 2)), tiles);
+            addFittingTiles(distanceRequest, new Tile(tile.getOrigins(),
+                    tile.getDestinations().subList(destinationCount / 2, destinationCount)), tiles);
+        }
+    }
+
+    private static GoogleDistanceRequest requestFor(GoogleDistanceRequest distanceRequest, Tile tile) {
+        return distanceRequest.copy()
+                .withOrigins(tile.getOrigins())
+                .withDestinations(tile.getDestinations());
+    }
+
+    private static boolean fitsUrl(GoogleDistanceRequest distanceRequest) {
+        try {
+            return distanceRequest.build().toString().length() <= MAX_URL_LENGTH;
+        } catch (Exception e) {
+            // Let the query report the problem.
+            return true;
+        }
+    }
+
+    /**
+     * Splits the origins and destinations into the fewest tiles of the same shape that are within the given
+     * limits.
+     */
+    static List<Tile> tile(List<String> origins, List<String> destinations, int maxOrigins, int maxDestinations,
+                           int maxElements) {
+        int bestOrigins = 1;
+        int bestDestinations = 1;
+        long bestCount = Long.MAX_VALUE;
+        for (int tileDestinations = 1; tileDestinations <= Math.min(maxDestinations, destinations.size());
+             tileDestinations++) {
+            int tileOrigins = Math.max(1, Math.min(Math.min(maxOrigins, origins.size()),
+                    maxElements / tileDestinations));
+            long count = (long) chunks(origins.size(), tileOrigins) * chunks(destinations.size(), tileDestinations);
+            if (count < bestCount) {
+                bestCount = count;
+                bestOrigins = tileOrigins;
+                bestDestinations = tileDestinations;
+            }
+        }
+
+        List<Tile> tiles = Lists.newArrayList();
+        for (List<String> originChunk : Lists.partition(origins, bestOrigins)) {
+            for (List<String> destinationChunk : Lists.partition(destinations, bestDestinations)) {
+                tiles.add(new Tile(originChunk, destinationChunk));
+            }
+        }
+        return tiles;
+    }
+
+    private static int chunks(int size, int chunkSize) {
+        return (size + chunkSize - 1) / chunkSize;
     }
 }
@@ -34,13 +34,34 @@ public class GoogleDistanceRequest implements MapDistanceRequest {
         return destinations.iterator().next();
     }
 
+    @Override
     public Collection<String> getDestinations() {
         return destinations;
     }
 
+    @Override
+    public String getOptionsKey() {
+        return (mode == null ? Mode.DRIVING : mode).toString().toLowerCase()
+                + "|" + (avoid == null ? "" : avoid.toString().toLowerCase())
+                + "|" + (language == null ? "" : language.toLowerCase());
+    }
+
+    @Override
+    public GoogleDistanceRequest copy() {
+        GoogleDistanceRequest copy = new GoogleDistanceRequest();
+        copy.origins = origins == null ? null : newArrayList(origins);
+        copy.destinations = destinations == null ? null : newArrayList(destinations);
+        copy.sensor = sensor;
+        copy.mode = mode;
+        copy.language = language;
+        copy.avoid = avoid;
+        copy.units = units;
+        return copy;
+    }
+
     public URI build() throws URISyntaxException, UnsupportedEncodingException {
         StringBuilder sb = new StringBuilder();
-        sb.append(GOOGLE_API);
+        sb.append(getGoogleApi());
         sb.append(DISTANCE_URI);
         sb.append("?origins=");
         sb.append(buildLocationString(origins));
@@ -58,25 +79,26 @@ public class GoogleDistanceRequest implements MapDistanceRequest {
     }
 
     @Override
-    public MapDistanceRequest withOrigin(String origin) {
+    public GoogleDistanceRequest withOrigin(String origin) {
         origins = newArrayList();
         origins.add(origin);
         return this;
     }
 
     @Override
-    public MapDistanceRequest withOrigins(Collection<String> origins) {
+    public GoogleDistanceRequest withOrigins(Collection<String> origins) {
         this.origins = newArrayList(origins);
         return this;
     }
 
     @Override
-    public MapDistanceRequest withDestination(String destination) {
+    public GoogleDistanceRequest withDestination(String destination) {
         destinations = Lists.newArrayList();
         destinations.add(destination);
         return this;
     }
 
+    @Override
     public GoogleDistanceRequest withDestinations(Collection<String> destinations) {
         this.destinations = newArrayList(destinations);
         return this;
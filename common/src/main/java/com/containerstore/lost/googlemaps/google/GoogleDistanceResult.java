@@ -1,248 +1,340 @@
 package com.containerstore.lost.googlemaps.google;
 
-import com.containerstore.lost.googlemaps.MapDistanceResult;
+import com.containerstore.lost.googlemaps.MatrixDistanceResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.DataFormatException;
 
-import static com.google.common.collect.Maps.*;
-
-public class GoogleDistanceResult implements MapDistanceResult {
+/**
+ * The result of a Google Distance Matrix query: a MatrixDistanceResult of distances (miles) and durations
+ * (seconds), plus the status of each element.
+ *
+ * A result can be read from a response stream, which only looks at the element statuses and distance and
+ * duration values and skips everything else, or from an already parsed JSONObject.
+ */
+public class GoogleDistanceResult extends MatrixDistanceResult {
     private static final Logger LOG = Logger.getLogger(GoogleDistanceResult.class);
 
-    private static class Distance {
-        private final String text;
-        private final double value;
-
-        Distance(JSONObject object) {
-            text = object.getString("text");
-            value = object.getDouble("value");
-        }
+    private static final double METERS_TO_MILES = 0.00062137119;
 
-        String getDescription() {
-            return text;
-        }
+    /** Element statuses. */
+    public static final byte ELEMENT_OK = 0;
+    public static final byte ELEMENT_NOT_FOUND = 1;
+    public static final byte ELEMENT_ZERO_RESULTS = 2;
+    public static final byte ELEMENT_OTHER = 3;
 
-        double getAmount() {
-            return value;
-        }
+    private final byte[] statuses;
+    private final String responseStatus;
 
-        double getAmountInMiles() {
-            return value * 0.00062137119;
-        }
+    private GoogleDistanceResult(Response response) {
+        super(response.origins, response.destinations, response.distances, response.durations);
+        this.statuses = response.statuses;
+        this.responseStatus = response.status;
     }
 
-    private static class Duration {
-        private final String text;
-        private final double value;
-
-        Duration(JSONObject object) {
-            text = object.getString("text");
-            value = object.getDouble("value");
-        }
-
-        String getDescription() {
-            return text;
-        }
-
-        double getAmount() {
-            return value;
-        }
+    /**
+     * Returns the status of the element (one of the ELEMENT_ constants), or ELEMENT_OTHER if the origin or
+     * destination is not part of the result.
+     */
+    public byte getStatus(String origin, String destination) {
+        int index = indexOf(origin, destination);
+        return index < 0 ? ELEMENT_OTHER : statuses[index];
     }
 
-    private static class Element {
-        private final boolean isOk;
+    /**
+     * Returns the status of the whole response ("OK" or the error status reported by Google), or null if no
+     * response was read.
+     */
+    public String getResponseStatus() {
+        return responseStatus;
+    }
 
-        private Distance distance = null;
-        private Duration duration = null;
+    /**
+     * A Google result is complete when its response status is OK.
+     */
+    @Override
+    public boolean isComplete() {
+        return "OK".equalsIgnoreCase(responseStatus);
+    }
 
-        Element(JSONObject object) {
-            isOk = object.getString("status").equalsIgnoreCase("OK");
-            if (isOk) {
-                distance = new Distance(object.getJSONObject("distance"));
-                duration = new Duration(object.getJSONObject("duration"));
+    /**
+     * Stitches the results of the tiles of a request into one result for the whole request. A tile whose result
+     * is null or not OK is skipped, leaving its elements with the ELEMENT_OTHER status, and the merged result
+     * then has that tile's response status (UNKNOWN_ERROR if it has none) instead of OK, so a partial result can
+     * be told from a complete one.
+     */
+    static GoogleDistanceResult merge(Collection<String> origins, Collection<String> destinations,
+                                      List<GoogleDistanceResult> tiles) {
+        Response response = new Response(ImmutableSet.copyOf(origins).asList(),
+                ImmutableSet.copyOf(destinations).asList());
+        response.status = "OK";
+
+        Map<String, Integer> rows = indexes(response.origins);
+        Map<String, Integer> columns = indexes(response.destinations);
+        for (GoogleDistanceResult tile : tiles) {
+            String status = tile == null ? null : tile.getResponseStatus();
+            if (status == null || !status.equalsIgnoreCase("OK")) {
+                if (response.status.equals("OK")) {
+                    response.status = status == null ? GoogleDefs.UNKNOWN_ERROR : status;
+                }
+                continue;
             }
-        }
 
-        double getDistanceAmount() {
-            return distance == null ? -1 : distance.getAmountInMiles();
-        }
-
-        double getDurationAmount() {
-            return duration == null ? -1 : duration.getAmount();
-        }
-
-        String getDistanceDescription() {
-            return distance == null ? "" : distance.getDescription();
-        }
-
-        String getDurationDescription() {
-            return duration == null ? "" : duration.getDescription();
-        }
-    }
-
-    private static class Elements extends ArrayList<Element> {
-        Elements(JSONArray array) {
-            for (int i = 0; i < array.size(); i++) {
-                add(new Element(array.getJSONObject(i)));
+            for (String origin : tile.getOrigins()) {
+                for (String destination : tile.getDestinations()) {
+                    Integer row = rows.get(origin);
+                    Integer column = columns.get(destination);
+                    int tileIndex = tile.indexOf(origin, destination);
+                    if (row != null && column != null && tileIndex >= 0) {
+                        int index = row * response.destinations.size() + column;
+                        response.statuses[index] = tile.statuses[tileIndex];
+                        response.distances[index] = tile.getDistance(origin, destination);
+                        response.durations[index] = tile.getDuration(origin, destination);
+                    }
+                }
             }
         }
+        return new GoogleDistanceResult(response);
     }
 
-    private static class Row {
-        private final Elements elements;
-
-        Row(JSONObject object) {
-            elements = new Elements(object.getJSONArray("elements"));
-        }
-
-        Element getElement(int index) {
-            return elements == null ? null : elements.get(index);
-        }
-
-        int size() {
-            return elements.size();
+    private static Map<String, Integer> indexes(List<String> locations) {
+        Map<String, Integer> indexes = Maps.newHashMapWithExpectedSize(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            indexes.put(locations.get(i), i);
         }
+        return indexes;
     }
 
-    private static class Rows extends ArrayList<Row> {
-        Rows(JSONArray array) {
-            for (int i = 0; i < array.size(); i++) {
-                add(new Row(array.getJSONObject(i)));
+    /**
+     * The element arrays of a result, filled in while reading a response.
+     */
+    private static final class Response {
+        private final List<String> origins;
+        private final List<String> destinations;
+        private final double[] distances;
+        private final double[] durations;
+        private final byte[] statuses;
+        private String status;
+
+        Response(List<String> origins, List<String> destinations) {
+            this.origins = origins;
+            this.destinations = destinations;
+            this.distances = new double[origins.size() * destinations.size()];
+            this.durations = new double[distances.length];
+            this.statuses = new byte[distances.length];
+            Arrays.fill(distances, -1);
+            Arrays.fill(durations, -1);
+            Arrays.fill(statuses, ELEMENT_OTHER);
+        }
+
+        private void setElement(int index, byte status, double meters, double seconds) {
+            statuses[index] = status;
+            if (status == ELEMENT_OK) {
+                // An OK element missing its distance or duration keeps -1 for that value.
+                distances[index] = meters >= 0 ? meters * METERS_TO_MILES : -1;
+                durations[index] = seconds >= 0 ? seconds : -1;
             }
         }
-    }
-
-    private Map<String, Row> originRows;
-    private Map<String, String> originAddresses;
-    private Map<String, String> destinationAddresses;
-    private boolean isOk;
 
-    private GoogleDistanceResult() {
-        isOk = false;
+        private void marshalJson(JSONObject object) throws DataFormatException {
+            status = object.getString("status");
+            if (!status.equalsIgnoreCase("ok")) {
+                throw new DataFormatException("Google Distance Matrix query returned error: " + status);
+            }
 
-        destinationAddresses = newLinkedHashMap();
-        originAddresses = newLinkedHashMap();
-        originRows = newLinkedHashMap();
-    }
+            JSONArray destinationsJson = object.getJSONArray("destination_addresses");
+            JSONArray originsJson = object.getJSONArray("origin_addresses");
+            JSONArray rows = object.getJSONArray("rows");
 
-    private void marshalJson(Collection<String> origins, Collection<String> destinations, JSONObject object)
-            throws DataFormatException {
+            if (destinations.size() != destinationsJson.size()) {
+                throw new DataFormatException("Addresses returned different size than incoming destinations");
+            }
 
-        destinationAddresses = newLinkedHashMap();
-        originAddresses = newLinkedHashMap();
-        originRows = newLinkedHashMap();
+            if (origins.size() != rows.size() || origins.size() != originsJson.size()) {
+                throw new DataFormatException(
+                        "Rows and/or addresses returned different size than incoming origins");
+            }
 
-        isOk = object.getString("status").equalsIgnoreCase("ok");
-        if (!isOk) {
-            LOG.error("Google Distance Matrix query returned error: " + object.getString("status"));
-            return;
+            for (int row = 0; row < rows.size(); row++) {
+                JSONArray elements = rows.getJSONObject(row).getJSONArray("elements");
+                if (elements.size() != destinations.size()) {
+                    throw new DataFormatException("Row returned different size than incoming destinations");
+                }
+
+                for (int column = 0; column < elements.size(); column++) {
+                    JSONObject element = elements.getJSONObject(column);
+                    byte elementStatus = elementStatus(element.getString("status"));
+                    if (elementStatus == ELEMENT_OK) {
+                        setElement(row * destinations.size() + column, elementStatus,
+                                element.getJSONObject("distance").getDouble("value"),
+                                element.getJSONObject("duration").getDouble("value"));
+                    } else {
+                        setElement(row * destinations.size() + column, elementStatus, -1, -1);
+                    }
+                }
+            }
         }
 
-        JSONArray destinationsJson = object.getJSONArray("destination_addresses");
-        JSONArray originsJson = object.getJSONArray("origin_addresses");
-        Rows rows = new Rows(object.getJSONArray("rows"));
+        private void parse(InputStream in) throws IOException, DataFormatException {
+            JsonPullParser parser = new JsonPullParser(in);
+            if (parser.next() != JsonPullParser.Token.START_OBJECT) {
+                throw new DataFormatException("Response is not a JSON object");
+            }
 
-        if (destinations.size() != destinationsJson.size()) {
-            throw new DataFormatException("Addresses returned different size than incoming origins");
-        }
+            int originCount = -1;
+            int destinationCount = -1;
+            int rowCount = -1;
+            while (parser.next() == JsonPullParser.Token.FIELD_NAME) {
+                if (parser.textEquals("status")) {
+                    parser.next();
+                    status = parser.getText();
+                } else if (parser.textEquals("origin_addresses")) {
+                    originCount = countValues(parser);
+                } else if (parser.textEquals("destination_addresses")) {
+                    destinationCount = countValues(parser);
+                } else if (parser.textEquals("rows")) {
+                    rowCount = parseRows(parser);
+                } else {
+                    parser.skipNextValue();
+                }
+            }
 
-        if (origins.size() != rows.size() || origins.size() != originsJson.size()) {
-            throw new DataFormatException("Rows and/or addresses returned different size than incoming destinations");
-        }
+            if (status == null || !status.equalsIgnoreCase("ok")) {
+                throw new DataFormatException("Google Distance Matrix query returned error: " + status);
+            }
 
-        int i = 0;
-        for (String each : destinations) {
-            destinationAddresses.put(each, destinationsJson.getString(i++));
-        }
+            if (destinations.size() != destinationCount) {
+                throw new DataFormatException("Addresses returned different size than incoming destinations");
+            }
 
-        i = 0;
-        for (String each : origins) {
-            originAddresses.put(each, originsJson.getString(i));
-            originRows.put(each, rows.get(i++));
+            if (origins.size() != rowCount || origins.size() != originCount) {
+                throw new DataFormatException(
+                        "Rows and/or addresses returned different size than incoming origins");
+            }
         }
-    }
 
-    private int getDestinationIndex(String destination) {
-        int i = 0;
+        private int parseRows(JsonPullParser parser) throws IOException, DataFormatException {
+            expect(parser.next(), JsonPullParser.Token.START_ARRAY);
+
+            int row = 0;
+            JsonPullParser.Token token;
+            while ((token = parser.next()) != JsonPullParser.Token.END_ARRAY) {
+                expect(token, JsonPullParser.Token.START_OBJECT);
+                while (parser.next() == JsonPullParser.Token.FIELD_NAME) {
+                    if (parser.textEquals("elements") && row < origins.size()) {
+                        parseElements(parser, row);
+                    } else {
+                        parser.skipNextValue();
+                    }
+                }
+                row++;
+            }
+            return row;
+        }
+
+        private void parseElements(JsonPullParser parser, int row) throws IOException, DataFormatException {
+            expect(parser.next(), JsonPullParser.Token.START_ARRAY);
+
+            int column = 0;
+            JsonPullParser.Token token;
+            while ((token = parser.next()) != JsonPullParser.Token.END_ARRAY) {
+                expect(token, JsonPullParser.Token.START_OBJECT);
+                if (column >= destinations.size()) {
+                    throw new DataFormatException("Row returned different size than incoming destinations");
+                }
+
+                byte elementStatus = ELEMENT_OTHER;
+                double meters = -1;
+                double seconds = -1;
+                while (parser.next() == JsonPullParser.Token.FIELD_NAME) {
+                    if (parser.textEquals("status")) {
+                        parser.next();
+                        elementStatus = elementStatus(parser);
+                    } else if (parser.textEquals("distance")) {
+                        meters = parseValue(parser);
+                    } else if (parser.textEquals("duration")) {
+                        seconds = parseValue(parser);
+                    } else {
+                        parser.skipNextValue();
+                    }
+                }
+
+                setElement(row * destinations.size() + column, elementStatus, meters, seconds);
+                column++;
+            }
 
-        for (String each : destinationAddresses.keySet()) {
-            if (destination.equals(each)) {
-                return i;
+            if (column != destinations.size()) {
+                throw new DataFormatException("Row returned different size than incoming destinations");
             }
-            i++;
         }
 
-        return -1;
-    }
-
-    private Element getElement(int destinationIndex, String origin) {
-        Row row = originRows.get(origin);
-        if (row == null) {
-            return null;
+        /**
+         * Reads the "value" of a distance or duration object, skipping its "text".
+         */
+        private static double parseValue(JsonPullParser parser) throws IOException, DataFormatException {
+            expect(parser.next(), JsonPullParser.Token.START_OBJECT);
+
+            double value = -1;
+            while (parser.next() == JsonPullParser.Token.FIELD_NAME) {
+                if (parser.textEquals("value")) {
+                    expect(parser.next(), JsonPullParser.Token.NUMBER);
+                    value = parser.getDouble();
+                } else {
+                    parser.skipNextValue();
+                }
+            }
+            return value;
         }
 
-        return row.getElement(destinationIndex);
-    }
-
-    private Element getElement(String origin, String destination) {
-        int destinationIndex = getDestinationIndex(destination);
-        return getElement(destinationIndex, origin);
-    }
+        private static int countValues(JsonPullParser parser) throws IOException, DataFormatException {
+            expect(parser.next(), JsonPullParser.Token.START_ARRAY);
 
-    @Override
-    public Map<String, Double> getDistancesToDestination(String destination) {
-        Map<String, Double> distanceMap = newLinkedHashMap();
-
-        for (String origin : originRows.keySet()) {
-            Element e = getElement(origin, destination);
-            if (e != null) {
-                distanceMap.put(origin, e.getDistanceAmount());
+            int count = 0;
+            JsonPullParser.Token token;
+            while ((token = parser.next()) != JsonPullParser.Token.END_ARRAY) {
+                parser.skipValue(token);
+                count++;
             }
+            return count;
         }
 
-        return distanceMap;
-    }
-
-    @Override
-    public Map<String, Double> getDistancesFromOrigin(String origin) {
-        Map<String, Double> distanceMap = newLinkedHashMap();
-
-        Row row = originRows.get(origin);
-        if (row == null) {
-            return null;
+        private static void expect(JsonPullParser.Token actual, JsonPullParser.Token expected)
+                throws DataFormatException {
+            if (actual != expected) {
+                throw new DataFormatException("Expected " + expected + " but found " + actual);
+            }
         }
 
-        if (row.size() != destinationAddresses.size()) {
-            // error, should be equal
-            return null;
+        private static byte elementStatus(JsonPullParser parser) {
+            if (parser.textEquals("OK")) {
+                return ELEMENT_OK;
+            }
+            return elementStatus(parser.getText());
         }
 
-        Iterator<String> iter = destinationAddresses.keySet().iterator();
-        for (int i = 0; i < row.size(); i++) {
-            Element e = row.getElement(i);
-            distanceMap.put(iter.next(), e.getDistanceAmount());
+        private static byte elementStatus(String status) {
+            if (status.equalsIgnoreCase("OK")) {
+                return ELEMENT_OK;
+            }
+            if (status.equalsIgnoreCase("NOT_FOUND")) {
+                return ELEMENT_NOT_FOUND;
+            }
+            if (status.equalsIgnoreCase("ZERO_RESULTS")) {
+                return ELEMENT_ZERO_RESULTS;
+            }
+            return ELEMENT_OTHER;
         }
-
-        return distanceMap;
-    }
-
-    @Override
-    public double getDistance(String origin, String destination) {
-        Element e = getElement(origin, destination);
-        return e == null ? -1 : e.getDistanceAmount();
-    }
-
-    @Override
-    public double getDuration(String origin, String destination) {
-        Element e = getElement(origin, destination);
-        return e == null ? -1 : e.getDurationAmount();
     }
 
     public static GoogleDistanceResultBuilder result() {
@@ -251,6 +343,7 @@ public class GoogleDistanceResult implements MapDistanceResult {
 
     public static class GoogleDistanceResultBuilder {
         private JSONObject jsonObject;
+        private InputStream inputStream;
         private Collection<String> origins;
         private Collection<String> destinations;
 
@@ -267,18 +360,37 @@ public class GoogleDistanceResult implements MapDistanceResult {
             return this;
         }
 
+        /**
+         * Reads the result from a response stream instead of a parsed JSONObject. The stream is not closed.
+         */
+        public GoogleDistanceResultBuilder withInputStream(InputStream inputStream) {
+            this.inputStream = inputStream;
+            return this;
+        }
+
         public GoogleDistanceResultBuilder withDestinations(Collection<String> destinations) {
             this.destinations = destinations;
             return this;
         }
 
         public GoogleDistanceResult build() {
+            if (origins == null || destinations == null || (jsonObject == null && inputStream == null)) {
+                return new GoogleDistanceResult(new Response(ImmutableList.<String>of(), ImmutableList.<String>of()));
+            }
+
+            Response response = new Response(ImmutableList.copyOf(origins), ImmutableList.copyOf(destinations));
             try {
-                GoogleDistanceResult result = new GoogleDistanceResult();
-                result.marshalJson(origins, destinations, jsonObject);
-                return result;
+                if (inputStream != null) {
+                    response.parse(inputStream);
+                } else {
+                    response.marshalJson(jsonObject);
+                }
+                return new GoogleDistanceResult(response);
             } catch (Exception e) {
-                return new GoogleDistanceResult();
+                LOG.error("Unable to read Google Distance Matrix response: " + e.getMessage());
+                Response empty = new Response(ImmutableList.<String>of(), ImmutableList.<String>of());
+                empty.status = response.status;
+                return new GoogleDistanceResult(empty);
             }
         }
     }
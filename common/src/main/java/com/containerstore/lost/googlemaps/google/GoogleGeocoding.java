@@ -3,13 +3,16 @@ package com.containerstore.lost.googlemaps.google;
 import com.containerstore.common.base.exception.BusinessException;
 import com.containerstore.lost.googlemaps.LatAndLong;
 import com.containerstore.lost.googlemaps.MapGeocoding;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
+import com.containerstore.lost.googlemaps.MapsRateLimitException;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -19,10 +22,16 @@ import static com.containerstore.lost.googlemaps.google.GoogleDefs.*;
 
 @Component("GoogleGeocoding")
 public class GoogleGeocoding implements MapGeocoding {
+    private static final String ZERO_RESULTS = "ZERO_RESULTS";
+
     private final RestTemplate restTemplate;
 
     public GoogleGeocoding() {
-        this.restTemplate = new RestTemplate();
+        this(MapsHttpTransport.getDefault());
+    }
+
+    public GoogleGeocoding(MapsHttpTransport transport) {
+        this.restTemplate = transport.getRestTemplate();
     }
 
     public GoogleGeocoding(@Qualifier("orderServicesServiceRestTemplate") RestTemplate restTemplate) {
@@ -31,7 +40,7 @@ public class GoogleGeocoding implements MapGeocoding {
 
     public URI buildURI(String address) {
         try {
-            return new URI(GOOGLE_API + GEOCODING_URI
+            return new URI(getGoogleApi() + GEOCODING_URI
                     + "?address=" + URLEncoder.encode(address, "UTF-8")
                     + "&sensor=false");
         } catch (UnsupportedEncodingException shouldNeverHappen) {
@@ -43,23 +52,134 @@ public class GoogleGeocoding implements MapGeocoding {
 
     @Override
     public LatAndLong getLocation(String address) {
-        String response = restTemplate.getForObject(buildURI(address), String.class);
+        GeocodeResponse response = restTemplate.execute(buildURI(address), HttpMethod.GET, null,
+                new ResponseExtractor<GeocodeResponse>() {
+                    @Override
+                    public GeocodeResponse extractData(ClientHttpResponse response) throws IOException {
+                        return GeocodeResponse.parse(response.getBody());
+                    }
+                });
+
+        String status = response.getStatus();
+        if (ZERO_RESULTS.equalsIgnoreCase(status)) {
+            return null;
+        }
+
+        if (OVER_QUERY_LIMIT.equalsIgnoreCase(status)) {
+            throw new MapsRateLimitException("Google Maps call returned status " + status);
+        }
 
-        JSONObject responseObject = (JSONObject) JSONSerializer.toJSON(response);
-        String status = responseObject.getString("status");
         if (!"OK".equalsIgnoreCase(status)) {
             throw new BusinessException("Google Maps call returned status %s", status);
         }
 
-        JSONArray results = responseObject.getJSONArray("results");
-        if (results.size() < 1) {
-            return null;
+        return response.getLocation();
+    }
+
+    /**
+     * The parts of a geocoding response that are used: the status and the location of the first result. The
+     * response is read as a stream and everything else in it is skipped.
+     */
+    static final class GeocodeResponse {
+        private String status;
+        private LatAndLong location;
+
+        String getStatus() {
+            return status;
         }
 
-        JSONObject addrObj = results.getJSONObject(0);
-        JSONObject geometry = addrObj.getJSONObject("geometry");
-        JSONObject location = geometry.getJSONObject("location");
+        LatAndLong getLocation() {
+            return location;
+        }
 
-        return new LatAndLong(location.getDouble("lat"), location.getDouble("lng"));
+        static GeocodeResponse parse(InputStream in) throws IOException {
+            GeocodeResponse response = new GeocodeResponse();
+            JsonPullParser parser = new JsonPullParser(in, 2048);
+            if (parser.next() != JsonPullParser.Token.START_OBJECT) {
+                throw new IOException("Geocoding response is not a JSON object");
+            }
+
+            while (parser.next() == JsonPullParser.Token.FIELD_NAME) {
+                if (parser.textEquals("status")) {
+                    parser.next();
+                    response.status = parser.getText();
+                } else if (parser.textEquals("results")) {
+                    response.location = parseResults(parser);
+                } else {
+                    parser.skipNextValue();
+                }
+            }
+            return response;
+        }
+
+        private static LatAndLong parseResults(JsonPullParser parser) throws IOException {
+            JsonPullParser.Token token = parser.next();
+            if (token != JsonPullParser.Token.START_ARRAY) {
+                parser.skipValue(token);
+                return null;
+            }
+
+            LatAndLong location = null;
+            boolean first = true;
+            while ((token = parser.next()) != JsonPullParser.Token.END_ARRAY) {
+                if (first && token == JsonPullParser.Token.START_OBJECT) {
+                    location = parseResult(parser);
+                } else {
+                    parser.skipValue(token);
+                }
+                first = false;
+            }
+            return location;
+        }
+
+        /**
+         * Reads a result object, returning the location in its geometry.
+         */
+        private static LatAndLong parseResult(JsonPullParser parser) throws IOException {
+            return parseField(parser, "geometry", false);
+        }
+
+        /**
+         * Reads the rest of the current object. If it has the named field holding an object, that object is
+         * read either as a geometry (looking for its "location") or as a latitude and longitude.
+         */
+        private static LatAndLong parseField(JsonPullParser parser, String field, boolean latLng)
+                throws IOException {
+            LatAndLong location = null;
+            while (parser.next() == JsonPullParser.Token.FIELD_NAME) {
+                if (!parser.textEquals(field)) {
+                    parser.skipNextValue();
+                    continue;
+                }
+
+                JsonPullParser.Token token = parser.next();
+                if (token != JsonPullParser.Token.START_OBJECT) {
+                    parser.skipValue(token);
+                } else if (latLng) {
+                    location = parseLatLng(parser);
+                } else {
+                    location = parseField(parser, "location", true);
+                }
+            }
+            return location;
+        }
+
+        private static LatAndLong parseLatLng(JsonPullParser parser) throws IOException {
+            double lat = Double.NaN;
+            double lng = Double.NaN;
+            while (parser.next() == JsonPullParser.Token.FIELD_NAME) {
+                boolean isLat = parser.textEquals("lat");
+                boolean isLng = parser.textEquals("lng");
+                JsonPullParser.Token token = parser.next();
+                if (token == JsonPullParser.Token.NUMBER && isLat) {
+                    lat = parser.getDouble();
+                } else if (token == JsonPullParser.Token.NUMBER && isLng) {
+                    lng = parser.getDouble();
+                } else {
+                    parser.skipValue(token);
+                }
+            }
+            return Double.isNaN(lat) || Double.isNaN(lng) ? null : new LatAndLong(lat, lng);
+        }
     }
 }
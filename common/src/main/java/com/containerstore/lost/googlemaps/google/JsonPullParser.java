@@ -0,0 +1,354 @@
+package com.containerstore.lost.googlemaps.google;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A minimal pull parser for UTF-8 JSON, used to read Maps API responses straight from the response stream.
+ *
+ * next() returns the next token. Field names and strings can be compared with textEquals() without creating a
+ * String, numbers are read with getDouble(), and skipValue() passes over a whole value (object, array or
+ * scalar) by scanning bytes, without decoding it. Only the parts of a response that are needed are looked at.
+ *
+ * The parser is lenient about things the Maps API never sends (it does not check that commas and colons are
+ * where they belong) but fails with an IOException on malformed structure or a truncated stream.
+ */
+final class JsonPullParser {
+    enum Token {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        FIELD_NAME,
+        STRING,
+        NUMBER,
+        TRUE,
+        FALSE,
+        NULL,
+        END
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    private char[] text = new char[64];
+    private int textLength;
+    private double number;
+
+    /** Whether the innermost open container is an object, for each depth. */
+    private boolean[] objects = new boolean[16];
+    private int depth;
+    private boolean expectName;
+
+    JsonPullParser(InputStream in) {
+        this(in, 8192);
+    }
+
+    JsonPullParser(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    Token next() throws IOException {
+        int c = nextSignificant();
+        while (c == ',' || c == ':') {
+            c = nextSignificant();
+        }
+
+        switch (c) {
+            case -1:
+                if (depth != 0) {
+                    throw new IOException("Unexpected end of JSON");
+                }
+                return Token.END;
+            case '{':
+                push(true);
+                return Token.START_OBJECT;
+            case '}':
+                pop(true);
+                return Token.END_OBJECT;
+            case '[':
+                push(false);
+                return Token.START_ARRAY;
+            case ']':
+                pop(false);
+                return Token.END_ARRAY;
+            case '"':
+                readString();
+                if (expectName) {
+                    expectName = false;
+                    return Token.FIELD_NAME;
+                }
+                valueRead();
+                return Token.STRING;
+            case 't':
+                expectLiteral("rue");
+                valueRead();
+                return Token.TRUE;
+            case 'f':
+                expectLiteral("alse");
+                valueRead();
+                return Token.FALSE;
+            case 'n':
+                expectLiteral("ull");
+                valueRead();
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    valueRead();
+                    return Token.NUMBER;
+                }
+                throw new IOException("Unexpected character '" + (char) c + "' in JSON");
+        }
+    }
+
+    /**
+     * Returns the text of the current field name or string.
+     */
+    String getText() {
+        return new String(text, 0, textLength);
+    }
+
+    /**
+     * Compares the current field name or string with the given value without creating a String.
+     */
+    boolean textEquals(String value) {
+        if (value.length() != textLength) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    double getDouble() {
+        return number;
+    }
+
+    /**
+     * Skips the value that starts with the given token (the token just returned by next()). For a START_OBJECT
+     * or START_ARRAY this skips to the matching end; for a scalar it does nothing.
+     */
+    void skipValue(Token token) throws IOException {
+        if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+            return;
+        }
+
+        int nesting = 1;
+        boolean inString = false;
+        while (nesting > 0) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unexpected end of JSON");
+            }
+            if (inString) {
+                if (c == '\\') {
+                    read();
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                nesting++;
+            } else if (c == '}' || c == ']') {
+                nesting--;
+            }
+        }
+
+        depth--;
+        valueRead();
+    }
+
+    /**
+     * Reads the next token and skips it if it starts an object or array.
+     */
+    void skipNextValue() throws IOException {
+        skipValue(next());
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy(objects, 0, grown, 0, depth);
+            objects = grown;
+        }
+        objects[depth++] = object;
+        expectName = object;
+    }
+
+    private void pop(boolean object) throws IOException {
+        if (depth == 0 || objects[depth - 1] != object) {
+            throw new IOException("Mismatched " + (object ? "'}'" : "']'") + " in JSON");
+        }
+        depth--;
+        valueRead();
+    }
+
+    private void valueRead() {
+        expectName = depth > 0 && objects[depth - 1];
+    }
+
+    private void readString() throws IOException {
+        textLength = 0;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated string in JSON");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b':
+                        append('\b');
+                        break;
+                    case 'f':
+                        append('\f');
+                        break;
+                    case 'n':
+                        append('\n');
+                        break;
+                    case 'r':
+                        append('\r');
+                        break;
+                    case 't':
+                        append('\t');
+                        break;
+                    case 'u':
+                        append((char) ((hex(read()) << 12) | (hex(read()) << 8) | (hex(read()) << 4) | hex(read())));
+                        break;
+                    case -1:
+                        throw new IOException("Unterminated string in JSON");
+                    default:
+                        append((char) c);
+                        break;
+                }
+            } else if (c < 0x80) {
+                append((char) c);
+            } else if (c < 0xE0) {
+                append((char) (((c & 0x1F) << 6) | (read() & 0x3F)));
+            } else if (c < 0xF0) {
+                append((char) (((c & 0x0F) << 12) | ((read() & 0x3F) << 6) | (read() & 0x3F)));
+            } else {
+                int codePoint = ((c & 0x07) << 18) | ((read() & 0x3F) << 12) | ((read() & 0x3F) << 6)
+                        | (read() & 0x3F);
+                append(Character.highSurrogate(codePoint));
+                append(Character.lowSurrogate(codePoint));
+            }
+        }
+    }
+
+    private void readNumber(int first) throws IOException {
+        // Integers and plain decimals whose digits form a mantissa below 2^53 are converted exactly, as one
+        // correctly rounded division of two exact doubles; anything else goes through Double.parseDouble.
+        textLength = 0;
+        append((char) first);
+        boolean simple = true;
+        boolean negative = first == '-';
+        long mantissa = negative ? 0 : first - '0';
+        int digits = negative ? 0 : 1;
+        int fractionDigits = 0;
+        boolean fraction = false;
+
+        while (true) {
+            int c = peek();
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == 'e' || c == 'E' || c == '+' || c == '-' || c == '.') {
+                simple = false;
+            } else {
+                break;
+            }
+            append((char) c);
+            position++;
+        }
+
+        if (simple && digits > 0 && digits <= 18 && mantissa < 1L << 53) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            number = negative ? -value : value;
+        } else {
+            try {
+                number = Double.parseDouble(new String(text, 0, textLength));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number in JSON: " + new String(text, 0, textLength));
+            }
+        }
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw new IOException("Invalid literal in JSON");
+            }
+        }
+    }
+
+    private void append(char c) {
+        if (textLength == text.length) {
+            char[] grown = new char[text.length * 2];
+            System.arraycopy(text, 0, grown, 0, textLength);
+            text = grown;
+        }
+        text[textLength++] = c;
+    }
+
+    private static int hex(int c) throws IOException {
+        int value = Character.digit(c, 16);
+        if (value < 0) {
+            throw new IOException("Invalid unicode escape in JSON");
+        }
+        return value;
+    }
+
+    private int nextSignificant() throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = read();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
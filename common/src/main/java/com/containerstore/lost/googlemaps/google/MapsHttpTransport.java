@@ -0,0 +1,181 @@
+package com.containerstore.lost.googlemaps.google;
+
+import com.containerstore.lost.googlemaps.CachingMapDistanceMatrix;
+import com.containerstore.lost.googlemaps.MapQuery;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.log4j.Logger;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP transport used by the Google Maps clients: a pool of keep-alive connections with a limit per host,
+ * gzip compressed responses, and connect and read timeouts.
+ *
+ * A plain RestTemplate opens a new connection, and a new TLS session, for most calls. Sharing one transport
+ * between GoogleGeocoding and GoogleDistanceMatrix lets both reuse the same warm connections. Pooled connections
+ * that have been idle longer than the idle timeout are closed.
+ *
+ * Every Google Maps call goes to the same host, so the per-route limit bounds how many calls are in flight at
+ * once; a call beyond it waits up to the pool timeout for a connection and then fails. The default covers the
+ * threads that call Google by default: the MapQuery async pool, the CachingMapDistanceMatrix sub-request pool
+ * and the GoogleDistanceMatrix tile pool. Callers with more threads of their own, such as the load test, should
+ * raise it with withMaxPerRoute (and withMaxTotal).
+ */
+public class MapsHttpTransport {
+    private static final Logger LOG = Logger.getLogger(MapsHttpTransport.class);
+
+    public static final int DEFAULT_MAX_TOTAL = 32;
+    public static final int DEFAULT_MAX_PER_ROUTE = MapQuery.DEFAULT_ASYNC_THREADS
+            + CachingMapDistanceMatrix.DEFAULT_THREADS + GoogleDistanceMatrix.DEFAULT_PARALLELISM;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+    public static final int DEFAULT_POOL_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+
+    private MapsHttpTransport(MapsHttpTransportBuilder builder) {
+        connectionManager = new PoolingHttpClientConnectionManager(builder.idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(builder.maxTotal);
+        connectionManager.setDefaultMaxPerRoute(builder.maxPerRoute);
+        // A connection the server may have closed while it sat in the pool is checked before it is reused.
+        connectionManager.setValidateAfterInactivity(1000);
+
+        HttpClientBuilder clientBuilder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(builder.connectTimeoutMillis)
+                        .setSocketTimeout(builder.readTimeoutMillis)
+                        .setConnectionRequestTimeout(builder.poolTimeoutMillis)
+                        .build())
+                .evictIdleConnections(builder.idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (!builder.compression) {
+            clientBuilder.disableContentCompression();
+        }
+        httpClient = clientBuilder.build();
+        restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    public static MapsHttpTransportBuilder transport() {
+        return new MapsHttpTransportBuilder();
+    }
+
+    /**
+     * A transport with the default settings, shared by the clients created without one.
+     */
+    public static MapsHttpTransport getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    /**
+     * The number of connections open in the pool, in use or idle.
+     */
+    public int getOpenConnections() {
+        return connectionManager.getTotalStats().getLeased() + connectionManager.getTotalStats().getAvailable();
+    }
+
+    /**
+     * Closes every pooled connection. The transport cannot be used afterwards.
+     */
+    public void shutdown() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOG.warn("Exception closing Google Maps connections: " + e);
+        }
+    }
+
+    private static final class DefaultHolder {
+        private static final MapsHttpTransport INSTANCE = transport().build();
+    }
+
+    public static class MapsHttpTransportBuilder {
+        private int maxTotal = DEFAULT_MAX_TOTAL;
+        private int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+        private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+        private int poolTimeoutMillis = DEFAULT_POOL_TIMEOUT_MILLIS;
+        private int idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+        private boolean compression = true;
+
+        MapsHttpTransportBuilder() {
+        }
+
+        /**
+         * The most connections open at once, to all hosts.
+         */
+        public MapsHttpTransportBuilder withMaxTotal(int maxTotal) {
+            this.maxTotal = positive(maxTotal, "Maximum connections");
+            return this;
+        }
+
+        /**
+         * The most connections open at once to one host. Calls beyond this wait for a connection to be returned,
+         * for up to the pool timeout, so it should be at least the number of threads that call Google at once.
+         */
+        public MapsHttpTransportBuilder withMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = positive(maxPerRoute, "Maximum connections per route");
+            return this;
+        }
+
+        public MapsHttpTransportBuilder withConnectTimeout(int millis) {
+            this.connectTimeoutMillis = positive(millis, "Connect timeout");
+            return this;
+        }
+
+        public MapsHttpTransportBuilder withReadTimeout(int millis) {
+            this.readTimeoutMillis = positive(millis, "Read timeout");
+            return this;
+        }
+
+        /**
+         * How long a call waits for a pooled connection when every connection to its host is in use.
+         */
+        public MapsHttpTransportBuilder withPoolTimeout(int millis) {
+            this.poolTimeoutMillis = positive(millis, "Pool timeout");
+            return this;
+        }
+
+        /**
+         * How long a connection may sit idle in the pool before it is closed.
+         */
+        public MapsHttpTransportBuilder withIdleTimeout(int millis) {
+            this.idleTimeoutMillis = positive(millis, "Idle timeout");
+            return this;
+        }
+
+        /**
+         * Whether to send Accept-Encoding: gzip and decompress the responses. On by default.
+         */
+        public MapsHttpTransportBuilder withCompression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public MapsHttpTransport build() {
+            if (maxPerRoute > maxTotal) {
+                throw new IllegalArgumentException("Maximum connections per route is more than the maximum total");
+            }
+            return new MapsHttpTransport(this);
+        }
+
+        private static int positive(int value, String name) {
+            if (value < 1) {
+                throw new IllegalArgumentException(name + " must be positive");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.containerstore.lost.dirty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the bytes allocated by the current thread per call of an operation, using the HotSpot
+ * com.sun.management.ThreadMXBean extension. Used to hold hot paths to a declared allocation budget.
+ */
+final class AllocationMeter {
+    private static final int WARMUP_ITERATIONS = 50000;
+    private static final int MEASURED_ITERATIONS = 200000;
+
+    private AllocationMeter() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns true if per-thread allocation counting is available and enabled in this JVM.
+     */
+    static boolean isSupported() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        return hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Runs the operation enough times for it to be compiled, then returns the average number of bytes
+     * allocated by each further call.
+     */
+    static double bytesPerOperation(Runnable operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // The allocation counter call itself may allocate, so measure it and subtract it.
+        long start = threads.getThreadAllocatedBytes(threadId);
+        long overhead = threads.getThreadAllocatedBytes(threadId) - start;
+
+        start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - start - overhead;
+
+        return Math.max(0, allocated) / (double) MEASURED_ITERATIONS;
+    }
+
+    /**
+     * Fails if the operation allocates more than the budgeted number of bytes per call. Averages below one byte
+     * over budget are tolerated, as they come from compilation and sampling noise rather than from the operation.
+     */
+    static void assertWithinBudget(String name, long budgetBytes, Runnable operation) {
+        double bytes = bytesPerOperation(operation);
+        assertTrue(name + " allocated " + bytes + " bytes per operation; budget is " + budgetBytes,
+                bytes < budgetBytes + 1);
+    }
+}
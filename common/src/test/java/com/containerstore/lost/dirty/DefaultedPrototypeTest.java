@@ -0,0 +1,52 @@
+package com.containerstore.lost.dirty;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class DefaultedPrototypeTest {
+
+    @Test
+    public void testImmutableValuesAreSharedAndContainersAreFresh() {
+        CountingObjectDefaults defaults = new CountingObjectDefaults();
+        DefaultedPrototype<Numbers> prototype = DefaultedPrototype.compile(Numbers.class, defaults);
+        defaults.resolved.clear();
+
+        Numbers first = prototype.newInstance(defaults);
+        Numbers second = prototype.newInstance(defaults);
+
+        assertThat(first.theDouble, is(0d));
+        assertThat(first.theFloat, is(0f));
+        assertThat(first.thedouble, is(0d));
+        assertThat(second.theString, is(""));
+        // Only the list is resolved again for each instance.
+        assertThat(defaults.resolved.count(Double.class), is(0));
+        assertThat(defaults.resolved.count(Float.class), is(0));
+        assertThat(defaults.resolved.count(double.class), is(0));
+        assertThat(defaults.resolved.count(List.class), is(2));
+        assertThat(first.theList, not(sameInstance(second.theList)));
+    }
+
+    private static class CountingObjectDefaults extends ObjectDefaults {
+        private final Multiset<Class> resolved = HashMultiset.create();
+
+        @Override
+        public <T> T getDefaultValue(Class<T> clazz) {
+            resolved.add(clazz);
+            return super.getDefaultValue(clazz);
+        }
+    }
+
+    private static class Numbers {
+        private Double theDouble;
+        private Float theFloat;
+        private double thedouble;
+        private String theString;
+        private List<String> theList;
+    }
+}
@@ -0,0 +1,157 @@
+package com.containerstore.lost.dirty;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assume.*;
+
+/**
+ * Holds the hot paths of the dirty package to an allocation budget, in bytes per call, so that allocations
+ * removed from them are not reintroduced.
+ */
+public class DirtyAllocationTest {
+    private static final long NO_ALLOCATION = 0;
+    private static final long REFLECTIVE_CALL = 32;
+
+    private AllocationTester tester;
+    private ObjectDefaults objectDefaults;
+
+    @Before
+    public void setUp() {
+        assumeTrue(AllocationMeter.isSupported());
+
+        tester = new AllocationTester();
+        tester.dirtyObject.markAllFields();
+        objectDefaults = new ObjectDefaults();
+    }
+
+    @Test
+    public void testGetValue() {
+        AllocationMeter.assertWithinBudget("getValue", NO_ALLOCATION, new Runnable() {
+            @Override
+            public void run() {
+                tester.getTheString();
+            }
+        });
+    }
+
+    @Test
+    public void testGetValueInNullMode() {
+        tester.dirtyObject.setNullMode(true);
+
+        AllocationMeter.assertWithinBudget("getValue (null mode)", NO_ALLOCATION, new Runnable() {
+            @Override
+            public void run() {
+                tester.getTheString();
+                tester.getTheInteger();
+            }
+        });
+    }
+
+    @Test
+    public void testSetValue() {
+        final String value = "value";
+
+        AllocationMeter.assertWithinBudget("setValue", NO_ALLOCATION, new Runnable() {
+            @Override
+            public void run() {
+                tester.setTheString(value);
+            }
+        });
+    }
+
+    @Test
+    public void testIsDirty() {
+        AllocationMeter.assertWithinBudget("isDirty", NO_ALLOCATION, new Runnable() {
+            @Override
+            public void run() {
+                tester.dirtyObject.isDirty("theString");
+            }
+        });
+    }
+
+    @Test
+    public void testMarkAllFields() {
+        AllocationMeter.assertWithinBudget("markAllFields", NO_ALLOCATION, new Runnable() {
+            @Override
+            public void run() {
+                tester.dirtyObject.markAllFields();
+            }
+        });
+    }
+
+    @Test
+    public void testGetDefaultValuePrimitive() {
+        AllocationMeter.assertWithinBudget("getDefaultValue(int)", NO_ALLOCATION, new Runnable() {
+            @Override
+            public void run() {
+                objectDefaults.getDefaultValue(int.class);
+            }
+        });
+    }
+
+    @Test
+    public void testGetDefaultValueWrapper() {
+        AllocationMeter.assertWithinBudget("getDefaultValue(Integer)", REFLECTIVE_CALL, new Runnable() {
+            @Override
+            public void run() {
+                objectDefaults.getDefaultValue(Integer.class);
+            }
+        });
+    }
+
+    @Test
+    public void testGetDefaultValueString() {
+        AllocationMeter.assertWithinBudget("getDefaultValue(String)", REFLECTIVE_CALL, new Runnable() {
+            @Override
+            public void run() {
+                objectDefaults.getDefaultValue(String.class);
+            }
+        });
+    }
+
+    @Test
+    public void testGetDefaultValueEnum() {
+        AllocationMeter.assertWithinBudget("getDefaultValue(enum)", REFLECTIVE_CALL, new Runnable() {
+            @Override
+            public void run() {
+                objectDefaults.getDefaultValue(Choice.class);
+            }
+        });
+    }
+
+    private static enum Choice {
+        First,
+        Second;
+
+        @Defaulted
+        public static Choice getDefault() {
+            return Second;
+        }
+    }
+
+    private static class AllocationTester {
+        private DirtyObject dirtyObject = new DirtyObject(this, AllocationTester.class);
+
+        private String theString = "value";
+        private Integer theInteger = 10;
+        private Choice theChoice;
+        private List<String> theList;
+        private Map<String, String> theMap;
+
+        public String getTheString() {
+            return dirtyObject.getValue("theString", theString);
+        }
+
+        public void setTheString(String theString) {
+            dirtyObject.setValue("theString", theString);
+        }
+
+        public Integer getTheInteger() {
+            return dirtyObject.getValue("theInteger", theInteger);
+        }
+    }
+}
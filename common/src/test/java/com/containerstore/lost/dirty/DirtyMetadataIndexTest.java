@@ -0,0 +1,157 @@
+package com.containerstore.lost.dirty;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class DirtyMetadataIndexTest {
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DirtyMetadataIndex.write(Lists.<Class>newArrayList(IndexedChild.class, IndexedParent.class,
+                DefaultedValue.class), out);
+
+        List<DirtyMetadataIndex.Entry> entries = DirtyMetadataIndex.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(entries.size(), is(3));
+
+        DirtyMetadataIndex.Entry child = entries.get(0);
+        assertThat(child.getClassName(), is(IndexedChild.class.getName()));
+        assertThat(Sets.newHashSet(child.getTrackedFields()), is((Set<String>) Sets.newHashSet("childString",
+                "childInteger")));
+        assertThat(Sets.newHashSet(child.getIgnoredFields()), is((Set<String>) Sets.newHashSet("dirtyObject",
+                "childPublic", "childPrimitive")));
+        assertThat(child.getDirtyObjectField(), is("dirtyObject"));
+        assertThat(child.getDefaultedMethod(), is((String) null));
+
+        DirtyMetadataIndex.Entry parent = entries.get(1);
+        assertThat(parent.getTrackedFields(), is((List<String>) Lists.newArrayList("parentString")));
+
+        DirtyMetadataIndex.Entry defaulted = entries.get(2);
+        assertThat(defaulted.getDirtyObjectField(), is((String) null));
+        assertThat(defaulted.getDefaultedMethod(), is("defaulted"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidIndex() throws IOException {
+        DirtyMetadataIndex.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test
+    public void testPreload() {
+        List<DirtyMetadataIndex.Entry> entries = Lists.newArrayList(
+                new DirtyMetadataIndex.Entry(PreloadedBean.class.getName(),
+                        Lists.newArrayList("preloadedString"), Lists.newArrayList("dirtyObject"),
+                        "dirtyObject", null),
+                new DirtyMetadataIndex.Entry("com.containerstore.lost.dirty.DoesNotExist",
+                        Collections.<String>emptyList(), Collections.<String>emptyList(), null, null));
+
+        int loaded = DirtyMetadataIndex.preload(entries, getClass().getClassLoader());
+
+        assertThat(loaded, is(1));
+
+        PreloadedBean bean = new PreloadedBean();
+        bean.dirtyObject.setValue("preloadedString", "value");
+        assertThat(bean.dirtyObject.isDirty("preloadedString"), is(true));
+
+        DirtyObjects.activateObject(bean);
+        assertThat(bean.dirtyObject.getNullMode(), is(true));
+    }
+
+    @Test
+    public void testPreloadStaleEntry() {
+        // The index no longer matches the class, so the metadata is computed from the class itself.
+        List<DirtyMetadataIndex.Entry> entries = Lists.newArrayList(
+                new DirtyMetadataIndex.Entry(StaleBean.class.getName(),
+                        Lists.newArrayList("removedField"), Lists.newArrayList("dirtyObject"),
+                        "dirtyObject", null));
+
+        DirtyMetadataIndex.preload(entries, getClass().getClassLoader());
+
+        StaleBean bean = new StaleBean();
+        bean.dirtyObject.setValue("currentField", "value");
+        assertThat(bean.dirtyObject.isDirty("currentField"), is(true));
+    }
+
+    @Test
+    public void testPreloadEntryMissingMembers() {
+        // The index names no DirtyObject field and no @Defaulted factory, but the class now has both.
+        List<DirtyMetadataIndex.Entry> entries = Lists.newArrayList(
+                new DirtyMetadataIndex.Entry(GrownBean.class.getName(),
+                        Lists.newArrayList("grownString"), Lists.newArrayList("dirtyObject"), null, null));
+
+        DirtyMetadataIndex.preload(entries, getClass().getClassLoader());
+
+        DirtyClassMetadata metadata = DirtyClassMetadata.forClass(GrownBean.class);
+        assertThat(metadata.getDirtyObjectField().getName(), is("dirtyObject"));
+        assertThat(metadata.getDefaultedMethod().getName(), is("defaulted"));
+    }
+
+    @Test
+    public void testFindIndexedClasses() throws Exception {
+        File classesDirectory = new File(getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
+
+        Set<Class> classes = DirtyMetadataIndexer.findIndexedClasses(classesDirectory, getClass().getClassLoader());
+
+        assertThat(classes.contains(IndexedChild.class), is(true));
+        assertThat(classes.contains(IndexedParent.class), is(true));
+        assertThat(classes.contains(DefaultedValue.class), is(true));
+        assertThat(classes.contains(DirtyMetadataIndexTest.class), is(false));
+        assertThat(classes.contains(Enum.class), is(false));
+    }
+
+    private static class IndexedParent {
+        private String parentString;
+    }
+
+    private static class IndexedChild extends IndexedParent {
+        private DirtyObject dirtyObject = new DirtyObject(this, IndexedChild.class);
+
+        public String childPublic;
+        private int childPrimitive;
+        private String childString;
+        private Integer childInteger;
+    }
+
+    private static class DefaultedValue {
+        @Defaulted
+        public static DefaultedValue defaulted() {
+            return new DefaultedValue();
+        }
+    }
+
+    private static class PreloadedBean {
+        private DirtyObject dirtyObject = new DirtyObject(this, PreloadedBean.class);
+
+        private String preloadedString;
+    }
+
+    private static class StaleBean {
+        private DirtyObject dirtyObject = new DirtyObject(this, StaleBean.class);
+
+        private String currentField;
+    }
+
+    private static class GrownBean {
+        private DirtyObject dirtyObject = new DirtyObject(this, GrownBean.class);
+
+        private String grownString;
+
+        @Defaulted
+        public static GrownBean defaulted() {
+            return new GrownBean();
+        }
+    }
+}
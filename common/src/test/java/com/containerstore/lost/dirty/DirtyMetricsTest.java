@@ -0,0 +1,96 @@
+package com.containerstore.lost.dirty;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class DirtyMetricsTest {
+    private final DirtyMetrics metrics = DirtyMetrics.getInstance();
+
+    @Before
+    public void setUp() {
+        metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        metrics.setEnabled(false);
+        metrics.reset();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertThat(metrics.isEnabled(), is(false));
+
+        MetricsTester tester = new MetricsTester();
+        tester.dirtyObject.setValue("theString", "value");
+        tester.dirtyObject.assignDefaults();
+        DirtyObjects.activateObject(tester);
+
+        assertThat(metrics.getFieldLookups(), is(0L));
+        assertThat(metrics.getMethodLookups(), is(0L));
+        assertThat(metrics.getDirtyObjectLookups(), is(0L));
+        assertThat(metrics.getNullModeToggles(), is(0L));
+        assertThat(metrics.getDefaultResolutions().isEmpty(), is(true));
+        assertThat(metrics.getAssignDefaultsCounts().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testEnabled() {
+        metrics.setEnabled(true);
+
+        MetricsTester tester = new MetricsTester();
+        tester.dirtyObject.setValue("theString", "value");
+        tester.dirtyObject.assignDefaults();
+        DirtyObjects.activateObject(tester);
+        new MetricsDefaults().getDefaultValue(Long.class);
+        new MetricsDefaults().getDefaultValue(Long.class);
+
+        assertThat(metrics.getFieldLookups(), greaterThan(0L));
+        assertThat(metrics.getMethodLookups(), greaterThanOrEqualTo(1L));
+        assertThat(metrics.getDirtyObjectLookups(), is(1L));
+        assertThat(metrics.getNullModeToggles(), is(1L));
+        assertThat(metrics.getDefaultResolutions().get(Integer.class.getName()), is(1L));
+        assertThat(metrics.getDefaultResolutions().get(Long.class.getName()), is(2L));
+        assertThat(metrics.getAssignDefaultsCounts().get(MetricsTester.class.getName()), is(1L));
+        assertThat(metrics.getAssignDefaultsNanos().get(MetricsTester.class.getName()), greaterThan(0L));
+
+        metrics.reset();
+        assertThat(metrics.getFieldLookups(), is(0L));
+        assertThat(metrics.getAssignDefaultsCounts().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        DirtyMetrics.register();
+        DirtyMetrics.register();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(DirtyMetrics.OBJECT_NAME);
+
+        assertThat((Boolean) server.getAttribute(name, "Enabled"), is(false));
+
+        metrics.setEnabled(true);
+        new MetricsTester().dirtyObject.setNullMode(true);
+
+        assertThat((Boolean) server.getAttribute(name, "Enabled"), is(true));
+        assertThat((Long) server.getAttribute(name, "NullModeToggles"), is(1L));
+    }
+
+    private static class MetricsDefaults extends ObjectDefaults {
+    }
+
+    private static class MetricsTester {
+        private DirtyObject dirtyObject = new DirtyObject(this, MetricsTester.class);
+
+        private String theString;
+        private Integer theInteger;
+    }
+}
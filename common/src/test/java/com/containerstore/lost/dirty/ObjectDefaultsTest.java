@@ -59,6 +59,63 @@ public class ObjectDefaultsTest {
         assertThat(newObjectDefaults.getDefaultValue(String.class), is("New Default"));
     }
 
+    @Test
+    public void testNewDefaultedInstance() {
+        ObjectDefaults objectDefaults = new ObjectDefaults();
+
+        DefaultedBean first = objectDefaults.newDefaultedInstance(DefaultedBean.class);
+        DefaultedBean second = objectDefaults.newDefaultedInstance(DefaultedBean.class);
+
+        assertThat(first.theint, is(0));
+        assertThat(first.theInt, is(0));
+        assertThat(first.theString, is(""));
+        assertThat(first.theMoney, is(Money.ZERO));
+        assertThat(first.theEnum, is(HasDefault.Third));
+        assertThat(first.theList.size(), is(0));
+        assertThat(first.theMap.size(), is(0));
+        assertThat(first.theBuilder, is((StringBuilder) null));
+        assertThat(first.theFinal, is("constructed"));
+
+        assertThat(first, not(sameInstance(second)));
+        assertThat(first.theList, not(sameInstance(second.theList)));
+        assertThat(first.theMap, not(sameInstance(second.theMap)));
+    }
+
+    @Test
+    public void testNewDefaultedInstanceWithExtension() {
+        DefaultedBean bean = new NewObjectDefaults().newDefaultedInstance(DefaultedBean.class);
+        DefaultedBean other = new NewObjectDefaults().newDefaultedInstance(DefaultedBean.class);
+
+        assertThat(bean.theString, is("New Default"));
+        assertThat(bean.theBuilder, not(is((StringBuilder) null)));
+        assertThat(bean.theBuilder, not(sameInstance(other.theBuilder)));
+
+        assertThat(new ObjectDefaults().newDefaultedInstance(DefaultedBean.class).theString, is(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNewDefaultedInstanceWithoutConstructor() {
+        new ObjectDefaults().newDefaultedInstance(Money.class);
+    }
+
+    private static class DefaultedBean {
+        private static String theStatic;
+
+        private final String theFinal;
+        private int theint;
+        private Integer theInt;
+        private String theString;
+        private Money theMoney;
+        private HasDefault theEnum;
+        private List<String> theList;
+        private Map<String, String> theMap;
+        private StringBuilder theBuilder;
+
+        private DefaultedBean() {
+            theFinal = "constructed";
+        }
+    }
+
     private static enum NoDefault {
         First,
         Second,
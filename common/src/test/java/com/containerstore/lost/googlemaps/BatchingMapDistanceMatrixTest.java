@@ -0,0 +1,149 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class BatchingMapDistanceMatrixTest {
+    private static final List<String> STORES = Arrays.asList("store 1", "store 2");
+
+    @Test
+    public void testCoalescesRequestsWithinWindow() throws Exception {
+        RecordingMatrix delegate = new RecordingMatrix();
+        BatchingMapDistanceMatrix matrix =
+                new BatchingMapDistanceMatrix(delegate, 50, TimeUnit.MILLISECONDS, 100, 1);
+
+        ListenableFuture<MapDistanceResult> first = matrix.queryAsync(request("a"));
+        ListenableFuture<MapDistanceResult> second = matrix.queryAsync(request("b"));
+        ListenableFuture<MapDistanceResult> third = matrix.queryAsync(request("c"));
+
+        assertThat(second.get().getDistance("b", "store 2"), is(distance("b", "store 2")));
+        assertThat(first.get().getDistance("a", "store 1"), is(distance("a", "store 1")));
+        assertThat(third.get().getDistancesFromOrigin("c").size(), is(2));
+        assertThat(first.get().getDistancesFromOrigin("b"), is(nullValue()));
+
+        assertThat(delegate.requests.size(), is(1));
+        assertThat(delegate.requests.get(0).getOrigins().size(), is(3));
+        assertThat(matrix.getRequestCount(), is(3L));
+        assertThat(matrix.getBatchCount(), is(1L));
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testSendsBatchWhenElementBudgetReached() throws Exception {
+        RecordingMatrix delegate = new RecordingMatrix();
+        BatchingMapDistanceMatrix matrix = new BatchingMapDistanceMatrix(delegate, 1, TimeUnit.HOURS, 4, 1);
+
+        ListenableFuture<MapDistanceResult> first = matrix.queryAsync(request("a"));
+        ListenableFuture<MapDistanceResult> second = matrix.queryAsync(request("b"));
+        assertThat(first.get(1, TimeUnit.SECONDS).getDistance("a", "store 1"), is(distance("a", "store 1")));
+        assertThat(second.get(1, TimeUnit.SECONDS).getDistance("b", "store 2"), is(distance("b", "store 2")));
+
+        ListenableFuture<MapDistanceResult> third = matrix.queryAsync(request("c"));
+        assertThat(third.isDone(), is(false));
+        matrix.shutdown();
+
+        assertThat(third.get().getDistance("c", "store 1"), is(distance("c", "store 1")));
+        assertThat(delegate.requests.size(), is(2));
+    }
+
+    @Test
+    public void testSendsRequestsThatWouldWidenTheBatchOnTheirOwn() throws Exception {
+        RecordingMatrix delegate = new RecordingMatrix();
+        BatchingMapDistanceMatrix matrix = new BatchingMapDistanceMatrix(delegate, 1, TimeUnit.HOURS, 100, 1);
+
+        // Combined with the first request, the second would cost 4 elements where the two ask for only 2.
+        ListenableFuture<MapDistanceResult> first = matrix.queryAsync(request("a"));
+        ListenableFuture<MapDistanceResult> second = matrix.queryAsync(new GoogleDistanceRequest()
+                .withOrigins(Arrays.asList("b", "c"))
+                .withDestinations(Arrays.asList("store 3")));
+        assertThat(second.get(1, TimeUnit.SECONDS).getDistance("c", "store 3"), is(distance("c", "store 3")));
+        assertThat(first.isDone(), is(false));
+
+        ListenableFuture<MapDistanceResult> third = matrix.queryAsync(request("d"));
+        matrix.shutdown();
+
+        assertThat(first.get().getDistance("a", "store 2"), is(distance("a", "store 2")));
+        assertThat(third.get().getDistance("d", "store 1"), is(distance("d", "store 1")));
+        assertThat(delegate.requests.size(), is(2));
+        assertThat(delegate.requests.get(1).getOrigins().size(), is(2));
+    }
+
+    @Test
+    public void testBatchesAreNotSentOnTheCallingThread() throws Exception {
+        final List<Thread> threads = Lists.newCopyOnWriteArrayList();
+        BatchingMapDistanceMatrix matrix = new BatchingMapDistanceMatrix(new RecordingMatrix() {
+            @Override
+            public MapDistanceResult query(MapDistanceRequest request) {
+                threads.add(Thread.currentThread());
+                return super.query(request);
+            }
+        }, 1, TimeUnit.HOURS, 2, 1);
+
+        matrix.query(request("a"));
+
+        assertThat(threads.size(), is(1));
+        assertThat(threads.get(0), is(not(Thread.currentThread())));
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testDelegateExceptionFailsEveryCaller() throws Exception {
+        BatchingMapDistanceMatrix matrix = new BatchingMapDistanceMatrix(new MapDistanceMatrix() {
+            @Override
+            public MapDistanceResult query(MapDistanceRequest request) {
+                throw new IllegalStateException("quota");
+            }
+        }, 1, TimeUnit.HOURS, 4, 1);
+
+        ListenableFuture<MapDistanceResult> first = matrix.queryAsync(request("a"));
+        try {
+            matrix.query(request("b"));
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("quota"));
+        }
+
+        try {
+            first.get();
+            fail("Expected exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("quota"));
+        }
+        matrix.shutdown();
+    }
+
+    private static MapDistanceRequest request(String origin) {
+        return new GoogleDistanceRequest().withOrigin(origin).withDestinations(STORES);
+    }
+
+    private static double distance(String origin, String destination) {
+        return origin.charAt(0) * 100 + destination.charAt(destination.length() - 1);
+    }
+
+    private static class RecordingMatrix implements MapDistanceMatrix {
+        private final List<MapDistanceRequest> requests = Lists.newCopyOnWriteArrayList();
+
+        @Override
+        public MapDistanceResult query(MapDistanceRequest request) {
+            requests.add(request);
+            MatrixDistanceResult.MatrixDistanceResultBuilder builder =
+                    MatrixDistanceResult.result(request.getOrigins(), request.getDestinations());
+            for (String origin : request.getOrigins()) {
+                for (String destination : request.getDestinations()) {
+                    builder.withElement(origin, destination, distance(origin, destination), 0);
+                }
+            }
+            return builder.build();
+        }
+    }
+}
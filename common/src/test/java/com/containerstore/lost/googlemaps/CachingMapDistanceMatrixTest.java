@@ -0,0 +1,207 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class CachingMapDistanceMatrixTest {
+    @Test
+    public void testFullHitMakesNoRequest() {
+        RecordingMatrix delegate = new RecordingMatrix();
+        CachingMapDistanceMatrix matrix = new CachingMapDistanceMatrix(delegate);
+
+        MapDistanceResult first = matrix.query(request(Arrays.asList("a", "b"), Arrays.asList("x", "y")));
+        MapDistanceResult second = matrix.query(request(Arrays.asList("A ", "b"), Arrays.asList("y", "x")));
+
+        assertThat(delegate.requests.size(), is(1));
+        assertThat(first.getDistance("b", "y"), is(distance("b", "y")));
+        assertThat(second.getDistance("A ", "x"), is(distance("a", "x")));
+        assertThat(second.getDuration("b", "x"), is(duration("b", "x")));
+        assertThat(matrix.getHitCount(), is(4L));
+        assertThat(matrix.getMissCount(), is(4L));
+    }
+
+    @Test
+    public void testPartialHitOnlyRequestsMissingPairs() {
+        RecordingMatrix delegate = new RecordingMatrix();
+        CachingMapDistanceMatrix matrix = new CachingMapDistanceMatrix(delegate);
+
+        matrix.query(request(Arrays.asList("a", "b"), Arrays.asList("x", "y")));
+        MapDistanceResult result = matrix.query(request(Arrays.asList("a", "b", "c"), Arrays.asList("x", "y", "z")));
+
+        // a and b are only missing z and c is missing everything: one call for all nine elements beats the two
+        // calls that cover just the five missing ones.
+        assertThat(delegate.requests.size(), is(2));
+        assertThat(delegate.elementCount(), is(4 + 9));
+        for (String origin : Arrays.asList("a", "b", "c")) {
+            for (String destination : Arrays.asList("x", "y", "z")) {
+                assertThat(result.getDistance(origin, destination), is(distance(origin, destination)));
+            }
+        }
+    }
+
+    @Test
+    public void testFailedElementsAreNotCached() {
+        RecordingMatrix delegate = new RecordingMatrix();
+        delegate.failing = "bad";
+        CachingMapDistanceMatrix matrix = new CachingMapDistanceMatrix(delegate, 100, 1, TimeUnit.HOURS);
+
+        assertThat(matrix.query(request(Arrays.asList("a"), Arrays.asList("bad", "x"))).getDistance("a", "bad"),
+                is(-1.0));
+        matrix.query(request(Arrays.asList("a"), Arrays.asList("bad", "x")));
+
+        assertThat(delegate.requests.size(), is(2));
+        assertThat(delegate.requests.get(1).getDestinations(), is((Object) Arrays.asList("bad")));
+        assertThat(matrix.size(), is(1L));
+    }
+
+    @Test
+    public void testIncompleteSubRequestMakesResultIncomplete() {
+        RecordingMatrix delegate = new RecordingMatrix();
+        delegate.incomplete = true;
+        CachingMapDistanceMatrix matrix = new CachingMapDistanceMatrix(delegate);
+
+        MatrixDistanceResult result =
+                (MatrixDistanceResult) matrix.query(request(Arrays.asList("a"), Arrays.asList("x")));
+
+        assertThat(result.isComplete(), is(false));
+        assertThat(result.getDistance("a", "x"), is(distance("a", "x")));
+    }
+
+    @Test
+    public void testScatteredMissesAreSentAsSeparateSubRequests() {
+        RecordingMatrix delegate = new RecordingMatrix();
+        CachingMapDistanceMatrix matrix = new CachingMapDistanceMatrix(delegate);
+
+        matrix.query(request(Arrays.asList("a"), Arrays.asList("y", "z")));
+        matrix.query(request(Arrays.asList("b"), Arrays.asList("x", "z")));
+        matrix.query(request(Arrays.asList("c"), Arrays.asList("x", "y")));
+        MapDistanceResult result = matrix.query(request(Arrays.asList("a", "b", "c"), Arrays.asList("x", "y", "z")));
+
+        // Covering a-x, b-y and c-z with one request would fetch the six cached pairs too, so each goes alone.
+        assertThat(delegate.requests.size(), is(3 + 3));
+        assertThat(delegate.elementCount(), is(6 + 3));
+        assertThat(((MatrixDistanceResult) result).isComplete(), is(true));
+        for (String origin : Arrays.asList("a", "b", "c")) {
+            for (String destination : Arrays.asList("x", "y", "z")) {
+                assertThat(result.getDistance(origin, destination), is(distance(origin, destination)));
+            }
+        }
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testPlanSubRequestsPrefersOneBoundingBlock() {
+        Map<String, Set<String>> missing = Maps.newLinkedHashMap();
+        missing.put("a", ImmutableSet.of("x", "y"));
+        missing.put("b", ImmutableSet.of("y", "z"));
+
+        List<CachingMapDistanceMatrix.Block> blocks = CachingMapDistanceMatrix.planSubRequests(missing, 100);
+        assertThat(blocks.size(), is(1));
+        assertThat(blocks.get(0).getOrigins(), is(Arrays.asList("a", "b")));
+        assertThat(blocks.get(0).getDestinations(), is(Arrays.asList("x", "y", "z")));
+
+        // At one element a call, the exact blocks need fewer calls than the bounding one.
+        assertThat(CachingMapDistanceMatrix.planSubRequests(missing, 1).size(), is(2));
+    }
+
+    @Test
+    public void testPlanSubRequestsGroupsIdenticalMisses() {
+        Map<String, Set<String>> missing = Maps.newLinkedHashMap();
+        missing.put("a", ImmutableSet.of("x", "y"));
+        missing.put("b", ImmutableSet.of("x", "y"));
+        missing.put("c", ImmutableSet.of("z"));
+
+        List<CachingMapDistanceMatrix.Block> blocks = CachingMapDistanceMatrix.planSubRequests(missing, 1);
+        assertThat(blocks.size(), is(2));
+        assertThat(blocks.get(0).getOrigins(), is(Arrays.asList("a", "b")));
+        assertThat(blocks.get(0).getDestinations(), is(Arrays.asList("x", "y")));
+        assertThat(blocks.get(1).getOrigins(), is(Arrays.asList("c")));
+        assertThat(blocks.get(1).getDestinations(), is(Arrays.asList("z")));
+    }
+
+    private static MapDistanceRequest request(List<String> origins, List<String> destinations) {
+        return new GoogleDistanceRequest().withOrigins(origins).withDestinations(destinations);
+    }
+
+    private static double distance(String origin, String destination) {
+        return Addresses.normalize(origin).charAt(0) * 100 + Addresses.normalize(destination).charAt(0);
+    }
+
+    private static double duration(String origin, String destination) {
+        return distance(origin, destination) * 60;
+    }
+
+    private static class RecordingMatrix implements MapDistanceMatrix {
+        private final List<MapDistanceRequest> requests = new CopyOnWriteArrayList<MapDistanceRequest>();
+        private String failing;
+        private boolean incomplete;
+
+        @Override
+        public MapDistanceResult query(MapDistanceRequest request) {
+            requests.add(request);
+            MatrixDistanceResult.MatrixDistanceResultBuilder builder =
+                    MatrixDistanceResult.result(request.getOrigins(), request.getDestinations());
+            for (String origin : request.getOrigins()) {
+                for (String destination : request.getDestinations()) {
+                    if (!destination.equals(failing)) {
+                        builder.withElement(origin, destination, distance(origin, destination),
+                                duration(origin, destination));
+                    }
+                }
+            }
+            final MatrixDistanceResult result = builder.build();
+            if (incomplete) {
+                return new MatrixDistanceResult(result.getOrigins(), result.getDestinations(),
+                        distances(result), durations(result)) {
+                    @Override
+                    public boolean isComplete() {
+                        return false;
+                    }
+                };
+            }
+            return result;
+        }
+
+        private double[] distances(MatrixDistanceResult result) {
+            double[] distances = new double[result.getOrigins().size() * result.getDestinations().size()];
+            int i = 0;
+            for (String origin : result.getOrigins()) {
+                for (String destination : result.getDestinations()) {
+                    distances[i++] = result.getDistance(origin, destination);
+                }
+            }
+            return distances;
+        }
+
+        private double[] durations(MatrixDistanceResult result) {
+            double[] durations = new double[result.getOrigins().size() * result.getDestinations().size()];
+            int i = 0;
+            for (String origin : result.getOrigins()) {
+                for (String destination : result.getDestinations()) {
+                    durations[i++] = result.getDuration(origin, destination);
+                }
+            }
+            return durations;
+        }
+
+        int elementCount() {
+            int count = 0;
+            for (MapDistanceRequest request : requests) {
+                count += request.getOrigins().size() * request.getDestinations().size();
+            }
+            return count;
+        }
+    }
+}
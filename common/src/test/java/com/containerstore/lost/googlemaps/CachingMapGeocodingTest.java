@@ -0,0 +1,107 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class CachingMapGeocodingTest {
+    private static final LatAndLong DALLAS = new LatAndLong(32.7767, -96.7970);
+
+    @Test
+    public void testCachesByNormalizedAddress() {
+        CountingGeocoding delegate = new CountingGeocoding();
+        delegate.add("500 Freeport Pkwy, Coppell TX", DALLAS);
+        CachingMapGeocoding geocoding = new CachingMapGeocoding(delegate);
+
+        assertThat(geocoding.getLocation("500 Freeport Pkwy, Coppell TX"), is(DALLAS));
+        assertThat(geocoding.getLocation("  500 freeport pkwy ,  Coppell TX "), is(DALLAS));
+
+        assertThat(delegate.calls, is(1));
+        assertThat(geocoding.getHitCount(), is(1L));
+        assertThat(geocoding.getMissCount(), is(1L));
+        assertThat(geocoding.getHitRate(), is(0.5));
+    }
+
+    @Test
+    public void testCachesNoResults() {
+        CountingGeocoding delegate = new CountingGeocoding();
+        FakeTicker ticker = new FakeTicker();
+        CachingMapGeocoding geocoding = new CachingMapGeocoding(delegate, 100, 60, 5, TimeUnit.MINUTES, ticker);
+
+        assertThat(geocoding.getLocation("nowhere"), is((LatAndLong) null));
+        assertThat(geocoding.getLocation("nowhere"), is((LatAndLong) null));
+        assertThat(delegate.calls, is(1));
+        assertThat(geocoding.getNoResultHitCount(), is(1L));
+
+        ticker.advance(6, TimeUnit.MINUTES);
+        assertThat(geocoding.getLocation("nowhere"), is((LatAndLong) null));
+        assertThat(delegate.calls, is(2));
+    }
+
+    @Test
+    public void testExpiresLocations() {
+        CountingGeocoding delegate = new CountingGeocoding();
+        delegate.add("dallas", DALLAS);
+        FakeTicker ticker = new FakeTicker();
+        CachingMapGeocoding geocoding = new CachingMapGeocoding(delegate, 100, 60, 5, TimeUnit.MINUTES, ticker);
+
+        geocoding.getLocation("dallas");
+        ticker.advance(59, TimeUnit.MINUTES);
+        geocoding.getLocation("dallas");
+        assertThat(delegate.calls, is(1));
+
+        ticker.advance(2, TimeUnit.MINUTES);
+        geocoding.getLocation("dallas");
+        assertThat(delegate.calls, is(2));
+    }
+
+    @Test
+    public void testBoundedSize() {
+        CountingGeocoding delegate = new CountingGeocoding();
+        for (int i = 0; i < 50; i++) {
+            delegate.add("address " + i, new LatAndLong(i, i));
+        }
+        CachingMapGeocoding geocoding = new CachingMapGeocoding(delegate, 10, 60, 5, TimeUnit.MINUTES);
+
+        for (int i = 0; i < 50; i++) {
+            geocoding.getLocation("address " + i);
+        }
+
+        assertThat(geocoding.size(), lessThanOrEqualTo(10L));
+        assertThat(geocoding.getEvictionCount(), greaterThanOrEqualTo(40L));
+    }
+
+    private static class CountingGeocoding implements MapGeocoding {
+        private final Map<String, LatAndLong> locations = Maps.newHashMap();
+        private int calls = 0;
+
+        void add(String address, LatAndLong location) {
+            locations.put(Addresses.normalize(address), location);
+        }
+
+        @Override
+        public LatAndLong getLocation(String address) {
+            calls++;
+            return locations.get(Addresses.normalize(address));
+        }
+    }
+
+    static class FakeTicker extends Ticker {
+        private long nanos = 0;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos += unit.toNanos(time);
+        }
+    }
+}
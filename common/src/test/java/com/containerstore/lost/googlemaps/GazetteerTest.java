@@ -0,0 +1,103 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class GazetteerTest {
+    private static final String CSV = "# name,latitude,longitude\n"
+            + "75201,32.7876,-96.7994\n"
+            + "75202,32.7781,-96.8054\n"
+            + "Dallas, TX,32.7767,-96.7970\n"
+            + "Coppell, TX,32.9546,-97.0150\n"
+            + "\n"
+            + "500 Freeport Pkwy, Coppell, TX 75019,32.9721,-97.0335\n"
+            + "S\u00e3o Paulo, SP,-23.5505,-46.6333\n"
+            + "dallas,  tx,32.7767,-96.7969\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Gazetteer gazetteer;
+
+    @Before
+    public void compile() throws IOException {
+        File csv = folder.newFile("gazetteer.csv");
+        Files.write(CSV, csv, Charsets.UTF_8);
+        File index = new File(folder.getRoot(), "gazetteer.idx");
+
+        assertThat(Gazetteer.compile(csv, index), is(6));
+        gazetteer = Gazetteer.open(index);
+    }
+
+    @Test
+    public void testExactAndNormalizedLookups() {
+        assertThat(gazetteer.size(), is(6));
+        assertThat(gazetteer.getLocation("75201"), is(new LatAndLong(32.7876, -96.7994)));
+        assertThat(gazetteer.getLocation("  COPPELL ,  TX "), is(new LatAndLong(32.9546, -97.015)));
+        assertThat(gazetteer.getLocation("s\u00e3o paulo, sp"), is(new LatAndLong(-23.5505, -46.6333)));
+        // The later line replaced the earlier one.
+        assertThat(gazetteer.getLocation("Dallas, TX"), is(new LatAndLong(32.7767, -96.7969)));
+        assertThat(gazetteer.getLocation("Plano, TX"), is(nullValue()));
+    }
+
+    @Test
+    public void testPrefixSearch() {
+        assertThat(gazetteer.getNamesWithPrefix("752", 10), is((List<String>) Arrays.asList("75201", "75202")));
+        assertThat(gazetteer.getNamesWithPrefix("752", 1), is((List<String>) Arrays.asList("75201")));
+        assertThat(gazetteer.getNamesWithPrefix("Co", 10), is((List<String>) Arrays.asList("coppell, tx")));
+        assertThat(gazetteer.getNamesWithPrefix("zz", 10).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testGeocodingFallsBackToCoarserNames() {
+        MapGeocoding geocoding = new GazetteerMapGeocoding(gazetteer);
+
+        assertThat(geocoding.getLocation("500 Freeport Pkwy, Coppell, TX 75019"),
+                is(new LatAndLong(32.9721, -97.0335)));
+        assertThat(geocoding.getLocation("2000 Main St, Dallas, TX 75201-1234"), is(new LatAndLong(32.7876, -96.7994)));
+        assertThat(geocoding.getLocation("100 Bethel Rd, Coppell, TX"), is(new LatAndLong(32.9546, -97.015)));
+        assertThat(geocoding.getLocation("32.1,-96.2"), is(new LatAndLong(32.1, -96.2)));
+        assertThat(geocoding.getLocation("Nowhere"), is(nullValue()));
+    }
+
+    @Test
+    public void testFallbackUsedWhenPrimaryFails() {
+        MapGeocoding failing = new MapGeocoding() {
+            @Override
+            public LatAndLong getLocation(String address) {
+                throw new IllegalStateException("network down");
+            }
+        };
+        MapGeocoding geocoding = new FallbackMapGeocoding(failing, new GazetteerMapGeocoding(gazetteer));
+
+        assertThat(geocoding.getLocation("Dallas, TX"), is(new LatAndLong(32.7767, -96.7969)));
+    }
+
+    @Test
+    public void testReverseGeocodingFromGazetteer() {
+        MapReverseGeocoding reverse = LocalMapReverseGeocoding.of(gazetteer, 5);
+
+        assertThat(gazetteer.getLocations().size(), is(6));
+        assertThat(reverse.getAddress(new LatAndLong(32.787, -96.799)), is("75201"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedLineIsRejected() throws IOException {
+        File csv = folder.newFile("bad.csv");
+        Files.write("75201,north,-96.7994\n", csv, Charsets.UTF_8);
+
+        Gazetteer.compile(csv, new File(folder.getRoot(), "bad.idx"));
+    }
+}
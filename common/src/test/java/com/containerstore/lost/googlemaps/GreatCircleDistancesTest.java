@@ -0,0 +1,78 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class GreatCircleDistancesTest {
+    @Test
+    public void testOneToManyMatchesHaversine() {
+        Random random = new Random(3);
+        LatAndLong origin = new LatAndLong(32.7767, -96.7970);
+        List<LatAndLong> destinations = randomLocations(random, 1000);
+
+        double[] distances = GreatCircleDistances.oneToMany(origin, GreatCircleDistances.Points.of(destinations));
+
+        for (int i = 0; i < destinations.size(); i++) {
+            assertThat(distances[i], closeTo(haversine(origin, destinations.get(i)), 1e-6));
+        }
+    }
+
+    @Test
+    public void testShortDistancesArePrecise() {
+        LatAndLong origin = new LatAndLong(32.7767, -96.7970);
+        // About 1.1 meters north.
+        LatAndLong destination = new LatAndLong(32.77671, -96.7970);
+
+        double expected = Math.toRadians(0.00001) * GreatCircleDistances.EARTH_RADIUS_MILES;
+        assertThat(GreatCircleDistances.distance(origin, destination), closeTo(expected, expected * 1e-6));
+        assertThat(GreatCircleDistances.distance(origin, origin), is(0.0));
+    }
+
+    @Test
+    public void testAllPairsMatchesOneToMany() {
+        Random random = new Random(5);
+        List<LatAndLong> origins = randomLocations(random, 300);
+        List<LatAndLong> destinations = randomLocations(random, 2500);
+        GreatCircleDistances.Points destinationPoints = GreatCircleDistances.Points.of(destinations);
+
+        float[] matrix = GreatCircleDistances.allPairs(GreatCircleDistances.Points.of(origins), destinationPoints);
+
+        assertThat(matrix.length, is(origins.size() * destinations.size()));
+        for (int row = 0; row < origins.size(); row++) {
+            double[] expected = GreatCircleDistances.oneToMany(origins.get(row), destinationPoints);
+            for (int column = 0; column < destinations.size(); column++) {
+                assertThat((double) matrix[row * destinations.size() + column],
+                        closeTo(expected[column], 1e-6 * expected[column] + 1e-6));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedArraysAreRejected() {
+        GreatCircleDistances.Points.of(new double[2], new double[3]);
+    }
+
+    private static double haversine(LatAndLong origin, LatAndLong destination) {
+        double latitude1 = Math.toRadians(origin.getLatitude());
+        double latitude2 = Math.toRadians(destination.getLatitude());
+        double sinLatitude = Math.sin((latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(destination.getLongitude() - origin.getLongitude()) / 2);
+        double a = sinLatitude * sinLatitude + Math.cos(latitude1) * Math.cos(latitude2) * sinLongitude * sinLongitude;
+        return 2 * GreatCircleDistances.EARTH_RADIUS_MILES * Math.asin(Math.sqrt(a));
+    }
+
+    private static List<LatAndLong> randomLocations(Random random, int count) {
+        List<LatAndLong> locations = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            locations.add(new LatAndLong(Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+                    360 * random.nextDouble() - 180));
+        }
+        return locations;
+    }
+}
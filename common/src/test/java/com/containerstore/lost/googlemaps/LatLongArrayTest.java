@@ -0,0 +1,95 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.base.Objects;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LatLongArrayTest {
+    @Test
+    public void testPackRoundTrip() {
+        long packed = PackedLatLong.pack(32.7767, -96.797);
+
+        assertThat(PackedLatLong.latitude(packed), closeTo(32.7767, 1e-7));
+        assertThat(PackedLatLong.longitude(packed), closeTo(-96.797, 1e-7));
+        assertThat(PackedLatLong.fromGeohash(PackedLatLong.geohash(packed)), is(packed));
+        long south = PackedLatLong.pack(-34.6037, -58.3816);
+        assertThat(PackedLatLong.fromGeohash(PackedLatLong.geohash(south)), is(south));
+        assertThat(PackedLatLong.geohash(south), lessThan(PackedLatLong.geohash(packed)));
+        assertThat(PackedLatLong.toLatAndLong(PackedLatLong.pack(-90, 180)), is(new LatAndLong(-90, 180)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLatitudeIsRejected() {
+        PackedLatLong.pack(91, 0);
+    }
+
+    @Test
+    public void testGrowAndReadOnAndOffHeap() {
+        for (LatLongArray array : new LatLongArray[] {new LatLongArray(0), LatLongArray.offHeap(1)}) {
+            Random random = new Random(11);
+            for (int i = 0; i < 10000; i++) {
+                array.add(180 * random.nextDouble() - 90, 360 * random.nextDouble() - 180);
+            }
+
+            assertThat(array.size(), is(10000));
+            random = new Random(11);
+            for (int i = 0; i < 10000; i++) {
+                assertThat(array.getLatitude(i), closeTo(180 * random.nextDouble() - 90, 1e-7));
+                assertThat(array.getLongitude(i), closeTo(360 * random.nextDouble() - 180, 1e-7));
+            }
+        }
+    }
+
+    @Test
+    public void testSortByGeohashKeepsPointsAndOrdersKeys() {
+        Random random = new Random(13);
+        LatLongArray array = new LatLongArray();
+        long sum = 0;
+        for (int i = 0; i < 5000; i++) {
+            array.add(25 + 24 * random.nextDouble(), -124 + 57 * random.nextDouble());
+            sum += array.getPacked(i);
+        }
+
+        array.sortByGeohash();
+
+        long sortedSum = 0;
+        for (int i = 0; i < array.size(); i++) {
+            sortedSum += array.getPacked(i);
+            if (i > 0) {
+                assertThat(PackedLatLong.geohash(array.getPacked(i)),
+                        greaterThanOrEqualTo(PackedLatLong.geohash(array.getPacked(i - 1))));
+            }
+        }
+        assertThat(sortedSum, is(sum));
+    }
+
+    @Test
+    public void testForEachAndConversion() {
+        LatLongArray array = LatLongArray.of(Arrays.asList(new LatAndLong(1, 2), new LatAndLong(3, 4)));
+        final double[] sums = new double[2];
+
+        array.forEach(new LatLongArray.Visitor() {
+            @Override
+            public void visit(int index, double latitude, double longitude) {
+                sums[0] += latitude;
+                sums[1] += longitude;
+            }
+        });
+
+        assertThat(sums[0], closeTo(4, 1e-9));
+        assertThat(sums[1], closeTo(6, 1e-9));
+        assertThat(array.toList().get(1), is(new LatAndLong(3, 4)));
+    }
+
+    @Test
+    public void testLatAndLongHashCodeIsUnchanged() {
+        LatAndLong location = new LatAndLong(32.7767, -96.797);
+
+        assertThat(location.hashCode(), is(Objects.hashCode(32.7767, -96.797)));
+    }
+}
@@ -0,0 +1,46 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LocalMapReverseGeocodingTest {
+    private static MapReverseGeocoding stores() {
+        Map<String, LatAndLong> stores = Maps.newHashMap();
+        stores.put("Dallas Galleria", new LatAndLong(32.9308, -96.8194));
+        stores.put("Coppell", new LatAndLong(32.9721, -97.0335));
+        stores.put("Houston Galleria", new LatAndLong(29.7390, -95.4618));
+        return new LocalMapReverseGeocoding(stores);
+    }
+
+    @Test
+    public void testNearestAddress() {
+        MapReverseGeocoding geocoding = stores();
+
+        assertThat(geocoding.getAddress(LatAndLong.fromString("32.95,-96.85")), is("Dallas Galleria"));
+        assertThat(geocoding.getAddress(new LatAndLong(29.76, -95.37)), is("Houston Galleria"));
+    }
+
+    @Test
+    public void testLocationsBeyondMaximumHaveNoAddress() {
+        MapReverseGeocoding geocoding = stores();
+
+        // Austin is more than 25 miles from every store.
+        assertThat(geocoding.getAddress(new LatAndLong(30.2672, -97.7431)), is(nullValue()));
+        assertThat(geocoding.getAddress(null), is(nullValue()));
+    }
+
+    @Test
+    public void testBatchKeepsOrder() {
+        List<String> addresses = stores().getAddresses(Arrays.asList(new LatAndLong(32.97, -97.03),
+                new LatAndLong(30.2672, -97.7431), new LatAndLong(32.93, -96.82)));
+
+        assertThat(addresses, is(Arrays.asList("Coppell", null, "Dallas Galleria")));
+    }
+}
@@ -0,0 +1,118 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LocationIndexTest {
+    @Test
+    public void testQueriesMatchLinearScan() {
+        Random random = new Random(42);
+        Map<String, LatAndLong> locations = randomLocations(random, 20000);
+        LocationIndex index = new LocationIndex(locations);
+
+        for (int i = 0; i < 50; i++) {
+            LatAndLong point = randomLocation(random);
+            assertThat(index.nearest(point, 10), is(linearScan(locations, point, 10, Double.MAX_VALUE)));
+            assertThat(index.withinRadius(point, 30), is(linearScan(locations, point, Integer.MAX_VALUE, 30)));
+        }
+    }
+
+    @Test
+    public void testNearestAcrossAntimeridian() {
+        Map<String, LatAndLong> locations = Maps.newHashMap();
+        locations.put("fiji", new LatAndLong(-17.7, 178.0));
+        locations.put("samoa", new LatAndLong(-13.8, -172.1));
+        locations.put("sydney", new LatAndLong(-33.9, 151.2));
+        LocationIndex index = new LocationIndex(locations);
+
+        assertThat(index.nearest(new LatAndLong(-16, -179.5), 2),
+                is((List<String>) Lists.newArrayList("fiji", "samoa")));
+        assertThat(index.withinRadius(new LatAndLong(-17.7, -179.9), 150),
+                is((List<String>) Lists.newArrayList("fiji")));
+    }
+
+    @Test
+    public void testIncrementalPutsAndRemoves() {
+        Random random = new Random(7);
+        Map<String, LatAndLong> locations = randomLocations(random, 1000);
+        LocationIndex index = new LocationIndex(locations);
+
+        // Enough changes to go through several rebuilds.
+        for (int i = 0; i < 2000; i++) {
+            if (i % 3 == 0) {
+                String key = "p" + random.nextInt(1000);
+                assertThat(index.remove(key), is(locations.remove(key)));
+            } else {
+                LatAndLong location = randomLocation(random);
+                String key = random.nextBoolean() ? "p" + random.nextInt(1000) : "q" + i;
+                index.put(key, location);
+                locations.put(key, location);
+            }
+        }
+
+        assertThat(index.size(), is(locations.size()));
+        for (int i = 0; i < 50; i++) {
+            LatAndLong point = randomLocation(random);
+            assertThat(index.nearest(point, 5), is(linearScan(locations, point, 5, Double.MAX_VALUE)));
+            assertThat(index.withinRadius(point, 100), is(linearScan(locations, point, Integer.MAX_VALUE, 100)));
+        }
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        LocationIndex index = new LocationIndex();
+
+        assertThat(index.nearest(new LatAndLong(32.8, -96.8), 3).isEmpty(), is(true));
+        assertThat(index.withinRadius(new LatAndLong(32.8, -96.8), 30).isEmpty(), is(true));
+        assertThat(index.remove("missing"), is(nullValue()));
+    }
+
+    private static Map<String, LatAndLong> randomLocations(Random random, int count) {
+        Map<String, LatAndLong> locations = Maps.newHashMap();
+        for (int i = 0; i < count; i++) {
+            locations.put("p" + i, randomLocation(random));
+        }
+        return locations;
+    }
+
+    /**
+     * Mostly continental US, with some points anywhere on the globe.
+     */
+    private static LatAndLong randomLocation(Random random) {
+        if (random.nextInt(10) == 0) {
+            return new LatAndLong(Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+                    360 * random.nextDouble() - 180);
+        }
+        return new LatAndLong(25 + 24 * random.nextDouble(), -124 + 57 * random.nextDouble());
+    }
+
+    private static List<String> linearScan(Map<String, LatAndLong> locations, final LatAndLong point, int k,
+                                           double miles) {
+        final Map<String, Double> distances = Maps.newHashMap();
+        for (Map.Entry<String, LatAndLong> entry : locations.entrySet()) {
+            double distance = LocationIndex.greatCircleDistance(point, entry.getValue());
+            if (distance <= miles) {
+                distances.put(entry.getKey(), distance);
+            }
+        }
+
+        List<String> keys = Lists.newArrayList(distances.keySet());
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                return Double.compare(distances.get(first), distances.get(second));
+            }
+        });
+        return keys.size() > k ? keys.subList(0, k) : keys;
+    }
+}
@@ -0,0 +1,89 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class MapQueryTest {
+    private static final LatAndLong DALLAS = new LatAndLong(32.7767, -96.7970);
+
+    @Test
+    public void testGetLocationAsyncDoesNotBlockCaller() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        MapGeocoding geocoding = new MapGeocoding() {
+            @Override
+            public LatAndLong getLocation(String address) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return DALLAS;
+            }
+        };
+
+        MapQuery query = new MapQuery(null, geocoding, new GoogleDistanceRequest(),
+                MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(2)));
+
+        ListenableFuture<LatAndLong> location = query.getLocationAsync("Dallas");
+        assertThat(location.isDone(), is(false));
+
+        release.countDown();
+        assertThat(location.get(5, TimeUnit.SECONDS), is(DALLAS));
+    }
+
+    @Test
+    public void testQueryDistanceAsyncReportsFailure() throws Exception {
+        MapDistanceMatrix matrix = new MapDistanceMatrix() {
+            @Override
+            public MapDistanceResult query(MapDistanceRequest request) {
+                throw new IllegalStateException("quota");
+            }
+        };
+
+        MapQuery query = new MapQuery(matrix, null, new GoogleDistanceRequest());
+        try {
+            query.queryDistanceAsync(query.createRequest().withOrigin("a").withDestination("b")).get();
+            fail("Expected exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("quota"));
+        }
+    }
+
+    @Test
+    public void testShutdownStopsOnlyTheOwnedPool() throws Exception {
+        MapDistanceMatrix matrix = new MapDistanceMatrix() {
+            @Override
+            public MapDistanceResult query(MapDistanceRequest request) {
+                return null;
+            }
+        };
+
+        MapQuery owning = new MapQuery(matrix, null, new GoogleDistanceRequest());
+        owning.shutdown();
+        try {
+            owning.queryDistanceAsync(owning.createRequest().withOrigin("a").withDestination("b"));
+            fail("Expected the pool to be stopped");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(1));
+        MapQuery borrowing = new MapQuery(matrix, null, new GoogleDistanceRequest(), executor);
+        borrowing.shutdown();
+        assertThat(executor.isShutdown(), is(false));
+        borrowing.queryDistanceAsync(borrowing.createRequest().withOrigin("a").withDestination("b"))
+                .get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,139 @@
+package com.containerstore.lost.googlemaps;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class MappedStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        MappedStore store = MappedStore.open(folder.getRoot(), "test");
+        try {
+            double[] value = new double[2];
+            assertThat(store.get("dallas", value), is(false));
+
+            store.put("dallas", 32.7767, -96.7970);
+            store.put("dallas", 32.78, -96.80);
+            assertThat(store.get("dallas", value), is(true));
+            assertThat(value[0], is(32.78));
+            assertThat(value[1], is(-96.80));
+            assertThat(store.size(), is(1));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testSurvivesReopenAndGrowth() throws IOException {
+        MappedStore store = MappedStore.open(folder.getRoot(), "test");
+        for (int i = 0; i < 5000; i++) {
+            store.put("key" + i, i, -i);
+        }
+        store.close();
+
+        store = MappedStore.open(folder.getRoot(), "test");
+        try {
+            assertThat(store.size(), is(5000));
+            double[] value = new double[2];
+            for (int i = 0; i < 5000; i++) {
+                assertThat(store.get("key" + i, value), is(true));
+                assertThat(value[0], is((double) i));
+                assertThat(value[1], is((double) -i));
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testRecoversWithoutIndexAndTruncatesTornRecord() throws IOException {
+        MappedStore store = MappedStore.open(folder.getRoot(), "test");
+        store.put("first", 1, 2);
+        store.put("second", 3, 4);
+        store.close();
+
+        File log = new File(folder.getRoot(), "test.log");
+        RandomAccessFile raf = new RandomAccessFile(log, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+        assertThat(new File(folder.getRoot(), "test.idx").delete(), is(true));
+
+        store = MappedStore.open(folder.getRoot(), "test");
+        try {
+            double[] value = new double[2];
+            assertThat(store.get("first", value), is(true));
+            assertThat(value[1], is(2.0));
+            assertThat(store.get("second", value), is(false));
+            assertThat(store.size(), is(1));
+
+            store.put("third", 5, 6);
+            assertThat(store.get("third", value), is(true));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testCompactDropsReplacedRecords() throws IOException {
+        MappedStore store = MappedStore.open(folder.getRoot(), "test");
+        try {
+            for (int i = 0; i < 100; i++) {
+                store.put("key", i, i);
+            }
+            store.put("other", 1, 1);
+
+            File log = new File(folder.getRoot(), "test.log");
+            long before = log.length();
+            store.compact();
+            assertThat(log.length(), lessThan(before));
+
+            double[] value = new double[2];
+            assertThat(store.get("key", value), is(true));
+            assertThat(value[0], is(99.0));
+            assertThat(store.get("other", value), is(true));
+            assertThat(store.size(), is(2));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testPersistentGeocodingAvoidsDelegateAfterRestart() throws IOException {
+        final LatAndLong dallas = new LatAndLong(32.7767, -96.7970);
+        final int[] calls = new int[1];
+        MapGeocoding delegate = new MapGeocoding() {
+            @Override
+            public LatAndLong getLocation(String address) {
+                calls[0]++;
+                return address.contains("Coppell") ? dallas : null;
+            }
+        };
+
+        MappedStore store = MappedStore.open(folder.getRoot(), "geocode");
+        assertThat(new PersistentMapGeocoding(delegate, store).getLocation("500 Freeport Pkwy, Coppell TX"),
+                is(dallas));
+        store.close();
+
+        store = MappedStore.open(folder.getRoot(), "geocode");
+        try {
+            PersistentMapGeocoding geocoding = new PersistentMapGeocoding(delegate, store);
+            assertThat(geocoding.getLocation(" 500 freeport pkwy , Coppell TX"), is(dallas));
+            assertThat(calls[0], is(1));
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.containerstore.lost.googlemaps;
+
+import org.junit.Test;
+import org.springframework.beans.SimpleTypeConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.PropertyPlaceholderHelper;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class MapsCallSchedulerTest {
+    @Test
+    public void testSpringBeanUsesDefaults() throws Exception {
+        MapsCallScheduler scheduler = schedulerWith(new Properties());
+
+        assertThat(scheduler.getGeocodeBucket().getAvailable(), closeTo(10, 0.5));
+        assertThat(scheduler.getDistanceBucket().getAvailable(), closeTo(100, 0.5));
+        assertThat(scheduler.getBackpressure(), is(MapsCallScheduler.Backpressure.BLOCK));
+    }
+
+    @Test
+    public void testSpringBeanReadsProperties() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("googlemaps.geocodePerSecond", "3");
+        properties.setProperty("googlemaps.distanceElementsPerSecond", "40");
+        properties.setProperty("googlemaps.backpressure", "FAIL_FAST");
+
+        MapsCallScheduler scheduler = schedulerWith(properties);
+
+        assertThat(scheduler.getGeocodeBucket().getAvailable(), closeTo(3, 0.5));
+        assertThat(scheduler.getDistanceBucket().getAvailable(), closeTo(40, 0.5));
+        assertThat(scheduler.getBackpressure(), is(MapsCallScheduler.Backpressure.FAIL_FAST));
+    }
+
+    /**
+     * Calls the autowired constructor the way Spring would, resolving each @Value placeholder against the given
+     * properties, without starting an application context.
+     */
+    private static MapsCallScheduler schedulerWith(Properties properties) throws Exception {
+        PropertyPlaceholderHelper placeholders = new PropertyPlaceholderHelper("${", "}", ":", false);
+        SimpleTypeConverter converter = new SimpleTypeConverter();
+
+        for (Constructor<?> constructor : MapsCallScheduler.class.getConstructors()) {
+            if (constructor.getAnnotation(Autowired.class) == null) {
+                continue;
+            }
+
+            Class<?>[] types = constructor.getParameterTypes();
+            Annotation[][] annotations = constructor.getParameterAnnotations();
+            Object[] arguments = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                Value value = valueOf(annotations[i]);
+                assertThat("@Value on parameter " + i, value, notNullValue());
+                arguments[i] = converter.convertIfNecessary(
+                        placeholders.replacePlaceholders(value.value(), properties), types[i]);
+            }
+            return (MapsCallScheduler) constructor.newInstance(arguments);
+        }
+        throw new AssertionError("No @Autowired constructor");
+    }
+
+    private static Value valueOf(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Value) {
+                return (Value) annotation;
+            }
+        }
+        return null;
+    }
+}
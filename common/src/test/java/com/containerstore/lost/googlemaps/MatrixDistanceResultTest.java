@@ -0,0 +1,103 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class MatrixDistanceResultTest {
+    private static final List<String> ORIGINS = ImmutableList.of("o0", "o1");
+    private static final List<String> DESTINATIONS = ImmutableList.of("d0", "d1", "d2", "d3");
+
+    private MatrixDistanceResult result() {
+        MatrixDistanceResult.MatrixDistanceResultBuilder builder = MatrixDistanceResult.result(ORIGINS, DESTINATIONS);
+        for (int row = 0; row < ORIGINS.size(); row++) {
+            for (int column = 0; column < DESTINATIONS.size(); column++) {
+                // o1 -> d2 has no result.
+                if (row != 1 || column != 2) {
+                    builder.withElement(ORIGINS.get(row), DESTINATIONS.get(column), row * 10 + column,
+                            (row + 1) * 100 - column * 10);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testElementLookup() {
+        MatrixDistanceResult result = result();
+
+        assertThat(result.getDistance("o1", "d3"), is(13.0));
+        assertThat(result.getDuration("o1", "d3"), is(170.0));
+        assertThat(result.getDistance("o1", "d2"), is(-1.0));
+        assertThat(result.getDistance("unknown", "d3"), is(-1.0));
+    }
+
+    @Test
+    public void testRowView() {
+        DistanceView row = result().getRow("o1");
+
+        assertThat(row.size(), is(4));
+        assertThat(row.getLocation(3), is("d3"));
+        assertThat(row.getDistance(3), is(13.0));
+        assertThat(row.getDuration(0), is(200.0));
+        assertThat(row.getDuration(2), is(-1.0));
+        assertThat(result().getRow("unknown"), is(nullValue()));
+    }
+
+    @Test
+    public void testColumnView() {
+        DistanceView column = result().getColumn("d1");
+
+        assertThat(column.size(), is(2));
+        assertThat(column.getLocation(1), is("o1"));
+        assertThat(column.getDistance(0), is(1.0));
+        assertThat(column.getDistance(1), is(11.0));
+        assertThat(column.getDuration(1), is(190.0));
+        assertThat(result().getColumn("unknown"), is(nullValue()));
+    }
+
+    @Test
+    public void testNearestByDurationSkipsMissingElements() {
+        DistanceView row = result().getRow("o1");
+
+        assertThat(row.nearestLocationsByDuration(2), is((List<String>) ImmutableList.of("d3", "d1")));
+        assertThat(row.nearestLocationsByDuration(10), is((List<String>) ImmutableList.of("d3", "d1", "d0")));
+        assertThat(row.nearestByDuration(0).length, is(0));
+    }
+
+    @Test
+    public void testNearestByDurationMatchesSort() {
+        int size = 1000;
+        List<String> destinations = locations(size);
+        MatrixDistanceResult.MatrixDistanceResultBuilder builder =
+                MatrixDistanceResult.result(ImmutableList.of("o"), destinations);
+        for (int i = 0; i < size; i++) {
+            // Durations 0 to 499 in scrambled order, each appearing twice.
+            builder.withElement("o", destinations.get(i), i, (i * 7919) % size / 2);
+        }
+
+        DistanceView row = builder.build().getRow("o");
+        int[] nearest = row.nearestByDuration(25);
+
+        // Each duration appears twice, so the 25 nearest are 0 to 11 twice and one 12, ties broken by index.
+        assertThat(nearest.length, is(25));
+        for (int i = 1; i < nearest.length; i++) {
+            double previous = row.getDuration(nearest[i - 1]);
+            double current = row.getDuration(nearest[i]);
+            assertThat(previous < current || (previous == current && nearest[i - 1] < nearest[i]), is(true));
+        }
+        assertThat(row.getDuration(nearest[nearest.length - 1]), is(12.0));
+    }
+
+    private static List<String> locations(int count) {
+        ImmutableList.Builder<String> locations = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            locations.add("d" + i);
+        }
+        return locations.build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class NearestLocationRankerTest {
+    private static final int GRID = 30;
+
+    @Test
+    public void testRankingMatchesFullMatrixWithFewElements() {
+        Map<String, LatAndLong> stores = stores();
+        FakeMatrix matrix = new FakeMatrix(stores);
+        NearestLocationRanker ranker = new NearestLocationRanker(matrix, new FakeGeocoding(),
+                new GoogleDistanceRequest());
+
+        // Warm up the learned pace and expansion.
+        for (int i = 0; i < 20; i++) {
+            ranker.rank(customer(i), stores, 5);
+        }
+        long candidates = ranker.getCandidateCount();
+        long elements = ranker.getElementCount();
+
+        for (int i = 20; i < 60; i++) {
+            String customer = customer(i);
+            List<RankedLocation> ranked = ranker.rank(customer, stores, 5);
+
+            // Stores can tie, so each rank is checked by its duration rather than by name.
+            List<Double> expected = bruteForce(matrix, customer, stores, 5);
+            assertThat(ranked.size(), is(5));
+            for (int j = 0; j < ranked.size(); j++) {
+                assertThat(ranked.get(j).getDuration(), closeTo(expected.get(j), 1e-9));
+            }
+        }
+
+        double fraction = (double) (ranker.getElementCount() - elements) / (ranker.getCandidateCount() - candidates);
+        assertThat(fraction, lessThan(0.1));
+    }
+
+    @Test
+    public void testCandidatesWithoutResultsAreLeftOut() {
+        Map<String, LatAndLong> stores = stores();
+        FakeMatrix matrix = new FakeMatrix(stores);
+        matrix.unreachable = 3;
+        NearestLocationRanker ranker = new NearestLocationRanker(matrix, new FakeGeocoding(),
+                new GoogleDistanceRequest());
+
+        List<RankedLocation> ranked = ranker.rank(customer(0), stores, 4);
+
+        assertThat(ranked.size(), is(4));
+        for (int i = 0; i < ranked.size(); i++) {
+            assertThat(ranked.get(i).getDuration(), greaterThanOrEqualTo(0.0));
+            assertThat(Integer.parseInt(ranked.get(i).getName().substring(1)) % 3 == 0, is(false));
+            if (i > 0) {
+                assertThat(ranked.get(i).getDuration(), greaterThanOrEqualTo(ranked.get(i - 1).getDuration()));
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownAddressGivesNoResults() {
+        NearestLocationRanker ranker = new NearestLocationRanker(new FakeMatrix(stores()), new FakeGeocoding(),
+                new GoogleDistanceRequest());
+
+        assertThat(ranker.rank("nowhere", stores(), 5).isEmpty(), is(true));
+    }
+
+    private static Map<String, LatAndLong> stores() {
+        Map<String, LatAndLong> stores = Maps.newLinkedHashMap();
+        for (int i = 0; i < GRID * GRID; i++) {
+            stores.put("s" + i, new LatAndLong(31 + 3.0 * (i / GRID) / GRID, -98 + 3.0 * (i % GRID) / GRID));
+        }
+        return stores;
+    }
+
+    private static String customer(int i) {
+        return (31.5 + (i * 37 % 100) / 50.0) + "," + (-97.5 + (i * 61 % 100) / 50.0);
+    }
+
+    private static List<Double> bruteForce(FakeMatrix matrix, String customer, Map<String, LatAndLong> stores,
+                                           int count) {
+        MapDistanceResult result = matrix.query(new GoogleDistanceRequest()
+                .withOrigin(customer)
+                .withDestinations(stores.keySet()));
+        List<Double> durations = Lists.newArrayList();
+        for (String store : stores.keySet()) {
+            durations.add(result.getDuration(customer, store));
+        }
+        Collections.sort(durations);
+        return durations.subList(0, count);
+    }
+
+    private static class FakeGeocoding implements MapGeocoding {
+        @Override
+        public LatAndLong getLocation(String address) {
+            return LatAndLong.fromString(address);
+        }
+    }
+
+    /**
+     * Drives at 60, 70, 80 or 90 seconds per great-circle mile, depending on the store. Stores whose number is a
+     * multiple of unreachable (if set) have no result.
+     */
+    private static class FakeMatrix implements MapDistanceMatrix {
+        private final Map<String, LatAndLong> stores;
+        private int unreachable;
+
+        FakeMatrix(Map<String, LatAndLong> stores) {
+            this.stores = stores;
+        }
+
+        @Override
+        public MapDistanceResult query(MapDistanceRequest request) {
+            MatrixDistanceResult.MatrixDistanceResultBuilder builder =
+                    MatrixDistanceResult.result(request.getOrigins(), request.getDestinations());
+            for (String origin : request.getOrigins()) {
+                for (String destination : request.getDestinations()) {
+                    int store = Integer.parseInt(destination.substring(1));
+                    if (unreachable > 0 && store % unreachable == 0) {
+                        continue;
+                    }
+                    double miles = GreatCircleDistances.distance(LatAndLong.fromString(origin),
+                            stores.get(destination));
+                    builder.withElement(origin, destination, miles * 1.3, miles * (60 + 10 * (store % 4)));
+                }
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class RoadNetworkMapDistanceMatrixTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RoadGraph load(String edges) throws IOException {
+        File file = folder.newFile("roads.csv");
+        Files.write(edges, file, Charsets.UTF_8);
+        return RoadGraph.load(file);
+    }
+
+    @Test
+    public void testFastestRouteAndOneWaySegments() throws IOException {
+        // A slow direct road from a to c, a faster way round through b, and a one-way shortcut from c to a.
+        RoadGraph graph = load("# from_lat,from_lon,to_lat,to_lon,miles,seconds[,oneway]\n"
+                + "32.0,-97.0,32.0,-96.9,6,600\n"
+                + "32.0,-97.0,32.05,-96.95,4,240\n"
+                + "32.05,-96.95,32.0,-96.9,4,240\n"
+                + "32.0,-96.9,32.0,-97.0,5,300,oneway\n");
+        RoadNetworkMapDistanceMatrix matrix = new RoadNetworkMapDistanceMatrix(graph);
+
+        MapDistanceResult result = matrix.query(new GoogleDistanceRequest()
+                .withOrigins(Lists.newArrayList("32.0,-97.0", "32.0,-96.9"))
+                .withDestinations(Lists.newArrayList("32.0,-96.9", "32.0,-97.0", "40.0,-100.0")));
+
+        assertThat(graph.getNodeCount(), is(3));
+        assertThat(result.getDistance("32.0,-97.0", "32.0,-96.9"), is(8.0));
+        assertThat(result.getDuration("32.0,-97.0", "32.0,-96.9"), is(480.0));
+        assertThat(result.getDistance("32.0,-96.9", "32.0,-97.0"), is(5.0));
+        assertThat(result.getDuration("32.0,-97.0", "32.0,-97.0"), is(0.0));
+        // Too far from the network to snap.
+        assertThat(result.getDistance("32.0,-97.0", "40.0,-100.0"), is(-1.0));
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testSingleDestinationSearchesMatchMatrixRows() throws IOException {
+        Random random = new Random(17);
+        int size = 30;
+        StringBuilder edges = new StringBuilder();
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                if (column + 1 < size) {
+                    edges.append(segment(random, row, column, row, column + 1));
+                }
+                if (row + 1 < size) {
+                    edges.append(segment(random, row, column, row + 1, column));
+                }
+            }
+        }
+        RoadGraph graph = load(edges.toString());
+        RoadNetworkMapDistanceMatrix matrix = new RoadNetworkMapDistanceMatrix(graph, null, 1, 3);
+
+        List<String> origins = Lists.newArrayList();
+        List<String> destinations = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+            origins.add(point(random.nextInt(size), random.nextInt(size)));
+            destinations.add(point(random.nextInt(size), random.nextInt(size)));
+        }
+
+        MapDistanceResult all = matrix.query(new GoogleDistanceRequest()
+                .withOrigins(origins)
+                .withDestinations(destinations));
+
+        for (String origin : origins) {
+            for (String destination : destinations) {
+                MapDistanceResult single = matrix.query(new GoogleDistanceRequest()
+                        .withOrigin(origin)
+                        .withDestination(destination));
+                assertThat(single.getDuration(origin, destination),
+                        closeTo(all.getDuration(origin, destination), 1e-6));
+                assertThat(all.getDuration(origin, destination), greaterThanOrEqualTo(0.0));
+            }
+        }
+        matrix.shutdown();
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedSegmentIsRejected() throws IOException {
+        load("32.0,-97.0,32.0,-96.9,6\n");
+    }
+
+    private static String point(int row, int column) {
+        return (32 + row * 0.01) + "," + (-97 + column * 0.01);
+    }
+
+    private static String segment(Random random, int fromRow, int fromColumn, int toRow, int toColumn) {
+        double miles = 0.6 + 0.2 * random.nextDouble();
+        double seconds = miles * (40 + 80 * random.nextDouble());
+        return point(fromRow, fromColumn) + "," + point(toRow, toColumn) + "," + miles + "," + seconds + "\n";
+    }
+}
@@ -0,0 +1,141 @@
+package com.containerstore.lost.googlemaps;
+
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+    private static final LatAndLong DALLAS = new LatAndLong(32.7767, -96.7970);
+    private static final int CALLERS = 8;
+
+    @Test
+    public void testConcurrentLookupsShareOneCall() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final SingleFlightMapGeocoding geocoding = new SingleFlightMapGeocoding(new MapGeocoding() {
+            @Override
+            public LatAndLong getLocation(String address) {
+                calls.incrementAndGet();
+                await(release);
+                return DALLAS;
+            }
+        });
+
+        List<Future<LatAndLong>> results = startCallers(new Callable<LatAndLong>() {
+            @Override
+            public LatAndLong call() {
+                return geocoding.getLocation(" 500 Freeport Pkwy ");
+            }
+        }, geocoding);
+        release.countDown();
+
+        for (Future<LatAndLong> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS), is(DALLAS));
+        }
+        assertThat(calls.get(), is(1));
+        assertThat(geocoding.getSharedCount(), is((long) CALLERS - 1));
+
+        assertThat(geocoding.getLocation("500 freeport pkwy"), is(DALLAS));
+        assertThat(calls.get(), is(2));
+    }
+
+    @Test
+    public void testWaitersShareFailure() throws Exception {
+        final SingleFlight<String, String> flights = new SingleFlight<String, String>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<String> first = executor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return flights.execute("key", new Callable<String>() {
+                    @Override
+                    public String call() {
+                        started.countDown();
+                        await(release);
+                        throw new IllegalStateException("quota");
+                    }
+                });
+            }
+        });
+        started.await();
+        Future<String> second = executor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return flights.execute("key", new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return "not shared";
+                    }
+                });
+            }
+        });
+        while (flights.getSharedCount() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        for (Future<String> result : Arrays.asList(first, second)) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Expected exception");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause().getMessage(), is("quota"));
+            }
+        }
+        assertThat(flights.getCallCount(), is(1L));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCanonicalKeyIgnoresOrder() {
+        MapDistanceRequest first = new GoogleDistanceRequest()
+                .withOrigins(Arrays.asList("a", "b")).withDestinations(Arrays.asList("x", "y"));
+        MapDistanceRequest second = new GoogleDistanceRequest()
+                .withOrigins(Arrays.asList("b", "a", "b")).withDestinations(Arrays.asList("y", "x"));
+        MapDistanceRequest third = new GoogleDistanceRequest()
+                .withOrigins(Arrays.asList("a", "b")).withDestinations(Arrays.asList("x"));
+
+        assertThat(SingleFlightMapDistanceMatrix.canonicalKey(first),
+                is(SingleFlightMapDistanceMatrix.canonicalKey(second)));
+        assertThat(SingleFlightMapDistanceMatrix.canonicalKey(first),
+                is(not(SingleFlightMapDistanceMatrix.canonicalKey(third))));
+    }
+
+    private static <T> List<Future<T>> startCallers(Callable<T> call, SingleFlightMapGeocoding geocoding)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<T>> results = Lists.newArrayList();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(call));
+        }
+        while (geocoding.getSharedCount() < CALLERS - 1) {
+            Thread.sleep(1);
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
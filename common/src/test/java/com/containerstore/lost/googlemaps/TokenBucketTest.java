@@ -0,0 +1,88 @@
+package com.containerstore.lost.googlemaps;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.containerstore.lost.googlemaps.MapsCallScheduler.Backpressure.*;
+import static com.containerstore.lost.googlemaps.MapsCallScheduler.Priority.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+    @Test
+    public void testFailFastOnceBurstIsUsed() {
+        TokenBucket bucket = new TokenBucket("test", 1, 2);
+        bucket.acquire(1, INTERACTIVE, FAIL_FAST, 0);
+        bucket.acquire(1, INTERACTIVE, FAIL_FAST, 0);
+
+        try {
+            bucket.acquire(1, INTERACTIVE, FAIL_FAST, 0);
+            fail("Expected MapsRateLimitException");
+        } catch (MapsRateLimitException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBlockWaitsForRefill() {
+        TokenBucket bucket = new TokenBucket("test", 20, 1);
+        bucket.drain();
+
+        long start = System.nanoTime();
+        bucket.acquire(1, INTERACTIVE, BLOCK, 0);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(40L));
+    }
+
+    @Test
+    public void testDeadlineFailsWhenWaitIsTooLong() {
+        TokenBucket bucket = new TokenBucket("test", 1, 1);
+        bucket.drain();
+
+        try {
+            bucket.acquire(1, INTERACTIVE, DEADLINE, TimeUnit.MILLISECONDS.toNanos(10));
+            fail("Expected MapsRateLimitException");
+        } catch (MapsRateLimitException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLargeRequestLeavesBucketInDebt() {
+        TokenBucket bucket = new TokenBucket("test", 10, 10);
+        bucket.acquire(25, INTERACTIVE, FAIL_FAST, 0);
+        assertThat(bucket.getAvailable(), lessThan(-14.0));
+    }
+
+    @Test
+    public void testInteractiveGoesBeforeWaitingBatch() throws Exception {
+        final TokenBucket bucket = new TokenBucket("test", 20, 1);
+        bucket.drain();
+        final List<MapsCallScheduler.Priority> order =
+                Collections.synchronizedList(Lists.<MapsCallScheduler.Priority>newArrayList());
+
+        Thread batch = acquireInThread(bucket, BATCH, order);
+        Thread.sleep(10);
+        Thread interactive = acquireInThread(bucket, INTERACTIVE, order);
+        batch.join();
+        interactive.join();
+
+        assertThat(order, is((List<MapsCallScheduler.Priority>) Lists.newArrayList(INTERACTIVE, BATCH)));
+    }
+
+    private static Thread acquireInThread(final TokenBucket bucket, final MapsCallScheduler.Priority priority,
+                                          final List<MapsCallScheduler.Priority> order) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bucket.acquire(1, priority, BLOCK, 0);
+                order.add(priority);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,226 @@
+package com.containerstore.lost.googlemaps.google;
+
+import com.containerstore.lost.googlemaps.DistanceView;
+import com.containerstore.lost.googlemaps.MapDistanceResult;
+import com.containerstore.lost.googlemaps.MapsCallScheduler;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class GoogleDistanceMatrixTest {
+    private static final double METERS_TO_MILES = 0.00062137119;
+
+    @Test
+    public void testTileRespectsLimits() {
+        List<GoogleDistanceMatrix.Tile> tiles = GoogleDistanceMatrix.tile(locations("o", 500), locations("d", 50),
+                25, 25, 100);
+
+        assertThat(tiles.size(), is(250));
+        int elements = 0;
+        for (GoogleDistanceMatrix.Tile tile : tiles) {
+            assertThat(tile.getOrigins().size(), lessThanOrEqualTo(25));
+            assertThat(tile.getDestinations().size(), lessThanOrEqualTo(25));
+            assertThat(tile.getOrigins().size() * tile.getDestinations().size(), lessThanOrEqualTo(100));
+            elements += tile.getOrigins().size() * tile.getDestinations().size();
+        }
+        assertThat(elements, is(500 * 50));
+    }
+
+    @Test
+    public void testSmallRequestIsOneCall() {
+        FakeRestTemplate restTemplate = new FakeRestTemplate();
+        GoogleDistanceMatrix matrix = new GoogleDistanceMatrix(restTemplate);
+
+        MapDistanceResult result = matrix.query(new GoogleDistanceRequest()
+                .withOrigins(locations("o", 2))
+                .withDestinations(locations("d", 3)));
+
+        assertThat(restTemplate.calls.get(), is(1));
+        assertThat(result.getDistance("o1", "d2"), closeTo(1002 * METERS_TO_MILES, 1e-9));
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testResultRowView() {
+        FakeRestTemplate restTemplate = new FakeRestTemplate();
+        GoogleDistanceMatrix matrix = new GoogleDistanceMatrix(restTemplate);
+
+        GoogleDistanceResult result = (GoogleDistanceResult) matrix.query(new GoogleDistanceRequest()
+                .withOrigins(locations("o", 2))
+                .withDestinations(locations("d", 3)));
+
+        DistanceView row = result.getRow("o1");
+        assertThat(row.size(), is(3));
+        assertThat(row.getDuration(2), is(1002.0));
+        assertThat(row.nearestLocationsByDuration(1).get(0), is("d0"));
+        assertThat(result.getStatus("o1", "d2"), is(GoogleDistanceResult.ELEMENT_OK));
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testLargeRequestIsTiledAndStitched() {
+        FakeRestTemplate restTemplate = new FakeRestTemplate();
+        GoogleDistanceMatrix matrix = new GoogleDistanceMatrix(restTemplate, 3);
+
+        List<String> origins = locations("o", 60);
+        List<String> destinations = locations("d", 30);
+        MapDistanceResult result = matrix.query(new GoogleDistanceRequest()
+                .withOrigins(origins)
+                .withDestinations(destinations));
+
+        assertThat(restTemplate.calls.get(), is(18));
+        for (int origin = 0; origin < origins.size(); origin++) {
+            for (int destination = 0; destination < destinations.size(); destination++) {
+                assertThat(result.getDistance("o" + origin, "d" + destination),
+                        closeTo((origin * 1000 + destination) * METERS_TO_MILES, 1e-9));
+                assertThat(result.getDuration("o" + origin, "d" + destination),
+                        is((double) origin * 1000 + destination));
+            }
+        }
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testRepeatedLocationsAreSentOnce() {
+        FakeRestTemplate restTemplate = new FakeRestTemplate();
+        GoogleDistanceMatrix matrix = new GoogleDistanceMatrix(restTemplate);
+
+        List<String> origins = Lists.newArrayList();
+        for (int i = 0; i < 30; i++) {
+            origins.add("o" + i % 2);
+        }
+        MapDistanceResult result = matrix.query(new GoogleDistanceRequest()
+                .withOrigins(origins)
+                .withDestinations(locations("d", 3)));
+
+        assertThat(restTemplate.calls.get(), is(1));
+        assertThat(restTemplate.originCounts, is((List<Integer>) Lists.newArrayList(2)));
+        assertThat(result.getDistance("o1", "d2"), closeTo(1002 * METERS_TO_MILES, 1e-9));
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testFailedTileIsReportedAndOtherTilesKept() {
+        FakeRestTemplate restTemplate = new FakeRestTemplate();
+        restTemplate.failingOrigin = "o0";
+        GoogleDistanceMatrix matrix = new GoogleDistanceMatrix(restTemplate, 3);
+
+        GoogleDistanceResult result = (GoogleDistanceResult) matrix.query(new GoogleDistanceRequest()
+                .withOrigins(locations("o", 60))
+                .withDestinations(locations("d", 30)));
+
+        assertThat(restTemplate.calls.get(), is(18));
+        assertThat(result.getResponseStatus(), is(GoogleDefs.UNKNOWN_ERROR));
+        assertThat(result.getStatus("o0", "d0"), is(GoogleDistanceResult.ELEMENT_OTHER));
+        assertThat(result.getStatus("o59", "d29"), is(GoogleDistanceResult.ELEMENT_OK));
+        assertThat(result.getDuration("o59", "d29"), is(59029.0));
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testTilesArePacedAtTheSustainedRate() {
+        MapsCallScheduler scheduler = new MapsCallScheduler(10, 500, MapsCallScheduler.Backpressure.BLOCK, 0,
+                TimeUnit.MILLISECONDS);
+        FakeRestTemplate restTemplate = new FakeRestTemplate();
+        GoogleDistanceMatrix matrix = new GoogleDistanceMatrix(restTemplate, 3, scheduler);
+
+        // 1000 elements in ten tiles of 100: the first 500 come from the burst, the rest at 500 a second.
+        long start = System.nanoTime();
+        matrix.query(new GoogleDistanceRequest()
+                .withOrigins(locations("o", 40))
+                .withDestinations(locations("d", 25)));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(restTemplate.calls.get(), is(10));
+        assertThat(elapsed, greaterThanOrEqualTo(800L));
+        assertThat(scheduler.getDistanceBucket().getAvailable(), greaterThan(-100.0));
+        matrix.shutdown();
+    }
+
+    private static List<String> locations(String prefix, int count) {
+        List<String> locations = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            locations.add(prefix + i);
+        }
+        return locations;
+    }
+
+    /**
+     * Answers distance matrix URIs with elements whose value is 1000 * origin number + destination number.
+     */
+    private static class FakeRestTemplate extends RestTemplate {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final List<Integer> originCounts = Lists.newCopyOnWriteArrayList();
+        private volatile String failingOrigin;
+
+        @Override
+        public <T> T execute(URI url, HttpMethod method, RequestCallback requestCallback,
+                             ResponseExtractor<T> responseExtractor) {
+            calls.incrementAndGet();
+            List<String> origins = null;
+            List<String> destinations = null;
+            for (String parameter : Splitter.on('&').split(url.getRawQuery())) {
+                if (parameter.startsWith("origins=")) {
+                    origins = decode(parameter.substring("origins=".length()));
+                } else if (parameter.startsWith("destinations=")) {
+                    destinations = decode(parameter.substring("destinations=".length()));
+                }
+            }
+
+            originCounts.add(origins.size());
+            if (origins.contains(failingOrigin)) {
+                throw new ResourceAccessException("Connection reset");
+            }
+
+            List<String> rows = Lists.newArrayList();
+            for (String origin : origins) {
+                List<String> elements = Lists.newArrayList();
+                for (String destination : destinations) {
+                    int value = Integer.parseInt(origin.substring(1)) * 1000
+                            + Integer.parseInt(destination.substring(1));
+                    elements.add("{\"status\":\"OK\",\"distance\":{\"text\":\"\",\"value\":" + value
+                            + "},\"duration\":{\"text\":\"\",\"value\":" + value + "}}");
+                }
+                rows.add("{\"elements\":[" + Joiner.on(',').join(elements) + "]}");
+            }
+
+            String json = "{\"destination_addresses\":" + quote(destinations)
+                    + ",\"origin_addresses\":" + quote(origins)
+                    + ",\"rows\":[" + Joiner.on(',').join(rows) + "],\"status\":\"OK\"}";
+            try {
+                return responseExtractor.extractData(new StringResponse(json));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        private static List<String> decode(String value) {
+            try {
+                return Lists.newArrayList(Splitter.on('|').split(URLDecoder.decode(value, "UTF-8")));
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        private static String quote(List<String> values) {
+            return "[\"" + Joiner.on("\",\"").join(values) + "\"]";
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.containerstore.lost.googlemaps.google;
+
+import com.containerstore.lost.googlemaps.LatAndLong;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static com.containerstore.lost.googlemaps.google.JsonPullParser.Token.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class JsonPullParserTest {
+    private static final double METERS_TO_MILES = 0.00062137119;
+
+    @Test
+    public void testTokens() throws IOException {
+        JsonPullParser parser = parser("{\"a\": [1, -2.5, 3e2, true, false, null], "
+                + "\"b\\u00e9\\n\": \"x\\\"y\u00fc\"}", 4);
+
+        assertThat(parser.next(), is(START_OBJECT));
+        assertThat(parser.next(), is(FIELD_NAME));
+        assertThat(parser.textEquals("a"), is(true));
+        assertThat(parser.next(), is(START_ARRAY));
+        assertThat(parser.next(), is(NUMBER));
+        assertThat(parser.getDouble(), is(1.0));
+        assertThat(parser.next(), is(NUMBER));
+        assertThat(parser.getDouble(), is(-2.5));
+        assertThat(parser.next(), is(NUMBER));
+        assertThat(parser.getDouble(), is(300.0));
+        assertThat(parser.next(), is(TRUE));
+        assertThat(parser.next(), is(FALSE));
+        assertThat(parser.next(), is(NULL));
+        assertThat(parser.next(), is(END_ARRAY));
+        assertThat(parser.next(), is(FIELD_NAME));
+        assertThat(parser.getText(), is("b\u00e9\n"));
+        assertThat(parser.next(), is(STRING));
+        assertThat(parser.getText(), is("x\"y\u00fc"));
+        assertThat(parser.next(), is(END_OBJECT));
+        assertThat(parser.next(), is(END));
+    }
+
+    @Test
+    public void testSkipValue() throws IOException {
+        JsonPullParser parser = parser("{\"skip\": {\"x\": [\"]}\", {}]}, \"keep\": 0.125}", 8192);
+
+        assertThat(parser.next(), is(START_OBJECT));
+        assertThat(parser.next(), is(FIELD_NAME));
+        parser.skipNextValue();
+        assertThat(parser.next(), is(FIELD_NAME));
+        assertThat(parser.textEquals("keep"), is(true));
+        assertThat(parser.next(), is(NUMBER));
+        assertThat(parser.getDouble(), is(0.125));
+        assertThat(parser.next(), is(END_OBJECT));
+    }
+
+    @Test
+    public void testLongDecimalsMatchParseDouble() throws IOException {
+        // 17 digits is past 2^53, where converting the digits and then dividing would round twice.
+        JsonPullParser parser = parser("[44667375401.9253275, 0.1234567890123456, 9007199254740993]", 8192);
+
+        assertThat(parser.next(), is(START_ARRAY));
+        assertThat(parser.next(), is(NUMBER));
+        assertThat(parser.getDouble(), is(Double.parseDouble("44667375401.9253275")));
+        assertThat(parser.next(), is(NUMBER));
+        assertThat(parser.getDouble(), is(Double.parseDouble("0.1234567890123456")));
+        assertThat(parser.next(), is(NUMBER));
+        assertThat(parser.getDouble(), is(Double.parseDouble("9007199254740993")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedInputFails() throws IOException {
+        JsonPullParser parser = parser("{\"a\": [1, 2", 8192);
+        while (parser.next() != END) {
+            // keep reading
+        }
+    }
+
+    @Test
+    public void testDistanceResultFromStream() {
+        String json = "{\"destination_addresses\":[\"X\",\"Y\"],\"origin_addresses\":[\"A\"],\"rows\":[{\"elements\":["
+                + "{\"distance\":{\"text\":\"1 km\",\"value\":1000},\"duration\":{\"text\":\"1 min\",\"value\":60},"
+                + "\"status\":\"OK\"},{\"status\":\"NOT_FOUND\"}]}],\"status\":\"OK\"}";
+
+        GoogleDistanceResult result = GoogleDistanceResult.result()
+                .withInputStream(stream(json))
+                .withOrigins(Arrays.asList("a"))
+                .withDestinations(Arrays.asList("x", "y"))
+                .build();
+
+        assertThat(result.getDistance("a", "x"), closeTo(1000 * METERS_TO_MILES, 1e-12));
+        assertThat(result.getDuration("a", "x"), is(60.0));
+        assertThat(result.getDistance("a", "y"), is(-1.0));
+        assertThat(result.getStatus("a", "y"), is(GoogleDistanceResult.ELEMENT_NOT_FOUND));
+        assertThat(result.getResponseStatus(), is("OK"));
+    }
+
+    @Test
+    public void testOkElementWithoutDistanceKeepsMinusOne() {
+        String json = "{\"destination_addresses\":[\"X\"],\"origin_addresses\":[\"A\"],\"rows\":[{\"elements\":["
+                + "{\"duration\":{\"text\":\"1 min\",\"value\":60},\"status\":\"OK\"}]}],\"status\":\"OK\"}";
+
+        GoogleDistanceResult result = GoogleDistanceResult.result()
+                .withInputStream(stream(json))
+                .withOrigins(Arrays.asList("a"))
+                .withDestinations(Arrays.asList("x"))
+                .build();
+
+        assertThat(result.getStatus("a", "x"), is(GoogleDistanceResult.ELEMENT_OK));
+        assertThat(result.getDistance("a", "x"), is(-1.0));
+        assertThat(result.getDuration("a", "x"), is(60.0));
+    }
+
+    @Test
+    public void testDistanceResultSizeMismatchIsEmpty() {
+        String json = "{\"destination_addresses\":[\"X\"],\"origin_addresses\":[\"A\"],\"rows\":[{\"elements\":["
+                + "{\"status\":\"NOT_FOUND\"}]}],\"status\":\"OK\"}";
+
+        GoogleDistanceResult result = GoogleDistanceResult.result()
+                .withInputStream(stream(json))
+                .withOrigins(Arrays.asList("a"))
+                .withDestinations(Arrays.asList("x", "y"))
+                .build();
+
+        assertThat(result.getDistancesFromOrigin("a"), is(nullValue()));
+    }
+
+    @Test
+    public void testGeocodeResponse() throws IOException {
+        String json = "{\"results\":[{\"address_components\":[{\"long_name\":\"Coppell\"}],"
+                + "\"geometry\":{\"bounds\":{\"lat\":1,\"lng\":2},\"location\":{\"lat\":32.9545,\"lng\":-97.015}},"
+                + "\"types\":[\"street_address\"]},{\"geometry\":{\"location\":{\"lat\":0,\"lng\":0}}}],"
+                + "\"status\":\"OK\"}";
+
+        GoogleGeocoding.GeocodeResponse response = GoogleGeocoding.GeocodeResponse.parse(stream(json));
+        assertThat(response.getStatus(), is("OK"));
+        assertThat(response.getLocation(), is(new LatAndLong(32.9545, -97.015)));
+    }
+
+    private static JsonPullParser parser(String json, int bufferSize) {
+        return new JsonPullParser(stream(json), bufferSize);
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")));
+    }
+}
@@ -0,0 +1,174 @@
+package com.containerstore.lost.googlemaps.google;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class MapsHttpTransportTest {
+    private static final String BODY = "{\"status\":\"OK\",\"results\":[]}";
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(Sets.<Integer>newHashSet());
+    private final List<String> acceptEncodings = Collections.synchronizedList(Lists.<String>newArrayList());
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger mostActive = new AtomicInteger();
+    private volatile int delayMillis;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                acceptEncodings.add(acceptEncoding);
+                int now = active.incrementAndGet();
+                synchronized (mostActive) {
+                    mostActive.set(Math.max(mostActive.get(), now));
+                }
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+
+                byte[] body = BODY.getBytes(Charsets.UTF_8);
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                    gzip.write(body);
+                    gzip.close();
+                    body = compressed.toByteArray();
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        serverThreads = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private URI uri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/maps/api/geocode/json");
+    }
+
+    private static String get(MapsHttpTransport transport, URI uri) {
+        return transport.getRestTemplate().execute(uri, HttpMethod.GET, null, new ResponseExtractor<String>() {
+            @Override
+            public String extractData(ClientHttpResponse response) throws IOException {
+                return new String(ByteStreams.toByteArray(response.getBody()), Charsets.UTF_8);
+            }
+        });
+    }
+
+    @Test
+    public void testCompressedResponsesOverOneConnection() {
+        MapsHttpTransport transport = MapsHttpTransport.transport().build();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(get(transport, uri()), is(BODY));
+        }
+
+        assertThat(acceptEncodings.size(), is(5));
+        for (String acceptEncoding : acceptEncodings) {
+            assertThat(acceptEncoding, containsString("gzip"));
+        }
+        assertThat(clientPorts.size(), is(1));
+        assertThat(transport.getOpenConnections(), is(1));
+        transport.shutdown();
+    }
+
+    @Test
+    public void testCompressionCanBeTurnedOff() {
+        MapsHttpTransport transport = MapsHttpTransport.transport().withCompression(false).build();
+
+        assertThat(get(transport, uri()), is(BODY));
+        assertThat(acceptEncodings.get(0), is(nullValue()));
+        transport.shutdown();
+    }
+
+    @Test
+    public void testConnectionsPerRouteAreLimited() throws Exception {
+        delayMillis = 50;
+        final MapsHttpTransport transport = MapsHttpTransport.transport().withMaxPerRoute(2).build();
+        ExecutorService callers = Executors.newFixedThreadPool(6);
+
+        List<Callable<String>> calls = Lists.newArrayList();
+        for (int i = 0; i < 12; i++) {
+            calls.add(new Callable<String>() {
+                @Override
+                public String call() {
+                    return get(transport, uri());
+                }
+            });
+        }
+        for (Future<String> result : callers.invokeAll(calls)) {
+            assertThat(result.get(), is(BODY));
+        }
+
+        assertThat(mostActive.get(), lessThanOrEqualTo(2));
+        assertThat(clientPorts.size(), lessThanOrEqualTo(2));
+        callers.shutdown();
+        transport.shutdown();
+    }
+
+    @Test(expected = ResourceAccessException.class)
+    public void testReadTimeout() {
+        delayMillis = 1000;
+        MapsHttpTransport transport = MapsHttpTransport.transport().withReadTimeout(100).build();
+
+        try {
+            get(transport, uri());
+        } finally {
+            transport.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPerRouteLimitWithinTotal() {
+        MapsHttpTransport.transport().withMaxTotal(4).withMaxPerRoute(8).build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.containerstore.lost.googlemaps.google;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A ClientHttpResponse with a fixed 200 OK body, for feeding canned responses to response extractors.
+ */
+class StringResponse implements ClientHttpResponse {
+    private final byte[] body;
+
+    StringResponse(String body) {
+        this.body = body.getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Override
+    public HttpStatus getStatusCode() {
+        return HttpStatus.OK;
+    }
+
+    @Override
+    public int getRawStatusCode() {
+        return HttpStatus.OK.value();
+    }
+
+    @Override
+    public String getStatusText() {
+        return HttpStatus.OK.getReasonPhrase();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InputStream getBody() {
+        return new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return new HttpHeaders();
+    }
+}
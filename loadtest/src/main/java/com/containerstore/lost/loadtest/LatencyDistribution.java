@@ -0,0 +1,101 @@
+package com.containerstore.lost.loadtest;
+
+import java.util.Random;
+
+/**
+ * How long the stub server waits before it answers a call.
+ *
+ * Distributions are written as "fixed:millis", "uniform:minMillis:maxMillis" or "lognormal:medianMillis:p99Millis".
+ * Real Maps latencies have a long right tail, which the log-normal distribution models from a median and a 99th
+ * percentile.
+ */
+public abstract class LatencyDistribution {
+    /** The 99th percentile of the standard normal distribution. */
+    private static final double Z_99 = 2.3263;
+
+    /**
+     * Returns the next delay, in microseconds.
+     */
+    public abstract long nextMicros(Random random);
+
+    public static LatencyDistribution none() {
+        return fixed(0);
+    }
+
+    public static LatencyDistribution fixed(final double millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Latency must not be negative");
+        }
+
+        return new LatencyDistribution() {
+            @Override
+            public long nextMicros(Random random) {
+                return Math.round(millis * 1000);
+            }
+
+            @Override
+            public String toString() {
+                return "fixed:" + millis;
+            }
+        };
+    }
+
+    public static LatencyDistribution uniform(final double minMillis, final double maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("Latency range must be non-negative and in order");
+        }
+
+        return new LatencyDistribution() {
+            @Override
+            public long nextMicros(Random random) {
+                return Math.round((minMillis + random.nextDouble() * (maxMillis - minMillis)) * 1000);
+            }
+
+            @Override
+            public String toString() {
+                return "uniform:" + minMillis + ":" + maxMillis;
+            }
+        };
+    }
+
+    public static LatencyDistribution logNormal(final double medianMillis, final double p99Millis) {
+        if (medianMillis <= 0 || p99Millis < medianMillis) {
+            throw new IllegalArgumentException("Median must be positive and no more than the 99th percentile");
+        }
+
+        final double mu = Math.log(medianMillis);
+        final double sigma = Math.log(p99Millis / medianMillis) / Z_99;
+        return new LatencyDistribution() {
+            @Override
+            public long nextMicros(Random random) {
+                return Math.round(Math.exp(mu + sigma * random.nextGaussian()) * 1000);
+            }
+
+            @Override
+            public String toString() {
+                return "lognormal:" + medianMillis + ":" + p99Millis;
+            }
+        };
+    }
+
+    public static LatencyDistribution parse(String text) {
+        String[] parts = text.trim().split(":");
+        try {
+            if (parts[0].equalsIgnoreCase("none") && parts.length == 1) {
+                return none();
+            }
+            if (parts[0].equalsIgnoreCase("fixed") && parts.length == 2) {
+                return fixed(Double.parseDouble(parts[1]));
+            }
+            if (parts[0].equalsIgnoreCase("uniform") && parts.length == 3) {
+                return uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            }
+            if (parts[0].equalsIgnoreCase("lognormal") && parts.length == 3) {
+                return logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency distribution: " + text);
+        }
+        throw new IllegalArgumentException("Invalid latency distribution: " + text);
+    }
+}
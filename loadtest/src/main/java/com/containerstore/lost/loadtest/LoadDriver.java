@@ -0,0 +1,119 @@
+package com.containerstore.lost.loadtest;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives calls at a fixed rate for a fixed time and reports throughput and latency.
+ *
+ * The load is open: call i is due at start + i / rate whether or not earlier calls have finished, as it would be
+ * with independent users. Calls are handed to a pool of worker threads, and a call's latency runs from when it
+ * was due, so time spent waiting for a worker counts against the system under test.
+ */
+public class LoadDriver {
+    /** How long to wait, after the last call is sent, for calls still running. */
+    public static final long DEFAULT_DRAIN_SECONDS = 60;
+
+    /**
+     * One call to the system under test. A call that throws is counted as failed.
+     */
+    public interface Call {
+        void call(long sequence) throws Exception;
+    }
+
+    private final double ratePerSecond;
+    private final int threads;
+
+    /**
+     * @param ratePerSecond - the calls started per second
+     * @param threads       - the most calls in flight at once
+     */
+    public LoadDriver(double ratePerSecond, int threads) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+
+        this.ratePerSecond = ratePerSecond;
+        this.threads = threads;
+    }
+
+    public LoadReport run(final Call call, long duration, TimeUnit unit) throws InterruptedException {
+        final long intervalNanos = Math.max(1, Math.round(1e9 / ratePerSecond));
+        long count = unit.toNanos(duration) / intervalNanos;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many calls for one run");
+        }
+
+        final AtomicLongArray latencyMicros = new AtomicLongArray((int) count);
+        final Multiset<String> failures = ConcurrentHashMultiset.create();
+        final AtomicLong lastCompletion = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("load-driver-%d")
+                .setDaemon(true)
+                .build());
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            latencyMicros.set(i, -1);
+        }
+        for (int i = 0; i < count; i++) {
+            final int sequence = i;
+            final long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (Thread.interrupted()) {
+                workers.shutdownNow();
+                throw new InterruptedException();
+            }
+
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        call.call(sequence);
+                    } catch (Exception e) {
+                        failures.add(e.getClass().getSimpleName());
+                    } finally {
+                        long now = System.nanoTime();
+                        latencyMicros.set(sequence, (now - due) / 1000);
+                        long last = lastCompletion.get();
+                        while (now - last > 0 && !lastCompletion.compareAndSet(last, now)) {
+                            last = lastCompletion.get();
+                        }
+                    }
+                }
+            });
+        }
+
+        workers.shutdown();
+        if (!workers.awaitTermination(DEFAULT_DRAIN_SECONDS, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+
+        int completed = 0;
+        long[] completedMicros = new long[(int) count];
+        for (int i = 0; i < count; i++) {
+            long micros = latencyMicros.get(i);
+            if (micros >= 0) {
+                completedMicros[completed++] = micros;
+            }
+        }
+        long[] latencies = Arrays.copyOf(completedMicros, completed);
+        double elapsedSeconds = completed == 0 ? 0 : (lastCompletion.get() - start) / 1e9;
+        return new LoadReport(ratePerSecond, count, latencies, elapsedSeconds, failures);
+    }
+}
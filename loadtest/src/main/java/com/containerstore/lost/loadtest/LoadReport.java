@@ -0,0 +1,88 @@
+package com.containerstore.lost.loadtest;
+
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Multiset;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of one load run: how many calls were sent, completed and failed, the completed calls per second,
+ * and latency percentiles. Latencies are measured from when each call was due to start, not from when a worker
+ * got to it, so a backed-up system shows its queueing delay instead of hiding it.
+ */
+public final class LoadReport {
+    private final double targetRate;
+    private final long sent;
+    private final long failed;
+    private final double elapsedSeconds;
+    private final long[] sortedMicros;
+    private final ImmutableMultiset<String> failures;
+
+    LoadReport(double targetRate, long sent, long[] latencyMicros, double elapsedSeconds, Multiset<String> failures) {
+        this.targetRate = targetRate;
+        this.sent = sent;
+        this.failed = failures.size();
+        this.elapsedSeconds = elapsedSeconds;
+        this.sortedMicros = latencyMicros.clone();
+        Arrays.sort(sortedMicros);
+        this.failures = ImmutableMultiset.copyOf(failures);
+    }
+
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * The calls that finished, successfully or not, before the run ended.
+     */
+    public long getCompleted() {
+        return sortedMicros.length;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Failure counts by exception class.
+     */
+    public ImmutableMultiset<String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Completed calls per second.
+     */
+    public double getThroughput() {
+        return elapsedSeconds <= 0 ? 0 : sortedMicros.length / elapsedSeconds;
+    }
+
+    /**
+     * Returns the latency in milliseconds that the given fraction of completed calls (0.5 for the median) were
+     * within, or NaN if no call completed.
+     */
+    public double getLatencyMillis(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Fraction must be between 0 and 1");
+        }
+        if (sortedMicros.length == 0) {
+            return Double.NaN;
+        }
+
+        int index = (int) Math.ceil(fraction * sortedMicros.length) - 1;
+        return sortedMicros[Math.max(0, index)] / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("target %.1f/s, sent %d, completed %d, failed %d%s, throughput %.1f/s%n"
+                + "latency ms: p50 %.2f, p99 %.2f, p999 %.2f, max %.2f",
+                targetRate, sent, getCompleted(), failed, failures.isEmpty() ? "" : " " + failures,
+                getThroughput(), getLatencyMillis(0.5), getLatencyMillis(0.99), getLatencyMillis(0.999),
+                getLatencyMillis(1));
+    }
+}
@@ -0,0 +1,202 @@
+package com.containerstore.lost.loadtest;
+
+import com.containerstore.lost.googlemaps.BatchingMapDistanceMatrix;
+import com.containerstore.lost.googlemaps.CachingMapDistanceMatrix;
+import com.containerstore.lost.googlemaps.CachingMapGeocoding;
+import com.containerstore.lost.googlemaps.MapDistanceMatrix;
+import com.containerstore.lost.googlemaps.MapDistanceResult;
+import com.containerstore.lost.googlemaps.MapGeocoding;
+import com.containerstore.lost.googlemaps.MapQuery;
+import com.containerstore.lost.googlemaps.SingleFlightMapDistanceMatrix;
+import com.containerstore.lost.googlemaps.SingleFlightMapGeocoding;
+import com.containerstore.lost.googlemaps.google.GoogleDefs;
+import com.containerstore.lost.googlemaps.google.GoogleDistanceMatrix;
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.containerstore.lost.googlemaps.google.GoogleGeocoding;
+import com.containerstore.lost.googlemaps.google.MapsHttpTransport;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts MapQuery under load against a StubMapsServer and prints throughput and latency percentiles.
+ *
+ * Usage: java -jar loadtest/target/loadtest.jar [--option=value ...]
+ * <pre>
+ * --rps=100                   calls started per second
+ * --seconds=30                length of the measured run, after --warmup=5 seconds that are not measured
+ * --threads=64                most calls in flight at once
+ * --geocode=0.2               fraction of calls that geocode an address; the rest query a matrix from one
+ *                             location to --destinations=25 others
+ * --locations=500             distinct addresses and locations the calls draw from, which sets the cache hit rate
+ * --stack=google              comma separated layers over the Google clients: cache, batch
+ * --transport=pooled          pooled (MapsHttpTransport) or simple (a plain RestTemplate)
+ * --latency=lognormal:80:400  stub latency: none, fixed:ms, uniform:min:max or lognormal:median:p99
+ * --errors=0 --over-limit=0   fractions of stub calls that fail with HTTP 500 or OVER_QUERY_LIMIT
+ * --padding=0                 extra bytes in every stub response
+ * --recordings=dir            recorded responses to replay; --record-from=url fills in the missing ones
+ * </pre>
+ */
+public final class MapQueryLoadTest {
+    private static final Map<String, String> DEFAULTS = Maps.newLinkedHashMap();
+
+    static {
+        DEFAULTS.put("rps", "100");
+        DEFAULTS.put("seconds", "30");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("threads", "64");
+        DEFAULTS.put("geocode", "0.2");
+        DEFAULTS.put("locations", "500");
+        DEFAULTS.put("destinations", "25");
+        DEFAULTS.put("stack", "google");
+        DEFAULTS.put("transport", "pooled");
+        DEFAULTS.put("latency", "lognormal:80:400");
+        DEFAULTS.put("errors", "0");
+        DEFAULTS.put("over-limit", "0");
+        DEFAULTS.put("padding", "0");
+        DEFAULTS.put("recordings", "");
+        DEFAULTS.put("record-from", "");
+    }
+
+    private MapQueryLoadTest() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        int threads = Integer.parseInt(options.get("threads"));
+
+        StubMapsServer server = StubMapsServer.server()
+                .withLatency(LatencyDistribution.parse(options.get("latency")))
+                .withErrorRate(Double.parseDouble(options.get("errors")))
+                .withOverLimitRate(Double.parseDouble(options.get("over-limit")))
+                .withPaddingBytes(Integer.parseInt(options.get("padding")))
+                .withRecordings(options.get("recordings").isEmpty() ? null : new File(options.get("recordings")))
+                .withUpstream(options.get("record-from").isEmpty() ? null : options.get("record-from"))
+                .build()
+                .start();
+        GoogleDefs.setGoogleApi(server.getApiUrl());
+
+        MapsHttpTransport transport = null;
+        RestTemplate restTemplate;
+        if (options.get("transport").equals("pooled")) {
+            transport = MapsHttpTransport.transport().withMaxTotal(threads).withMaxPerRoute(threads).build();
+            restTemplate = transport.getRestTemplate();
+        } else if (options.get("transport").equals("simple")) {
+            restTemplate = new RestTemplate();
+        } else {
+            throw new IllegalArgumentException("Unknown transport: " + options.get("transport"));
+        }
+
+        GoogleDistanceMatrix googleDistanceMatrix = new GoogleDistanceMatrix(restTemplate, threads);
+        MapDistanceMatrix distanceMatrix = googleDistanceMatrix;
+        MapGeocoding geocoding = new GoogleGeocoding(restTemplate);
+        BatchingMapDistanceMatrix batching = null;
+        for (String layer : Splitter.on(',').trimResults().omitEmptyStrings().split(options.get("stack"))) {
+            if (layer.equals("batch")) {
+                batching = new BatchingMapDistanceMatrix(distanceMatrix);
+                distanceMatrix = batching;
+            } else if (layer.equals("cache")) {
+                distanceMatrix = new CachingMapDistanceMatrix(new SingleFlightMapDistanceMatrix(distanceMatrix));
+                geocoding = new CachingMapGeocoding(new SingleFlightMapGeocoding(geocoding));
+            } else if (!layer.equals("google")) {
+                throw new IllegalArgumentException("Unknown stack layer: " + layer);
+            }
+        }
+
+        MapQuery query = new MapQuery(distanceMatrix, geocoding, new GoogleDistanceRequest());
+        LoadDriver.Call call = new MapQueryCall(query, Double.parseDouble(options.get("geocode")),
+                Integer.parseInt(options.get("locations")), Integer.parseInt(options.get("destinations")));
+        LoadDriver driver = new LoadDriver(Double.parseDouble(options.get("rps")), threads);
+
+        System.out.println("Options: " + options);
+        long warmup = Long.parseLong(options.get("warmup"));
+        if (warmup > 0) {
+            System.out.println("Warm up: " + driver.run(call, warmup, TimeUnit.SECONDS));
+        }
+        long requestsBefore = server.getRequestCount();
+        System.out.println("Run: " + driver.run(call, Long.parseLong(options.get("seconds")), TimeUnit.SECONDS));
+        System.out.println(String.format("Stub: %d calls during the run; in total %d replayed, %d synthesized, "
+                + "%d errors and %d over limit injected", server.getRequestCount() - requestsBefore,
+                server.getReplayedCount(), server.getSynthesizedCount(), server.getInjectedErrorCount(),
+                server.getInjectedOverLimitCount()));
+
+        query.shutdown();
+        if (batching != null) {
+            batching.shutdown();
+        }
+        googleDistanceMatrix.shutdown();
+        if (transport != null) {
+            transport.shutdown();
+        }
+        server.stop();
+    }
+
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = Maps.newLinkedHashMap(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * A call that either geocodes an address or queries the distances from one location to several others,
+     * drawn from fixed pools. A distance result with missing elements counts as a failure.
+     */
+    static final class MapQueryCall implements LoadDriver.Call {
+        private final MapQuery query;
+        private final double geocodeFraction;
+        private final int destinationCount;
+        private final List<String> addresses = Lists.newArrayList();
+        private final List<String> locations = Lists.newArrayList();
+
+        MapQueryCall(MapQuery query, double geocodeFraction, int poolSize, int destinationCount) {
+            this.query = query;
+            this.geocodeFraction = geocodeFraction;
+            this.destinationCount = destinationCount;
+
+            Random random = new Random(1);
+            for (int i = 0; i < poolSize; i++) {
+                addresses.add((100 + i) + " Stub St, Dallas, TX");
+                locations.add(String.format(Locale.US, "%.5f,%.5f", 32.5 + random.nextDouble(),
+                        -97.5 + random.nextDouble()));
+            }
+        }
+
+        @Override
+        public void call(long sequence) {
+            Random random = ThreadLocalRandom.current();
+            if (random.nextDouble() < geocodeFraction) {
+                query.getLocation(addresses.get(random.nextInt(addresses.size())));
+                return;
+            }
+
+            String origin = locations.get(random.nextInt(locations.size()));
+            List<String> destinations = Lists.newArrayListWithCapacity(destinationCount);
+            for (int i = 0; i < destinationCount; i++) {
+                destinations.add(locations.get(random.nextInt(locations.size())));
+            }
+            MapDistanceResult result = query.queryDistance(query.createRequest()
+                    .withOrigin(origin)
+                    .withDestinations(destinations));
+            if (result == null || result.getDistance(origin, destinations.get(0)) < 0) {
+                throw new IllegalStateException("Incomplete distance result");
+            }
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package com.containerstore.lost.loadtest;
+
+import com.containerstore.lost.googlemaps.GreatCircleDistances;
+import com.containerstore.lost.googlemaps.LatAndLong;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static com.containerstore.lost.googlemaps.google.GoogleDefs.*;
+
+/**
+ * A local HTTP server that answers the Google geocoding and distance matrix calls, so that MapQuery can be put
+ * under load without spending quota. Point the clients at it with GoogleDefs.setGoogleApi(server.getApiUrl()) or
+ * -Dgooglemaps.api=...
+ *
+ * Each call is answered, in order of preference, with:
+ * <ol>
+ * <li>a recorded response for the same request, from the recordings directory;</li>
+ * <li>a response fetched from the upstream API, if one is set, which is then saved to the recordings directory;</li>
+ * <li>a synthesized response of the right shape. Addresses that are not "latitude,longitude" are placed by a hash
+ * of the address, and road distances and durations are derived from great-circle distances.</li>
+ * </ol>
+ * Recordings are named by kind and a SHA-1 of the request's parameters (without key, client and signature), so
+ * the same recordings serve signed and unsigned calls.
+ *
+ * Every call is delayed by a draw from the latency distribution, and a configurable fraction fail with an HTTP
+ * 500 or an OVER_QUERY_LIMIT status. Responses can be padded to a realistic size and are gzip compressed when the
+ * client accepts it.
+ */
+public class StubMapsServer {
+    private static final Logger LOG = Logger.getLogger(StubMapsServer.class);
+
+    public static final String API_PATH = "/maps/api";
+
+    private static final String GEOCODE = "geocode";
+    private static final String DISTANCE_MATRIX = "distancematrix";
+    private static final double METERS_PER_MILE = 1609.344;
+    /** How much longer the road is than the great-circle distance, and the average speed along it. */
+    private static final double ROAD_FACTOR = 1.25;
+    private static final double MILES_PER_HOUR = 35;
+    private static final List<String> UNSIGNED_PARAMETERS = Lists.newArrayList("key", "client", "signature");
+    private static final byte[] SERVER_ERROR = "Stub server error".getBytes(Charsets.UTF_8);
+    private static final String OVER_QUERY_LIMIT_BODY = "{\"results\":[],\"rows\":[],\"status\":\"" + OVER_QUERY_LIMIT
+            + "\",\"error_message\":\"Stub quota exceeded\"}";
+
+    private final File recordingsDirectory;
+    private final String upstream;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double overLimitRate;
+    private final int paddingBytes;
+    private final int port;
+    private final int threads;
+    private final ConcurrentMap<String, byte[]> recordings = Maps.newConcurrentMap();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong synthesized = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong injectedOverLimits = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private StubMapsServer(StubMapsServerBuilder builder) {
+        this.recordingsDirectory = builder.recordingsDirectory;
+        this.upstream = builder.upstream;
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.overLimitRate = builder.overLimitRate;
+        this.paddingBytes = builder.paddingBytes;
+        this.port = builder.port;
+        this.threads = builder.threads;
+    }
+
+    public static StubMapsServerBuilder server() {
+        return new StubMapsServerBuilder();
+    }
+
+    /**
+     * Loads the recordings and starts answering calls.
+     */
+    public synchronized StubMapsServer start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Stub server already started");
+        }
+
+        loadRecordings();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.createContext(API_PATH + "/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    answer(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        // Every call sleeps for its latency, so each in-flight call holds a thread.
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("stub-maps-%d")
+                .setDaemon(true)
+                .build());
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Stub Maps server listening at " + getApiUrl() + " with " + recordings.size() + " recordings");
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * The base URL to use in place of GoogleDefs.GOOGLE_API.
+     */
+    public String getApiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + API_PATH;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getReplayedCount() {
+        return replayed.get();
+    }
+
+    public long getSynthesizedCount() {
+        return synthesized.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public long getInjectedOverLimitCount() {
+        return injectedOverLimits.get();
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String path = exchange.getRequestURI().getRawPath().substring(API_PATH.length());
+        String kind = path.equals(GEOCODING_URI) ? GEOCODE : path.equals(DISTANCE_URI) ? DISTANCE_MATRIX : null;
+        if (kind == null) {
+            respond(exchange, 404, "Not found".getBytes(Charsets.UTF_8));
+            return;
+        }
+
+        Random random = ThreadLocalRandom.current();
+        sleep(latency.nextMicros(random));
+
+        double draw = random.nextDouble();
+        if (draw < errorRate) {
+            injectedErrors.incrementAndGet();
+            respond(exchange, 500, SERVER_ERROR);
+            return;
+        }
+        if (draw < errorRate + overLimitRate) {
+            injectedOverLimits.incrementAndGet();
+            respond(exchange, 200, pad(OVER_QUERY_LIMIT_BODY).getBytes(Charsets.UTF_8));
+            return;
+        }
+
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        SortedMap<String, String> parameters = parameters(rawQuery);
+        String name = kind + "-" + Hashing.sha1().hashString(path + "?" + parameters, Charsets.UTF_8);
+
+        byte[] body = recordings.get(name);
+        if (body == null && upstream != null) {
+            body = record(name, path, rawQuery);
+        }
+        if (body != null) {
+            replayed.incrementAndGet();
+            body = pad(new String(body, Charsets.UTF_8)).getBytes(Charsets.UTF_8);
+        } else {
+            synthesized.incrementAndGet();
+            String json = kind.equals(GEOCODE) ? geocode(parameters) : distanceMatrix(parameters);
+            body = pad(json).getBytes(Charsets.UTF_8);
+        }
+        respond(exchange, 200, body);
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /**
+     * Fetches a response from the upstream API and saves it, returning null if the call did not succeed.
+     */
+    private byte[] record(String name, String path, String rawQuery) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(upstream + path
+                    + (rawQuery == null ? "" : "?" + rawQuery)).openConnection();
+            if (connection.getResponseCode() != 200) {
+                LOG.warn("Upstream returned HTTP " + connection.getResponseCode() + " for " + path);
+                return null;
+            }
+
+            InputStream in = connection.getInputStream();
+            byte[] body;
+            try {
+                body = ByteStreams.toByteArray(in);
+            } finally {
+                in.close();
+            }
+            recordings.put(name, body);
+            if (recordingsDirectory != null) {
+                Files.write(body, new File(recordingsDirectory, name + ".json"));
+            }
+            return body;
+        } catch (IOException e) {
+            LOG.warn("Exception recording " + path + " from upstream: " + e);
+            return null;
+        }
+    }
+
+    private void loadRecordings() throws IOException {
+        if (recordingsDirectory == null) {
+            return;
+        }
+        if (!recordingsDirectory.isDirectory() && !recordingsDirectory.mkdirs()) {
+            throw new IOException("Cannot create recordings directory " + recordingsDirectory);
+        }
+
+        File[] files = recordingsDirectory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            String fileName = file.getName();
+            if (file.isFile() && fileName.endsWith(".json")) {
+                recordings.put(fileName.substring(0, fileName.length() - ".json".length()), Files.toByteArray(file));
+            }
+        }
+    }
+
+    private String pad(String json) {
+        if (paddingBytes == 0 || !json.startsWith("{")) {
+            return json;
+        }
+
+        char[] padding = new char[paddingBytes];
+        Arrays.fill(padding, 'x');
+        return "{\"padding\":\"" + new String(padding) + "\"," + json.substring(1);
+    }
+
+    private static String geocode(Map<String, String> parameters) {
+        String address = parameters.get("address");
+        if (address == null) {
+            return "{\"results\":[],\"status\":\"INVALID_REQUEST\"}";
+        }
+
+        LatAndLong location = locate(address);
+        return "{\"results\":[{\"formatted_address\":" + quote(address)
+                + ",\"geometry\":{\"location\":{\"lat\":" + location.getLatitude()
+                + ",\"lng\":" + location.getLongitude()
+                + "},\"location_type\":\"APPROXIMATE\"}}],\"status\":\"OK\"}";
+    }
+
+    private static String distanceMatrix(Map<String, String> parameters) {
+        String originsParameter = parameters.get("origins");
+        String destinationsParameter = parameters.get("destinations");
+        if (originsParameter == null || destinationsParameter == null) {
+            return "{\"rows\":[],\"status\":\"INVALID_REQUEST\"}";
+        }
+
+        List<String> origins = Lists.newArrayList(Splitter.on('|').split(originsParameter));
+        List<String> destinations = Lists.newArrayList(Splitter.on('|').split(destinationsParameter));
+        StringBuilder json = new StringBuilder(128 + 96 * origins.size() * destinations.size());
+        json.append("{\"destination_addresses\":");
+        appendStrings(json, destinations);
+        json.append(",\"origin_addresses\":");
+        appendStrings(json, origins);
+        json.append(",\"rows\":[");
+        for (int row = 0; row < origins.size(); row++) {
+            LatAndLong origin = locate(origins.get(row));
+            json.append(row == 0 ? "{\"elements\":[" : ",{\"elements\":[");
+            for (int column = 0; column < destinations.size(); column++) {
+                double miles = ROAD_FACTOR * GreatCircleDistances.distance(origin, locate(destinations.get(column)));
+                long meters = Math.round(miles * METERS_PER_MILE);
+                long seconds = Math.round(miles / MILES_PER_HOUR * 3600);
+                json.append(column == 0 ? "{" : ",{")
+                        .append("\"distance\":{\"text\":\"").append(Math.round(miles)).append(" mi\",\"value\":")
+                        .append(meters)
+                        .append("},\"duration\":{\"text\":\"").append(seconds / 60).append(" mins\",\"value\":")
+                        .append(seconds)
+                        .append("},\"status\":\"OK\"}");
+            }
+            json.append("]}");
+        }
+        return json.append("],\"status\":\"OK\"}").toString();
+    }
+
+    /**
+     * Places an address: at its own coordinates if it is "latitude,longitude", otherwise at a point in the
+     * continental United States chosen by a hash of the address, so the same address is always in the same place.
+     */
+    static LatAndLong locate(String address) {
+        LatAndLong location = LatAndLong.fromString(address);
+        if (location != null) {
+            return location;
+        }
+
+        long hash = Hashing.md5().hashString(address.trim().toLowerCase(), Charsets.UTF_8).asLong();
+        double latitude = 25 + 24 * ((hash & 0xFFFFFFFFL) / (double) 0x100000000L);
+        double longitude = -124 + 57 * ((hash >>> 32) / (double) 0x100000000L);
+        return new LatAndLong(latitude, longitude);
+    }
+
+    private static SortedMap<String, String> parameters(String rawQuery) {
+        SortedMap<String, String> parameters = Maps.newTreeMap();
+        if (rawQuery == null) {
+            return parameters;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+            if (!UNSIGNED_PARAMETERS.contains(name)) {
+                parameters.put(name, equals < 0 ? "" : decode(pair.substring(equals + 1)));
+            }
+        }
+        return parameters;
+    }
+
+    private static String decode(String text) {
+        try {
+            return URLDecoder.decode(text, "UTF-8");
+        } catch (UnsupportedEncodingException shouldNeverHappen) {
+            throw new AssertionError(shouldNeverHappen);
+        }
+    }
+
+    private static void appendStrings(StringBuilder json, List<String> values) {
+        json.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            json.append(i == 0 ? "" : ",").append(quote(values.get(i)));
+        }
+        json.append(']');
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void sleep(long micros) {
+        if (micros <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class StubMapsServerBuilder {
+        private File recordingsDirectory;
+        private String upstream;
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private double errorRate;
+        private double overLimitRate;
+        private int paddingBytes;
+        private int port;
+        private int threads = 256;
+
+        StubMapsServerBuilder() {
+        }
+
+        /**
+         * The directory recorded responses are replayed from, and that responses fetched upstream are saved to.
+         */
+        public StubMapsServerBuilder withRecordings(File directory) {
+            this.recordingsDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Fetches and records the calls that have no recording from this base URL, usually GoogleDefs.GOOGLE_API.
+         * Each such call spends real quota, once.
+         */
+        public StubMapsServerBuilder withUpstream(String upstream) {
+            this.upstream = upstream;
+            return this;
+        }
+
+        public StubMapsServerBuilder withLatency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * The fraction of calls answered with an HTTP 500.
+         */
+        public StubMapsServerBuilder withErrorRate(double errorRate) {
+            this.errorRate = rate(errorRate);
+            return this;
+        }
+
+        /**
+         * The fraction of calls answered with an OVER_QUERY_LIMIT status.
+         */
+        public StubMapsServerBuilder withOverLimitRate(double overLimitRate) {
+            this.overLimitRate = rate(overLimitRate);
+            return this;
+        }
+
+        /**
+         * Extra bytes added to every response body, in a field the clients skip.
+         */
+        public StubMapsServerBuilder withPaddingBytes(int paddingBytes) {
+            if (paddingBytes < 0) {
+                throw new IllegalArgumentException("Padding must not be negative");
+            }
+            this.paddingBytes = paddingBytes;
+            return this;
+        }
+
+        /**
+         * The port to listen on; 0, the default, picks a free one.
+         */
+        public StubMapsServerBuilder withPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * The most calls answered at once.
+         */
+        public StubMapsServerBuilder withThreads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Threads must be positive");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        public StubMapsServer build() {
+            if (errorRate + overLimitRate > 1) {
+                throw new IllegalArgumentException("Error and over limit rates add up to more than 1");
+            }
+            return new StubMapsServer(this);
+        }
+
+        private static double rate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Rate must be between 0 and 1");
+            }
+            return rate;
+        }
+    }
+}
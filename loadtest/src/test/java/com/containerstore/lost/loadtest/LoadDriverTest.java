@@ -0,0 +1,48 @@
+package com.containerstore.lost.loadtest;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LoadDriverTest {
+    @Test
+    public void testRateAndFailuresAreReported() throws InterruptedException {
+        LoadDriver driver = new LoadDriver(200, 8);
+
+        LoadReport report = driver.run(new LoadDriver.Call() {
+            @Override
+            public void call(long sequence) throws Exception {
+                Thread.sleep(2);
+                if (sequence % 10 == 0) {
+                    throw new IllegalStateException("every tenth call fails");
+                }
+            }
+        }, 500, TimeUnit.MILLISECONDS);
+
+        assertThat(report.getSent(), is(100L));
+        assertThat(report.getCompleted(), is(100L));
+        assertThat(report.getFailed(), is(10L));
+        assertThat(report.getFailures().count("IllegalStateException"), is(10));
+        assertThat(report.getThroughput(), closeTo(200, 40));
+        assertThat(report.getLatencyMillis(0.5), greaterThanOrEqualTo(2.0));
+        assertThat(report.getLatencyMillis(0.999), lessThanOrEqualTo(report.getLatencyMillis(1)));
+    }
+
+    @Test
+    public void testLatencyIncludesTimeWaitingForAWorker() throws InterruptedException {
+        // One worker and calls that take twice the interval: each call waits longer than the one before.
+        LoadReport report = new LoadDriver(100, 1).run(new LoadDriver.Call() {
+            @Override
+            public void call(long sequence) throws Exception {
+                Thread.sleep(20);
+            }
+        }, 200, TimeUnit.MILLISECONDS);
+
+        assertThat(report.getCompleted(), is(20L));
+        assertThat(report.getLatencyMillis(1), greaterThan(150.0));
+        assertThat(report.getThroughput(), lessThan(60.0));
+    }
+}
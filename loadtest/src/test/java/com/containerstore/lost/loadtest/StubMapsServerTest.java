@@ -0,0 +1,111 @@
+package com.containerstore.lost.loadtest;
+
+import com.containerstore.lost.googlemaps.GreatCircleDistances;
+import com.containerstore.lost.googlemaps.LatAndLong;
+import com.containerstore.lost.googlemaps.MapDistanceResult;
+import com.containerstore.lost.googlemaps.MapsRateLimitException;
+import com.containerstore.lost.googlemaps.google.GoogleDefs;
+import com.containerstore.lost.googlemaps.google.GoogleDistanceMatrix;
+import com.containerstore.lost.googlemaps.google.GoogleDistanceRequest;
+import com.containerstore.lost.googlemaps.google.GoogleGeocoding;
+import com.containerstore.lost.googlemaps.google.MapsHttpTransport;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class StubMapsServerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MapsHttpTransport transport;
+    private StubMapsServer server;
+
+    @Before
+    public void createTransport() {
+        transport = MapsHttpTransport.transport().build();
+    }
+
+    @After
+    public void stop() {
+        GoogleDefs.setGoogleApi(null);
+        transport.shutdown();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private StubMapsServer start(StubMapsServer.StubMapsServerBuilder builder) throws IOException {
+        server = builder.build().start();
+        GoogleDefs.setGoogleApi(server.getApiUrl());
+        return server;
+    }
+
+    @Test
+    public void testSynthesizedResponsesFitTheRequest() throws IOException {
+        start(StubMapsServer.server().withPaddingBytes(4096));
+        GoogleDistanceMatrix matrix = new GoogleDistanceMatrix(transport, 2);
+
+        MapDistanceResult result = matrix.query(new GoogleDistanceRequest()
+                .withOrigins(Lists.newArrayList("32.93,-96.82", "29.74,-95.46"))
+                .withDestinations(Lists.newArrayList("32.97,-97.03", "30.27,-97.74", "500 Freeport Pkwy, Coppell")));
+
+        double miles = GreatCircleDistances.distance(new LatAndLong(29.74, -95.46), new LatAndLong(30.27, -97.74));
+        assertThat(result.getDistance("29.74,-95.46", "30.27,-97.74"), closeTo(1.25 * miles, 0.01));
+        assertThat(result.getDuration("29.74,-95.46", "30.27,-97.74"), closeTo(1.25 * miles / 35 * 3600, 1));
+        assertThat(result.getDistance("32.93,-96.82", "500 Freeport Pkwy, Coppell"), greaterThan(0.0));
+        assertThat(new GoogleGeocoding(transport).getLocation("32.5,-97.25"), is(new LatAndLong(32.5, -97.25)));
+        assertThat(server.getSynthesizedCount(), is(2L));
+        matrix.shutdown();
+    }
+
+    @Test
+    public void testRecordedResponsesAreReplayed() throws IOException {
+        File recordings = folder.newFolder("recordings");
+        StubMapsServer upstream = StubMapsServer.server().build().start();
+        GoogleGeocoding geocoding = new GoogleGeocoding(transport);
+        LatAndLong recorded;
+        try {
+            start(StubMapsServer.server().withRecordings(recordings).withUpstream(upstream.getApiUrl()));
+            recorded = geocoding.getLocation("500 Freeport Pkwy, Coppell, TX");
+            assertThat(upstream.getRequestCount(), is(1L));
+            assertThat(recordings.list().length, is(1));
+        } finally {
+            upstream.stop();
+            server.stop();
+        }
+
+        start(StubMapsServer.server().withRecordings(recordings));
+        assertThat(geocoding.getLocation("500 Freeport Pkwy, Coppell, TX"), is(recorded));
+        assertThat(server.getReplayedCount(), is(1L));
+        assertThat(server.getSynthesizedCount(), is(0L));
+    }
+
+    @Test(expected = MapsRateLimitException.class)
+    public void testOverLimitInjection() throws IOException {
+        start(StubMapsServer.server().withOverLimitRate(1));
+
+        new GoogleGeocoding(transport).getLocation("Dallas, TX");
+    }
+
+    @Test
+    public void testErrorInjection() throws IOException {
+        start(StubMapsServer.server().withErrorRate(1).withLatency(LatencyDistribution.fixed(5)));
+
+        try {
+            new GoogleGeocoding(transport).getLocation("Dallas, TX");
+            fail("Expected a server error");
+        } catch (HttpServerErrorException expected) {
+            assertThat(server.getInjectedErrorCount(), is(1L));
+        }
+    }
+}